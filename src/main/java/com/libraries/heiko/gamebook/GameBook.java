@@ -5,33 +5,58 @@ import android.content.Context;
 import android.content.pm.ActivityInfo;
 import android.graphics.Bitmap;
 import android.opengl.GLSurfaceView;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
 
-import com.libraries.heiko.gamebook.tools.GameStack;
+import com.libraries.heiko.gamebook.tools.HandleTable;
+import com.libraries.heiko.gamebook.tools.MutationQueue;
+import com.libraries.heiko.gamebook.tools.SortedList;
+import com.libraries.heiko.gamebook.tools.TimerWheel;
+import com.libraries.heiko.gamebook.tools.TripleBuffer;
+import com.libraries.heiko.gamebook.tools.WorkerPool;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by heiko on 19.02.2016.
  */
 public class GameBook extends GLSurfaceView
 {
-    private GameStack<GamePage> pages;                  // Stack of the currently set GamePages
+    private SortedList<GamePage> pages;                 // the currently set GamePages, sorted by their drawOrder
     public ResourceManager resources;                   // Manages resources like images and audio
+    TimerWheel timers;                                  // timed callbacks of the elements, fired by the gameThread before the update. See GameElement.StartTimer
 
     private GameThread gameThread;                      // The thread that triggers the game-mechanics-updates
     public GameRenderer gameRenderer;                   // The OpenGL-Renderer that draws all the things
+    private TripleBuffer<RenderPacket> renderPackets;   // hands the frames recorded by the gameThread over to the drawThread
+    private MutationQueue<Runnable> mutations;          // changes of the pages and elements, applied by the gameThread before the next update
+    private ConcurrentHashMap<String, GamePage> pageIndex;      // all pages by ID, including the ones the gameThread didn't apply yet
+    private HandleTable<GamePage> pageHandles;          // all pages by handle, including the ones the gameThread didn't apply yet
     long lastGameFPS = 0;                               // The framerate the gameThread achieved in the last Frame
     long lastDrawFPS = 0;                               // The framerate the drawThread achieved in the last Frame
     long startTime = 0;
+    private volatile boolean onDemandRendering = false; // true: frames are only recorded and drawn if something changed, see SetOnDemandRendering
+    private volatile boolean sceneDirty = true;         // true: something changed since the last recorded frame
+
+    // parallel updating of the active elements, see SetParallelUpdate
+    private WorkerPool updatePool;                      // the threads updating the elements together with the gameThread, null if updating isn't parallel
+    private GameElement[] parallelUpdates;              // the top-level elements whose active elements get updated in parallel, every one by a single thread
+    private int parallelUpdateCount = 0;                // number of entries in parallelUpdates
+    private int parallelUpdateNumber = 0;               // gets increased for every parallel update, tells which groups are already started
+    private boolean inParallelUpdate = false;           // true while the updatePool runs, the gameThread then queues its mutations like everyone else
+    private GameElement[] serialUpdates;                // the active elements of the current update that have to be updated on the gameThread
+    private int serialUpdateCount = 0;                  // number of entries in serialUpdates
+    private long updateTimeDelta;                       // the parameters of the current update, read by updateJob
+    private double updateTimeFactor;
+    private long updateTimePassed;
+    private WorkerPool.Job updateJob;                   // updates the entry of parallelUpdates with the given index
 
     int screenWidth = 0;                                // The actual width of the screen
     int screenHeight = 0;                               // The actual height of the screen
     int gameWidth = 0;                                  // The gameWidth. Gets scaled up/down to the screen
     int gameHeight = 0;                                 // The gameHeight. Gets scaled up/down to the screen
 
-    // cache-variables to prevent memory-allocations
-    private GameStack<GamePage> drawPages;              // used by the drawThread to iterate through the GamePages
-    private GameStack<GamePage> temp;                   // used by the everything but the drawThread to iterate through the GamePages
-    private GameStack<GamePage> temp2;                  // used by the everything but the drawThread to iterate through the GamePages
-
     // Framework-interal settings
     Bitmap.Config bitmapConfig = Bitmap.Config.RGB_565; // The bitmap config to use throughout the game
 
@@ -43,7 +68,54 @@ public class GameBook extends GLSurfaceView
         this.screenHeight = a_context.getResources().getDisplayMetrics().heightPixels;
         this.gameWidth = this.screenWidth;
         this.gameHeight = this.screenHeight;
-        pages = new GameStack<GamePage>();
+        pages = new SortedList<GamePage>()
+        {
+            @Override
+            protected float GetKey(GamePage a_page)
+            {
+                return a_page.drawOrder;
+            }
+
+            @Override
+            protected void SetKey(GamePage a_page, float a_key)
+            {
+                a_page.drawOrder = (int) a_key;
+            }
+
+            @Override
+            protected int GetSequence(GamePage a_page)
+            {
+                return a_page.drawSequence;
+            }
+
+            @Override
+            protected void SetSequence(GamePage a_page, int a_sequence)
+            {
+                a_page.drawSequence = a_sequence;
+            }
+        };
+        this.timers = new TimerWheel(20, 0);
+        this.mutations = new MutationQueue<Runnable>();
+        this.pageIndex = new ConcurrentHashMap<String, GamePage>();
+        this.pageHandles = new HandleTable<GamePage>();
+        this.parallelUpdates = new GameElement[16];
+        this.serialUpdates = new GameElement[16];
+        this.updateJob = new WorkerPool.Job()
+        {
+            @Override
+            public void Run(int a_index)
+            {
+                GameElement element = GameBook.this.parallelUpdates[a_index].groupFirst;
+                while (element != null)
+                {
+                    element.Update(GameBook.this.updateTimeDelta, GameBook.this.updateTimeFactor, GameBook.this.updateTimePassed);
+                    element = element.groupNext;
+                }
+            }
+        };
+
+        // one packet gets drawn, one is ready and one gets recorded
+        this.renderPackets = new TripleBuffer<RenderPacket>(new RenderPacket[] {new RenderPacket(), new RenderPacket(), new RenderPacket()});
 
         // initiate the resource-stacks
         this.resources = new ResourceManager(this);
@@ -97,23 +169,129 @@ public class GameBook extends GLSurfaceView
         this.gameRenderer.onResume();
     }
 
+    /*
+        Function: SetTickRate
+            Switches between variable and fixed update-steps. With fixed steps, every update simulates the same
+            amount of time and the drawn frames interpolate between the last two updates, so the game can be drawn
+            smoothly with more frames than updates. timeFactor stays relative to the default framerate, so the
+            game-speed doesn't change with the tick-rate
+
+        Parameter:
+            a_ticksPerSecond    - Integer   | number of fixed updates per second, 0 for variable update-steps (default)
+    */
+    public void SetTickRate(int a_ticksPerSecond)
+    {
+        this.gameThread.tickDuration = a_ticksPerSecond <= 0 ? 0 : 1000000000L / a_ticksPerSecond;
+    }
+
+    /*
+        Function: SetMaxCatchUpTicks
+            Sets how many fixed updates may run in a row to catch up after a slow frame. Time beyond that gets dropped,
+            so the game slows down instead of getting stuck catching up
+
+        Parameter:
+            a_maxTicks  - Integer   | maximum number of updates in a row (default 5)
+    */
+    public void SetMaxCatchUpTicks(int a_maxTicks)
+    {
+        if (a_maxTicks < 1)
+            throw new Error("SetMaxCatchUpTicks needs at least 1 tick, got " + a_maxTicks);
+
+        this.gameThread.maxCatchUpTicks = a_maxTicks;
+    }
+
+    /*
+        Function: SetOnDemandRendering
+            Enables or disables on-demand rendering. Frames are then only recorded and drawn if an element, page or
+            resource changed, and the gameThread sleeps while no element needs updating, until the next timer fires.
+            Input, changes from other threads and resources loaded by OpenGL wake it up right away. Frames aren't
+            interpolated in this mode (see SetTickRate), because they are only drawn once per change
+
+        Parameter:
+            a_onDemand  - boolean   | true: render on changes only, false: render continuously (default)
+    */
+    public void SetOnDemandRendering(boolean a_onDemand)
+    {
+        this.onDemandRendering = a_onDemand;
+        this.setRenderMode(a_onDemand ? GLSurfaceView.RENDERMODE_WHEN_DIRTY : GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+        this.MarkDirty();
+    }
+
+    /*
+        Function: RequestUpdate
+            Wakes up the gameThread if it sleeps because of on-demand rendering, e.g. for input the GameBook
+            doesn't receive itself. Does nothing otherwise
+    */
+    public void RequestUpdate()
+    {
+        if (this.gameThread != null)
+            this.gameThread.Wake();
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent a_event)
+    {
+        this.RequestUpdate();
+        return super.dispatchTouchEvent(a_event);
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent a_event)
+    {
+        this.RequestUpdate();
+        return super.dispatchKeyEvent(a_event);
+    }
+
+    /*
+        Function: SetParallelUpdate
+            Enables or disables updating the active elements of all pages in parallel. The active elements are
+            grouped by their top-level element, and every group is updated by a single thread in the order of the
+            active-update list. _Update-functions may then only change the subtree of their top-level element, but
+            nothing shared with other top-level elements. Elements that need to, can declare it with
+            DisableParallelUpdate. Changes of the pages and elements made during a parallel update are applied
+            before the next update. All updates are done before the frame gets recorded
+
+        Parameter:
+            a_parallelUpdate    - boolean   | true: one worker-thread per additional CPU-core helps the gameThread, false: the gameThread updates everything (default)
+    */
+    public void SetParallelUpdate(final boolean a_parallelUpdate)
+    {
+        this.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameBook.this._SetParallelUpdate(a_parallelUpdate);
+            }
+        });
+    }
+
+    // creates or shuts down the worker-threads. Is called by the gameThread, so it never happens during an update
+    private void _SetParallelUpdate(boolean a_parallelUpdate)
+    {
+        int workerCount = Runtime.getRuntime().availableProcessors() - 1;
+        if (a_parallelUpdate && this.updatePool == null && workerCount > 0)
+            this.updatePool = new WorkerPool(workerCount);
+        else if (!a_parallelUpdate && this.updatePool != null)
+        {
+            this.updatePool.Shutdown();
+            this.updatePool = null;
+        }
+    }
+
     /*
         Function: AddPage
             Adds a new Page to the gamebook
 
         Parameter:
-            a_id    - String    | ID of the new Page
+            a_id    - String    | ID of the new Page, can be null
 
         Returns:
             GamePage -> - The new GamePage
     */
     public GamePage AddPage(String a_id)
     {
-        if (this.GetPage(a_id) != null)
-            throw new RuntimeException("Page " + a_id + " already exists");
-
-        this.pages.push(new GamePage(a_id, this));
-        return this.pages.peek();
+        return this._AddPage(new GamePage(a_id, this));
     }
 
     /*
@@ -121,7 +299,7 @@ public class GameBook extends GLSurfaceView
             Adds a new Page to the gamebook
 
         Parameter:
-            a_id        - String    | ID of the new Page
+            a_id        - String    | ID of the new Page, can be null
             a_visible   - Boolean   | true: the GamePage will be visible, false: The GamePage will be invisible
 
         Returns:
@@ -129,11 +307,26 @@ public class GameBook extends GLSurfaceView
     */
     public GamePage AddPage(String a_id, boolean a_visible)
     {
-        if (this.GetPage(a_id) != null)
-            throw new Error("Page " + a_id + " already exists");
+        return this._AddPage(new GamePage(a_id, this, a_visible));
+    }
+
+    // registers a new page, so GetPage finds it right away, and adds it to the pages on the gameThread
+    private GamePage _AddPage(final GamePage a_page)
+    {
+        if (a_page.id != null && this.pageIndex.putIfAbsent(a_page.id, a_page) != null)
+            throw new Error("Page " + a_page.id + " already exists");
+        a_page.handle = this.pageHandles.Add(a_page);
 
-        this.pages.push(new GamePage(a_id, this, a_visible));
-        return this.pages.peek();
+        this.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameBook.this.pages.AddSorted(a_page);
+                GameBook.this.MarkDirty();
+            }
+        });
+        return a_page;
     }
 
     /*
@@ -143,20 +336,53 @@ public class GameBook extends GLSurfaceView
         Parameter:
             a_id        - String    | ID of the Page to remove
     */
-    public void RemovePage(String a_id)
+    public void RemovePage(final String a_id)
     {
-        this.temp = this.pages;
-        while (this.temp.content != null)
+        this.Post(new Runnable()
         {
-            if (this.temp.content.id.equals(a_id))
+            @Override
+            public void run()
             {
-                this.temp.content.RemoveAllElements();
-                this.temp.pop();
-                return;
+                GameBook.this._RemovePage(GameBook.this.GetPage(a_id));
             }
+        });
+    }
 
-            this.temp = this.temp.next;
-        }
+    /*
+        Function: RemovePage
+            Removes a Page from the gamebook
+
+        Parameter:
+            a_handle    - Integer   | handle of the Page to remove, see GamePage.GetHandle
+    */
+    public void RemovePage(final int a_handle)
+    {
+        this.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameBook.this._RemovePage(GameBook.this.pageHandles.Get(a_handle));
+            }
+        });
+    }
+
+    // removes a page from the gamebook. Is called by the gameThread
+    private void _RemovePage(GamePage a_page)
+    {
+        if (a_page == null)
+            return;
+
+        int index = this.pages.IndexOf(a_page);
+        if (index < 0)
+            return;
+
+        this.pages.RemoveAt(index).RemoveAllElements();
+        if (a_page.id != null)
+            this.pageIndex.remove(a_page.id, a_page);
+        this.pageHandles.Remove(a_page.handle);
+        a_page.handle = 0;
+        this.MarkDirty();
     }
 
     /*
@@ -165,12 +391,30 @@ public class GameBook extends GLSurfaceView
     */
     public void RemoveAllPages()
     {
-        this.temp = this.pages;
-        while (this.temp.content != null)
+        this.Post(new Runnable()
         {
-            this.temp.content.RemoveAllElements();
-            this.temp.pop();
+            @Override
+            public void run()
+            {
+                GameBook.this._RemoveAllPages();
+            }
+        });
+    }
+
+    // removes all pages from the gamebook. Is called by the gameThread
+    private void _RemoveAllPages()
+    {
+        for (int i = 0; i < this.pages.Size(); i++)
+        {
+            GamePage page = this.pages.Get(i);
+            page.RemoveAllElements();
+            if (page.id != null)
+                this.pageIndex.remove(page.id, page);
+            this.pageHandles.Remove(page.handle);
+            page.handle = 0;
         }
+        this.pages.Clear();
+        this.MarkDirty();
     }
 
     /*
@@ -185,106 +429,329 @@ public class GameBook extends GLSurfaceView
     */
     public GamePage GetPage(String a_id)
     {
-        this.temp = this.pages;
-        while (this.temp.content != null)
+        if (a_id == null)
+            return null;
+
+        return this.pageIndex.get(a_id);
+    }
+
+    /*
+        Function: GetPage
+            Returns the GamePage with a given handle
+
+        Parameter:
+            a_handle    - Integer   | handle of the GamePage, see GamePage.GetHandle
+
+        Returns:
+            GamePage -> - The GamePage with the given handle, null if it got removed
+    */
+    public GamePage GetPage(int a_handle)
+    {
+        return this.pageHandles.Get(a_handle);
+    }
+
+    /*
+        Function: SetPageDrawOrder
+            Sets the drawOrder-Index of a page. Higher draworder = later rendering = above other pages
+
+        Parameter:
+            a_id        - String    | ID of the GamePage
+            a_drawOrder - Integer   | The drawOrder-index the page should get
+    */
+    public void SetPageDrawOrder(final String a_id, final int a_drawOrder)
+    {
+        this.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameBook.this._SetPageDrawOrder(GameBook.this.GetPage(a_id), a_drawOrder);
+            }
+        });
+    }
+
+    /*
+        Function: SetPageDrawOrder
+            Sets the drawOrder-Index of a page. Higher draworder = later rendering = above other pages
+
+        Parameter:
+            a_handle    - Integer   | handle of the GamePage
+            a_drawOrder - Integer   | The drawOrder-index the page should get
+    */
+    public void SetPageDrawOrder(final int a_handle, final int a_drawOrder)
+    {
+        this.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameBook.this._SetPageDrawOrder(GameBook.this.pageHandles.Get(a_handle), a_drawOrder);
+            }
+        });
+    }
+
+    // moves a page to the position of its new drawOrder. Is called by the gameThread
+    private void _SetPageDrawOrder(GamePage a_page, int a_drawOrder)
+    {
+        if (a_page == null)
+            return;
+
+        if (this.pages.Reorder(a_page, a_drawOrder))
+            this.MarkDirty();
+    }
+
+    // updates the Game-mechanics. Is called by the gameThread
+    void Update(long a_timeDelta, double a_timeFactor, long a_timePassed)
+    {
+        this._ApplyMutations();
+        this.timers.Advance(a_timePassed);
+
+        if (this.updatePool != null)
         {
-            if (this.temp.content.id.equals(a_id))
-                return this.temp.content;
+            this._UpdateParallel(a_timeDelta, a_timeFactor, a_timePassed);
+            return;
+        }
 
-            this.temp = this.temp.next;
+        for (int i = 0; i < this.pages.Size(); i++)
+        {
+            this.pages.Get(i).Update(a_timeDelta, a_timeFactor, a_timePassed);
         }
-        return null;
     }
 
-    public void SetPageDrawOrder(String a_id, int a_drawOrder)
+    // updates the active elements of all pages on the updatePool, and the ones that aren't parallel-safe on the gameThread afterwards.
+    // The active elements are grouped by their top-level element and every group is updated by a single thread, because invalidating
+    // an element changes its parents as well
+    private void _UpdateParallel(long a_timeDelta, double a_timeFactor, long a_timePassed)
     {
-        this.temp = this.pages;
-        while (this.temp.content != null)
+        this.parallelUpdateNumber++;
+        for (int i = 0; i < this.pages.Size(); i++)
         {
-            if (this.temp.content.id.equals(a_id))
-                break;
+            GameElement element = this.pages.Get(i).firstActive;
+            while (element != null)
+            {
+                if (element.serialUpdate)
+                {
+                    if (this.serialUpdateCount == this.serialUpdates.length)
+                        this.serialUpdates = Arrays.copyOf(this.serialUpdates, this.serialUpdateCount * 2);
+                    this.serialUpdates[this.serialUpdateCount++] = element;
+                }
+                else
+                    this._AddToGroup(element);
+                element = element.activeNext;
+            }
+        }
 
-            this.temp = this.temp.next;
+        this.updateTimeDelta = a_timeDelta;
+        this.updateTimeFactor = a_timeFactor;
+        this.updateTimePassed = a_timePassed;
+        this.inParallelUpdate = true;
+        try
+        {
+            this.updatePool.Run(this.updateJob, this.parallelUpdateCount);
+        } finally
+        {
+            this.inParallelUpdate = false;
         }
 
-        // if the element with the given ID was not found, abort
-        if (this.temp.content == null)
-            return;
+        // an earlier serial update might have removed the element
+        for (int i = 0; i < this.serialUpdateCount; i++)
+        {
+            if (this.serialUpdates[i].needsUpdate)
+                this.serialUpdates[i].Update(a_timeDelta, a_timeFactor, a_timePassed);
+        }
 
-        this.temp2 = this.temp;
-        if (this.temp.content.drawOrder > a_drawOrder)
-            this.temp = this.pages;
+        // don't keep removed elements alive
+        for (int i = 0; i < this.parallelUpdateCount; i++)
+        {
+            GameElement element = this.parallelUpdates[i].groupFirst;
+            while (element != null)
+            {
+                GameElement next = element.groupNext;
+                element.groupNext = null;
+                element = next;
+            }
+            this.parallelUpdates[i].groupFirst = null;
+            this.parallelUpdates[i].groupLast = null;
+        }
+        Arrays.fill(this.parallelUpdates, 0, this.parallelUpdateCount, null);
+        Arrays.fill(this.serialUpdates, 0, this.serialUpdateCount, null);
+        this.parallelUpdateCount = 0;
+        this.serialUpdateCount = 0;
+    }
 
-        // find the first entry that has a higher zIndex than the element should get
-        while (this.temp.content != null)
+    // appends an active element to the group of its top-level element, and starts the group if it is the first one. Is called by the gameThread
+    private void _AddToGroup(GameElement a_element)
+    {
+        GameElement root = a_element;
+        while (root.parent != null)
         {
-            if (this.temp.content.drawOrder > a_drawOrder)
-                break;
+            root = root.parent;
+        }
 
-            this.temp = this.temp.next;
+        a_element.groupNext = null;
+        if (root.groupUpdate != this.parallelUpdateNumber)
+        {
+            root.groupUpdate = this.parallelUpdateNumber;
+            root.groupFirst = a_element;
+            if (this.parallelUpdateCount == this.parallelUpdates.length)
+                this.parallelUpdates = Arrays.copyOf(this.parallelUpdates, this.parallelUpdateCount * 2);
+            this.parallelUpdates[this.parallelUpdateCount++] = root;
         }
+        else
+            root.groupLast.groupNext = a_element;
+        root.groupLast = a_element;
+    }
 
-        // remove the Element from its old position and push it to the new one
-        this.temp.push(this.temp2.pop());
-        this.temp.content.drawOrder = a_drawOrder;
+    // changes the pages and elements with every mutation that was posted since the last update. Is called by the gameThread
+    private void _ApplyMutations()
+    {
+        Runnable mutation;
+        while ((mutation = this.mutations.Poll()) != null)
+        {
+            mutation.run();
+        }
     }
 
-    // updates the Game-mechanics. Is called by the gameThread
-    void Update(long a_timeDelta, double a_timeFactor)
+    // applies a change of the pages or elements. Changes from other threads and from parallel updates are queued and applied by the gameThread before its next update, so it never iterates lists that get changed at the same time
+    void Post(Runnable a_mutation)
     {
-        this.temp = this.pages;
-        while (this.temp.content != null)
+        if (this.CanMutate())
+            a_mutation.run();
+        else
         {
-            this.temp.content.Update(a_timeDelta, a_timeFactor, System.nanoTime() - this.startTime);
-            this.temp = this.temp.next;
+            this.mutations.Add(a_mutation);
+            this.RequestUpdate();
         }
     }
 
-    // Draws teh current game-status to the next free Framebuffer. Is called by the drawThread
-    void Draw(float[] a_mvpMatrix)
+    // notes that the next frame looks different and has to be recorded and drawn. Can be called by any thread
+    void MarkDirty()
+    {
+        this.sceneDirty = true;
+        if (!this.IsGameThread())
+            this.RequestUpdate();
+    }
+
+    // true if the gameThread has nothing to do until something changes or the next timer fires. Is called by the gameThread
+    boolean IsIdle()
     {
-        this.drawPages = pages;
-        while (this.drawPages.content != null)
+        if (!this.onDemandRendering || this.sceneDirty || !this.mutations.IsEmpty())
+            return false;
+
+        for (int i = 0; i < this.pages.Size(); i++)
         {
-            if (this.drawPages.content.visible == true)
-                this.drawPages.content.Draw(a_mvpMatrix);
+            if (this.pages.Get(i).firstActive != null)
+                return false;
+        }
+        return true;
+    }
 
-            this.drawPages = this.drawPages.next;
+    // true if the calling thread is the gameThread
+    boolean IsGameThread()
+    {
+        return Thread.currentThread() == this.gameThread;
+    }
+
+    // true if the calling thread may change the pages and elements right away: the gameThread, unless it helps with a parallel update
+    boolean CanMutate()
+    {
+        return this.IsGameThread() && !this.inParallelUpdate;
+    }
+
+    // records the visible pages into the next free render-packet. a_tickDuration is the fixed update-step, 0 for variable steps. Is called by the gameThread
+    void RecordFrame(long a_tickDuration)
+    {
+        // frames are only drawn once per change, so they can't be interpolated
+        if (this.onDemandRendering)
+        {
+            if (!this.sceneDirty)
+                return;
+            a_tickDuration = 0;
+        }
+        this.sceneDirty = false;
+
+        RenderPacket packet = this.renderPackets.GetWriteBuffer();
+        packet.Clear();
+        packet.recordTime = System.nanoTime();
+        packet.tickDuration = a_tickDuration;
+        for (int i = 0; i < this.pages.Size(); i++)
+        {
+            if (this.pages.Get(i).visible == true)
+                this.pages.Get(i).Record(packet);
+        }
+        this.renderPackets.Publish();
+
+        // the GL-thread only draws on request
+        if (this.onDemandRendering)
+            this.requestRender();
+    }
+
+    // Draws the latest frame recorded by the gameThread to the current framebuffer. Is called by the drawThread
+    void Draw(float[] a_mvpMatrix, int a_mvpVersion)
+    {
+        // the packet drawn last time is drawn again until the gameThread published a newer one
+        RenderPacket packet = this.renderPackets.GetReadBuffer();
+
+        // with fixed update-steps, the elements are moved from their previous to their recorded position during one step
+        if (packet.tickDuration > 0)
+            packet.alpha = Math.min(1.0f, Math.max(0.0f, (float) (System.nanoTime() - packet.recordTime) / packet.tickDuration));
+        else
+            packet.alpha = 1.0f;
+        for (int i = 0; i < packet.count; i = packet.subtreeEnds[i])
+        {
+            packet.elements[i].Draw(packet, i, a_mvpMatrix, a_mvpVersion, 0);
         }
     }
 
     // gets called once OpenGL is ready to be used
+    // Is called by the GL-thread, which only creates the OpenGL-resources. The elements are told by the gameThread
     void OGLReady()
     {
         this.resources._OGLReady();
-        this.drawPages = pages;
-        while (this.drawPages.content != null)
+        this.Post(new Runnable()
         {
-            this.drawPages.content.OGLReady();
-            this.drawPages = this.drawPages.next;
-        }
+            @Override
+            public void run()
+            {
+                GameBook.this.MarkDirty();
+                for (int i = 0; i < GameBook.this.pages.Size(); i++)
+                {
+                    GameBook.this.pages.Get(i).OGLReady();
+                }
+            }
+        });
     }
 
     // gets called when the screen changes (e.g. on orientiation change, and on startup)
-    void UpdateScreenDimensions(float a_horzVertexRatio, float a_vertVertexRatio)
+    // Is called by the GL-thread, the elements get laid out again by the gameThread
+    void UpdateScreenDimensions(final float a_horzVertexRatio, final float a_vertVertexRatio)
     {
-        this.resources._UpdateScreenDimensions(a_horzVertexRatio, a_vertVertexRatio);
-        this.drawPages = pages;
-        while (this.drawPages.content != null)
+        this.Post(new Runnable()
         {
-            this.drawPages.content.UpdateScreenDimensions(a_horzVertexRatio, a_vertVertexRatio);
-            this.drawPages = this.drawPages.next;
-        }
+            @Override
+            public void run()
+            {
+                GameBook.this.MarkDirty();
+                GameBook.this.resources._UpdateScreenDimensions(a_horzVertexRatio, a_vertVertexRatio);
+                for (int i = 0; i < GameBook.this.pages.Size(); i++)
+                {
+                    GameBook.this.pages.Get(i).UpdateScreenDimensions(a_horzVertexRatio, a_vertVertexRatio);
+                }
+            }
+        });
     }
 
     // The GameThread triggers the updateing of the game-mechanics
     private class GameThread extends Thread
     {
-        private double frameTime = 0;           // The time every frame should use (in nanoseconds)
+        private double frameTime = 0;           // The time every frame should use (in nanoseconds). timeFactor is relative to this
         private long lastFrameDuration = 0;     // The time the last frame actually used (in nanoseconds)
         private double lastRenderBudget = 0;    // The time the last thread slept to achieve its frametime (in nanoseconds)
         private GameBook gamebook;              // Reference to the GameBook-Instance to call the _Update function
         private boolean running = false;        // true: The thread is running, false: The thread is not running
+        private volatile boolean parked = false;// true: the thread sleeps until it gets woken up, see GameBook.IsIdle
+        volatile long tickDuration = 0;         // duration of a fixed update-step (in nanoseconds), 0 for variable steps
+        volatile int maxCatchUpTicks = 5;       // maximum number of fixed update-steps per loop, to catch up after a slow frame
 
         public GameThread(GameBook a_gamebook, int a_targetFramerate)
         {
@@ -297,18 +764,64 @@ public class GameBook extends GLSurfaceView
         public void run()
         {
             long startTime;
+            long lastTime = System.nanoTime();
+            long accumulator = 0;               // time that has passed, but was not simulated yet
+            long simulatedTime = 0;             // time simulated by the fixed update-steps
             while (this.running)
             {
                 startTime = System.nanoTime();
-                this.gamebook.Update(this.lastFrameDuration, this.lastFrameDuration / this.frameTime);
-                this.lastRenderBudget = this.frameTime - (System.nanoTime() - startTime);
+                long tickDuration = this.tickDuration;
+                if (tickDuration <= 0)
+                {
+                    // variable step: simulate the time the last frame took
+                    this.gamebook.Update(this.lastFrameDuration, this.lastFrameDuration / this.frameTime, startTime - this.gamebook.startTime);
+                    this.gamebook.RecordFrame(0);
+                    this.lastRenderBudget = this.frameTime - (System.nanoTime() - startTime);
+                    simulatedTime = startTime - this.gamebook.startTime;
+                    accumulator = 0;
+                }
+                else
+                {
+                    // fixed step: simulate as many steps as fit into the passed time, but not more than maxCatchUpTicks
+                    accumulator += startTime - lastTime;
+                    int ticks = 0;
+                    while (accumulator >= tickDuration && ticks < this.maxCatchUpTicks)
+                    {
+                        simulatedTime += tickDuration;
+                        this.gamebook.Update(tickDuration, tickDuration / this.frameTime, simulatedTime);
+                        accumulator -= tickDuration;
+                        ticks++;
+                    }
+
+                    // the device is too slow to catch up. Drop the time instead of running behind forever
+                    if (accumulator >= tickDuration)
+                        accumulator %= tickDuration;
+
+                    if (ticks > 0)
+                        this.gamebook.RecordFrame(tickDuration);
+                    this.lastRenderBudget = tickDuration - accumulator - (System.nanoTime() - startTime);
+                }
+                lastTime = startTime;
+
+                // with on-demand rendering, sleep until something changes or the next timer fires
+                long slept = this._Park(tickDuration <= 0 ? System.nanoTime() - this.gamebook.startTime : simulatedTime);
+                if (slept >= 0)
+                {
+                    // the time spent sleeping doesn't get simulated, the clock of the fixed steps skips it so the timers stay on time.
+                    // The next loop updates right away
+                    simulatedTime += slept;
+                    lastTime = System.nanoTime();
+                    accumulator = tickDuration;
+                    this.lastFrameDuration = (long) this.frameTime;
+                    continue;
+                }
 
                 synchronized (this)
                 {
                     try
                     {
                         if (this.lastRenderBudget > 0)
-                            this.wait((long) this.lastRenderBudget / 1000000, (int) (this.lastRenderBudget - (int) (this.lastRenderBudget / 1000000) * 1000000)/8);
+                            this.wait((long) this.lastRenderBudget / 1000000, (int) ((long) this.lastRenderBudget % 1000000));
                     } catch (Exception a_exception)
                     {
                         a_exception.printStackTrace();
@@ -320,6 +833,56 @@ public class GameBook extends GLSurfaceView
             }
         }
 
+        // sleeps while the GameBook is idle, at most until the next timer fires. a_timerTime is the time the timers are at now. Returns the nanoseconds slept, -1 if the thread didn't sleep
+        private long _Park(long a_timerTime)
+        {
+            if (!this.gamebook.IsIdle())
+                return -1;
+
+            long start = System.nanoTime();
+            long nextExpiry = this.gamebook.timers.NextExpiry();
+            long deadline = nextExpiry == Long.MAX_VALUE ? Long.MAX_VALUE : start + Math.max(0, nextExpiry - a_timerTime);
+            synchronized (this)
+            {
+                // parked is set before checking again, so a Wake in between isn't lost
+                this.parked = true;
+                try
+                {
+                    while (this.running && this.gamebook.IsIdle())
+                    {
+                        if (deadline == Long.MAX_VALUE)
+                            this.wait();
+                        else
+                        {
+                            long remaining = deadline - System.nanoTime();
+                            if (remaining <= 0)
+                                break;
+                            this.wait(remaining / 1000000, (int) (remaining % 1000000));
+                        }
+                    }
+                } catch (InterruptedException a_exception)
+                {
+                    // the thread gets stopped
+                } finally
+                {
+                    this.parked = false;
+                }
+            }
+            return System.nanoTime() - start;
+        }
+
+        // wakes the thread up if it is parked
+        void Wake()
+        {
+            if (!this.parked)
+                return;
+
+            synchronized (this)
+            {
+                this.notifyAll();
+            }
+        }
+
         // starts/stops the thread
         public void setRunning(boolean a_running)
         {
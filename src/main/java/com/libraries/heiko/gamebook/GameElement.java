@@ -4,17 +4,24 @@ import android.opengl.GLES20;
 import android.opengl.Matrix;
 import android.support.v7.widget.FitWindowsViewGroup;
 
-import com.libraries.heiko.gamebook.tools.GameStack;
+import com.libraries.heiko.gamebook.tools.Culling;
+import com.libraries.heiko.gamebook.tools.GameList;
+import com.libraries.heiko.gamebook.tools.RenderLayer;
+import com.libraries.heiko.gamebook.tools.SortedList;
+import com.libraries.heiko.gamebook.tools.SpriteBatch;
+import com.libraries.heiko.gamebook.tools.TimerWheel;
 
 /**
  * Created by heiko on 19.02.2016.
  */
 public class GameElement
 {
-    public String id;                               // The ID of the GameElement
+    public String id;                               // The ID of the GameElement, optional name to find the element by
+    int handle = 0;                                 // handle of the element on its page, 0 while it isn't added. See GetHandle
     protected GamePage page;                        // Reference to the GamePage that created this element
     protected GameBook book;                        // Reference to the GameBook that created this element
     protected GameElement parent;                   // Reference to the GameElement that acts as the Parent of this elemente
+    volatile boolean linked = false;                // true while the element is linked into its page. Changes of unlinked elements don't reach their parents
 
     protected Object value;                         // the current value of the element
     protected int x = 0;                            // the x-position of the element
@@ -30,23 +37,93 @@ public class GameElement
     protected boolean visible = true;               // true: The GameElement is visible, false: The GameElement is not visible
     protected boolean hideOverflow = false;         // true: childelements visually can't be oudside this element, false: they can
     protected float zIndex = 0;                     // z-index of the Element. Elements with a lower z-index will be drawn first (below other pages)
-    protected boolean needsUpdate = false;          // true: the element needs to be updated every frame, false: the element doesn't need updating
+    protected boolean needsUpdate = false;          // true: the element is in the active-update list of its page and gets updated every frame, see EnableUpdating
+    boolean serialUpdate = false;                   // true: this element has to be updated on the gameThread, see DisableParallelUpdate
+    GameElement activePrev, activeNext;             // neighbours in the active-update list of the page
+    boolean activeLinked = false;                   // true while this element is linked into the active-update list, see GamePage.RemoveActive
+    GameElement groupFirst, groupLast;              // first and last active element of the subtree of this top-level element in the current parallel update
+    GameElement groupNext;                          // next active element with the same top-level element in the current parallel update
+    int groupUpdate = 0;                            // the parallel update groupFirst belongs to, see GameBook._UpdateParallel
     float drawOrder = 0;                            // z-index of the Element. Elements with a lower z-index will be drawn first (below other pages)
+    int drawSequence = 0;                           // order of the elements with the same drawOrder, see SortedList
 
     // cache-variables to prevent memory-allocations
-    protected GameStack<GAnimation> animations;       // Stack of the currently active animations
-    protected GameStack<GameElement> children;        // Stack of the child-elements
+    protected GameList<GAnimation> animations;        // List of the currently active animations
+    protected SortedList<GameElement> children;       // List of the child-elements, sorted by drawOrder
 
-    // cache-variables to prevent memory-allocations
-    private GameStack<GAnimation> drawAnimations;   // used by the Draw function to iterate through the animations
-    private GameStack<GameElement> drawElements;    // used by the Draw function to iterate through the child-elements
-    private GameStack<GAnimation> tempAnimations;   // used by everything but the Draw function to iterate through the child-elements
-    private GameStack<GameElement> tempElements;    // used by everything but the Draw function to iterate through the child-elements
-    private GameStack<GameElement> tempElements2;   // used by everything but the Draw function to iterate through the child-elements
-    private GameElement tempElement;                // used to cache a GameElement
+    // bounds of this element and all its child-elements, used to skip subtrees that are outside the viewport
+    private boolean boundsDirty = true;             // true: the bounds need to be recalculated before they can be used
+    private boolean boundsUnknown = false;          // true: the bounds can't be calculated (e.g. because of animations), the subtree never gets culled
+    private float boundsLeft, boundsBottom;         // bottom-left corner of the bounds, in the same coordinates as vectorX and vectorY
+    private float boundsRight, boundsTop;           // top-right corner of the bounds, in the same coordinates as vectorX and vectorY
+
+    // the texture this element and its child-elements get cached in, see CacheAsLayer
+    private boolean cacheAsLayer = false;           // true: the subtree is drawn from the texture of the layer, false: it is drawn normally
+    private int contentVersion = 0;                 // gets increased every time something in the subtree changes, see Invalidate
+    private int layerVersion = -1;                  // the contentVersion the layer was rendered with
+    private RenderLayer layer;                      // the framebuffer and texture of the layer. Created on the GL-thread once it is needed
+    private float[] layerMvpMatrix;                 // projection matrix for the child-elements while rendering the layer
+    private int layerMvpVersion = 0;                // gets increased every time layerMvpMatrix changes
+
+    // the matrices are cached and only recalculated if this element moved or the matrix of its parent changed
+    private float transformX, transformY;           // the position the cached matrices were calculated with
+    private float transformDrawX, transformDrawY;   // the interpolated position the cached matrices were calculated with
+    private float transformWidth, transformHeight;  // the size the cached matrices were calculated with
+    private float transformZIndex;                  // the zIndex the cached matrices were calculated with
+    private float[] animationMatrix;                // used by the gameThread to combine the animations before they get recorded
+    private float[] transformSource;                // the matrix the cached matrices were calculated from
+    private int transformSourceVersion = 0;         // the version of transformSource the cached matrices were calculated from
+    private int transformVersion = 0;               // gets increased every time the cached matrices change
+
+    // the packet of the frame currently drawn. Lets _Draw read the state the element recorded in _Record
+    protected RenderPacket drawPacket;              // the packet the element is currently drawn from, null if it isn't drawn from a packet
+    protected int drawIndex;                        // index of the element in drawPacket
+
+    // the position of the previous record, the GL-thread interpolates from there to the current position
+    private boolean recorded = false;               // true: recordedX and recordedY are set, false: the element wasn't recorded last time
+    private float recordedX, recordedY;             // vectorX and vectorY of the previous record
 
     // OpenGL-Stuff
     private float[] elementMvpMatrix;               // projection matrix including animations for this element and subelements
+    private float[] childMvpMatrix;                 // projection matrix for the child-elements, elementMvpMatrix moved to the position of this element
+
+    /*
+        Interface: DrawOrderKey
+            Calculates the drawOrder of an element, used to re-sort all child-elements at once (e.g. by their y-position)
+    */
+    public interface DrawOrderKey
+    {
+        float GetDrawOrder(GameElement a_element);
+    }
+
+    // list of elements, sorted by their drawOrder. Used for the child-elements of elements and pages
+    static class DrawOrderList extends SortedList<GameElement>
+    {
+        @Override
+        protected float GetKey(GameElement a_element)
+        {
+            return a_element.drawOrder;
+        }
+
+        @Override
+        protected void SetKey(GameElement a_element, float a_key)
+        {
+            a_element.drawOrder = a_key;
+        }
+
+        @Override
+        protected int GetSequence(GameElement a_element)
+        {
+            return a_element.drawSequence;
+        }
+
+        @Override
+        protected void SetSequence(GameElement a_element, int a_sequence)
+        {
+            a_element.drawSequence = a_sequence;
+        }
+    }
+
     public GameElement(String a_id, GamePage a_page, GameBook a_book, GameElement a_parent)
     {
         this.id = a_id;
@@ -54,9 +131,10 @@ public class GameElement
         this.book = a_book;
         this.parent = a_parent;
 
-        this.children = new GameStack<GameElement>();
-        this.animations = new GameStack<GAnimation>();
+        this.children = new DrawOrderList();
+        this.animations = new GameList<GAnimation>();
         this.elementMvpMatrix = new float[16];
+        this.childMvpMatrix = new float[16];
     }
 
     /*
@@ -66,9 +144,27 @@ public class GameElement
         Parameter:
             a_element   - GameElement   | The GameElement to register
     */
-    public GameElement AddChild(GameElement a_element)
+    public GameElement AddChild(final GameElement a_element)
     {
-        this.children.push(a_element);
+        this.page.IndexElement(a_element);
+        this.book.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameElement.this._AddChild(a_element);
+            }
+        });
+        return a_element;
+    }
+
+    // links a child-element. Is called by the gameThread
+    GameElement _AddChild(GameElement a_element)
+    {
+        this.children.AddSorted(a_element);
+        a_element.linked = true;
+        this.InvalidateBounds();
+        this.Invalidate();
         return a_element;
     }
 
@@ -81,16 +177,53 @@ public class GameElement
     */
     public void RemoveChild(String a_id)
     {
-        this.tempElements = this.children;
-        while (this.tempElements.content != null)
+        this.RemoveChild(this.page.GetElement(a_id));
+    }
+
+    /*
+        Function: RemoveChild
+            Removes a direct child of this GameElement
+
+        Parameter:
+            a_handle    - Integer   | The handle of the child to remove
+    */
+    public void RemoveChild(int a_handle)
+    {
+        this.RemoveChild(this.page.GetElement(a_handle));
+    }
+
+    // frees the handle and the ID of a direct child right away, like adding it takes them right away, and posts unlinking it
+    private void RemoveChild(final GameElement a_child)
+    {
+        if (a_child == null || a_child.parent != this)
+            return;
+
+        this.page.UnindexElement(a_child);
+        this.book.Post(new Runnable()
         {
-            if (this.tempElements.content.id.equals(a_id))
+            @Override
+            public void run()
             {
-                this.tempElements.content.RemoveAllChildren();
-                this.tempElements.pop();
-                return;
+                GameElement.this._RemoveChild(a_child);
             }
-        }
+        });
+    }
+
+    // removes a direct child. Is called by the gameThread
+    void _RemoveChild(GameElement a_child)
+    {
+        if (a_child == null || a_child.parent != this)
+            return;
+
+        int index = this.children.IndexOf(a_child);
+        if (index < 0)
+            return;
+
+        a_child._RemoveAllChildren();
+        a_child.Detach();
+        this.children.RemoveAt(index);
+        this.InvalidateBounds();
+        this.Invalidate();
     }
 
     /*
@@ -99,17 +232,32 @@ public class GameElement
     */
     public void RemoveAllChildren()
     {
-        this.tempElements = this.children;
-        while (this.tempElements.content != null)
+        this.book.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameElement.this._RemoveAllChildren();
+            }
+        });
+    }
+
+    // removes all child-elements. Is called by the gameThread
+    private void _RemoveAllChildren()
+    {
+        while (this.children.Size() > 0)
         {
-            this.tempElements.content.RemoveAllChildren();
-            this.tempElements.pop();
+            GameElement child = this.children.RemoveAt(this.children.Size() - 1);
+            child._RemoveAllChildren();
+            child.Detach();
         }
+        this.InvalidateBounds();
+        this.Invalidate();
     }
 
     /*
         Function: GetElement
-            Returns the GameElement with the given ID
+            Returns the (direct or nested) child-element with the given ID
 
         Parameter:
             a_id    - String    | The ID of the element
@@ -119,22 +267,52 @@ public class GameElement
     */
     public GameElement GetElement(String a_id)
     {
-        this.tempElements = this.children;
-        while (this.tempElements != null && this.tempElements.content != null)
-        {
-            if (this.tempElements.content.id.equals(a_id))
-                return this.tempElements.content;
+        return this._GetDescendant(this.page.GetElement(a_id));
+    }
 
-            this.tempElement = this.tempElements.content.GetElement(a_id);
-            if (this.tempElement != null)
-                return this.tempElement;
+    /*
+        Function: GetElement
+            Returns the (direct or nested) child-element with the given handle
+
+        Parameter:
+            a_handle    - Integer   | The handle of the element
 
-            this.tempElements = this.tempElements.next;
+        Returns:
+            GameElement -> - The GameElement with the given handle
+    */
+    public GameElement GetElement(int a_handle)
+    {
+        return this._GetDescendant(this.page.GetElement(a_handle));
+    }
+
+    // returns the given element if it is below this element, otherwise null
+    private GameElement _GetDescendant(GameElement a_element)
+    {
+        if (a_element == null)
+            return null;
+
+        for (GameElement ancestor = a_element.parent; ancestor != null; ancestor = ancestor.parent)
+        {
+            if (ancestor == this)
+                return a_element;
         }
 
         return null;
     }
 
+    /*
+        Function: GetHandle
+            Returns the handle of this element. It can be used instead of the ID to find, reorder and remove
+            the element, and stays valid until the element gets removed
+
+        Returns:
+            int -> - the handle of the element, 0 if the element isn't added to a page
+    */
+    public int GetHandle()
+    {
+        return this.handle;
+    }
+
     /*
         Function: SetValue
             Returns the GameElement with the given ID
@@ -148,6 +326,7 @@ public class GameElement
     public void SetValue(Object a_value)
     {
         this.value = a_value;
+        this.Invalidate();
     }
 
     /*
@@ -165,6 +344,7 @@ public class GameElement
 		this.vectorWidth = ((float) this.width / this.book.gameWidth) * this.book.gameRenderer.width;
 		this.vectorHeight = ((float) this.height / this.book.gameHeight) * this.book.gameRenderer.height;
         this.SetPosition(this.x, this.y);
+        this.Invalidate();
     }
 
     /*
@@ -184,6 +364,11 @@ public class GameElement
 		    this.vectorY = this.book.gameRenderer.bottom + ((float) (this.book.gameHeight - (this.y + this.height)) / this.book.gameHeight) * this.book.gameRenderer.height;
         else
             this.vectorY = this.book.gameRenderer.bottom + ((float) (this.parent.height - (this.y + this.height)) / this.book.gameHeight) * this.book.gameRenderer.height;
+        this.InvalidateBounds();
+
+        // the layer of this element only depends on its size, but the layer of the parent contains this element
+        if (this.parent != null && this.linked)
+            this.parent.Invalidate();
     }
 
     /*
@@ -199,9 +384,9 @@ public class GameElement
             return;
 
         if (this.parent != null)
-            this.parent.SetChildDrawOrder(this.id, a_drawOrder);
+            this.parent.SetChildDrawOrder(this.handle, a_drawOrder);
         else
-            this.page.SetChildDrawOrder(this.id, a_drawOrder);
+            this.page.SetChildDrawOrder(this.handle, a_drawOrder);
     }
 
     /*
@@ -209,39 +394,81 @@ public class GameElement
             Sets the drawOrder-Index of a child-element of this element. Higher draworder = later rendering = above other elements
 
         Parameter:
+            a_id        - String    | The ID of the child-element
             a_drawOrder - Integer   | The drawOrder-index the element should get
     */
-    public void SetChildDrawOrder(String a_id, int a_drawOrder)
+    public void SetChildDrawOrder(final String a_id, final int a_drawOrder)
     {
-        this.tempElements = this.children;
-        while (this.tempElements.content != null)
+        this.book.Post(new Runnable()
         {
-            if (this.tempElements.content.id.equals(a_id))
-                break;
+            @Override
+            public void run()
+            {
+                GameElement.this._SetChildDrawOrder(GameElement.this.page.GetElement(a_id), a_drawOrder);
+            }
+        });
+    }
 
-            this.tempElements = this.tempElements.next;
-        }
+    /*
+        Function: SetChildDrawOrder
+            Sets the drawOrder-Index of a child-element of this element. Higher draworder = later rendering = above other elements
+
+        Parameter:
+            a_handle    - Integer   | The handle of the child-element
+            a_drawOrder - Integer   | The drawOrder-index the element should get
+    */
+    public void SetChildDrawOrder(final int a_handle, final int a_drawOrder)
+    {
+        this.book.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameElement.this._SetChildDrawOrder(GameElement.this.page.GetElement(a_handle), a_drawOrder);
+            }
+        });
+    }
 
-        // if the element with the given ID was not found, abort
-        if (this.tempElements.content == null)
+    // moves a child-element to the position of its new drawOrder. Is called by the gameThread
+    private void _SetChildDrawOrder(GameElement a_child, int a_drawOrder)
+    {
+        if (a_child == null || a_child.parent != this)
             return;
 
-        this.tempElements2 = this.tempElements;
-        if (this.tempElements.content.drawOrder > a_drawOrder)
-            this.tempElements = this.children;
+        if (this.children.Reorder(a_child, a_drawOrder))
+            this.Invalidate();
+    }
+
+    /*
+        Function: SortChildren
+            Sets the drawOrder of all child-elements at once and sorts them by it. Sorting is fast if the order
+            barely changed, e.g. when sprites get sorted by their y-position every frame
 
-        // find the first entry that has a higher zIndex than the element should get
-        while (this.tempElements.content != null)
+        Parameter:
+            a_key   - DrawOrderKey  | calculates the new drawOrder of every child-element
+    */
+    public void SortChildren(final DrawOrderKey a_key)
+    {
+        this.book.Post(new Runnable()
         {
-            if (this.tempElements.content.drawOrder > a_drawOrder)
-                break;
+            @Override
+            public void run()
+            {
+                GameElement.this._SortChildren(a_key);
+            }
+        });
+    }
 
-            this.tempElements = this.tempElements.next;
+    // sets the drawOrder of all child-elements and sorts them. Is called by the gameThread
+    private void _SortChildren(DrawOrderKey a_key)
+    {
+        for (int i = 0; i < this.children.Size(); i++)
+        {
+            GameElement child = this.children.Get(i);
+            child.drawOrder = a_key.GetDrawOrder(child);
         }
-
-        // remove the Element from its old position and push it to the new one
-        this.tempElements.push(this.tempElements2.pop());
-        this.tempElements.content.drawOrder = a_drawOrder;
+        this.children.Sort();
+        this.Invalidate();
     }
 
     /*
@@ -254,76 +481,236 @@ public class GameElement
     public void HideOverflow(boolean a_hideOverflow)
     {
         this.hideOverflow = a_hideOverflow;
+        this.InvalidateBounds();
+        this.Invalidate();
+    }
+
+    /*
+        Function: CacheAsLayer
+            Enables or disables caching this element and all its child-elements in a texture. A cached subtree is
+            only rendered again when something inside it changes, otherwise it is drawn as a single quad.
+            Useful for static, complex subtrees (e.g. dialogs, HUDs). The subtree is clipped to this element
+            and flattened to its z-level. Animations of this element are still applied to the cached quad
+
+        Parameter:
+            a_cacheAsLayer  - boolean   | true: the subtree gets cached, false: the subtree is drawn every frame
+    */
+    public void CacheAsLayer(boolean a_cacheAsLayer)
+    {
+        this.cacheAsLayer = a_cacheAsLayer;
+        this.Invalidate();
+        this.InvalidateBounds();
     }
 
-    // calculates frame-updates that are valid for all element-types and updates the child-elemente
+    // calculates frame-updates that are valid for all element-types. Child-elements that need updating are in the active-update list themselves
     final void Update(long a_timeDelta, double a_timeFactor, long a_timePassed)
     {
-        this.tempAnimations = this.animations;
-        while (this.tempAnimations.content != null)
+        for (int i = 0; i < this.animations.Size(); i++)
         {
-            this.tempAnimations.content.Update(a_timeDelta, a_timeFactor, a_timePassed);
-            this.tempAnimations = this.tempAnimations.next;
+            this.animations.Get(i).Update(a_timeDelta, a_timeFactor, a_timePassed);
         }
 
-        this._Update(a_timeDelta, a_timeFactor, a_timePassed);
-        this.tempElements = this.children;
-        while (this.tempElements != null && this.tempElements.content != null)
+        // animated elements change the layers of their parents every frame
+        if (this.animations.Size() > 0)
         {
-            if (this.tempElements.content.needsUpdate == true)
-                this.tempElements.content.Update(a_timeDelta, a_timeFactor, a_timePassed);
-            this.tempElements = this.tempElements.next;
+            if (this.parent != null)
+                this.parent.Invalidate();
+            else
+                this.book.MarkDirty();
         }
+
+        this._Update(a_timeDelta, a_timeFactor, a_timePassed);
     }
 
-    // Draws this element and all its child-elements to the framebuffer
-    final void Draw(float[] a_mvpMatrix, int a_zIndex)
+    // records this element and all its child-elements into the packet the GL-thread draws the next frame from. Is called by the gameThread
+    final void Record(RenderPacket a_packet)
     {
         if (!this.visible)
+        {
+            this.recorded = false;
             return;
+        }
 
-        for (int i = 0; i < 16; i++)
+        if (this.boundsDirty)
+            this._UpdateBounds();
+
+        int flags = 0;
+        if (this.hideOverflow)
+            flags |= RenderPacket.HIDE_OVERFLOW;
+        if (this._IsCached())
+            flags |= RenderPacket.CACHE_AS_LAYER;
+        if (this.boundsUnknown)
+            flags |= RenderPacket.BOUNDS_UNKNOWN;
+        if (this.animations.Size() > 0)
+            flags |= RenderPacket.ANIMATED;
+
+        // elements that weren't recorded before don't have a previous position to move from
+        float previousX = this.recorded ? this.recordedX : this.vectorX;
+        float previousY = this.recorded ? this.recordedY : this.vectorY;
+        this.recorded = true;
+        this.recordedX = this.vectorX;
+        this.recordedY = this.vectorY;
+
+        int index = a_packet.Add(this, this.vectorX, this.vectorY, this.vectorWidth, this.vectorHeight, this.zIndex, previousX, previousY, flags, this.contentVersion);
+        if (this.animations.Size() > 0)
         {
-            this.elementMvpMatrix[i] = a_mvpMatrix[i];
+            // the GL-thread only sees the state of the animations at the time of the record
+            if (this.animationMatrix == null)
+                this.animationMatrix = new float[16];
+            Matrix.setIdentityM(this.animationMatrix, 0);
+            for (int i = 0; i < this.animations.Size(); i++)
+            {
+                this.animations.Get(i).Apply(this.animationMatrix);
+            }
+            a_packet.SetAnimation(index, this.animationMatrix);
+        }
+        a_packet.SetBounds(index, this.boundsLeft, this.boundsBottom, this.boundsRight, this.boundsTop);
+        this._Record(a_packet);
+
+        for (int i = 0; i < this.children.Size(); i++)
+        {
+            this.children.Get(i).Record(a_packet);
         }
+        a_packet.EndSubtree(index);
+    }
+
+    // Draws this element and all its child-elements as they were recorded in the packet. a_mvpVersion changes whenever a_mvpMatrix changes
+    final void Draw(RenderPacket a_packet, int a_index, float[] a_mvpMatrix, int a_mvpVersion, int a_zIndex)
+    {
+        float x = a_packet.geometry[a_index*4];
+        float y = a_packet.geometry[a_index*4 + 1];
+        float width = a_packet.geometry[a_index*4 + 2];
+        float height = a_packet.geometry[a_index*4 + 3];
+        float z = -(a_packet.zIndices[a_index] + 1);
+        int flags = a_packet.flags[a_index];
+        SpriteBatch batch = this.book.gameRenderer.spriteBatch;
+
+        // the element is drawn between its previous and its recorded position, depending on the time passed since the record
+        float previousX = a_packet.previousPositions[a_index*2];
+        float previousY = a_packet.previousPositions[a_index*2 + 1];
+        float drawX = previousX + (x - previousX) * a_packet.alpha;
+        float drawY = previousY + (y - previousY) * a_packet.alpha;
+
+        // animations change the matrices every frame
+        if ((flags & RenderPacket.ANIMATED) != 0 || a_mvpMatrix != this.transformSource || a_mvpVersion != this.transformSourceVersion ||
+            x != this.transformX || y != this.transformY || width != this.transformWidth || height != this.transformHeight ||
+            drawX != this.transformDrawX || drawY != this.transformDrawY || a_packet.zIndices[a_index] != this.transformZIndex)
+            this._UpdateTransform(a_packet, a_index, a_mvpMatrix, a_mvpVersion, drawX, drawY, x, y, width, height);
+
+        // skip the whole subtree if nothing of it is inside the viewport
+        if ((flags & RenderPacket.BOUNDS_UNKNOWN) == 0 && Culling.IsOutside(this.elementMvpMatrix, a_packet.bounds[a_index*4], a_packet.bounds[a_index*4 + 1], a_packet.bounds[a_index*4 + 2], a_packet.bounds[a_index*4 + 3], z))
+            return;
+
+        // elements without a size might still draw something (e.g. labels before their font is loaded), so they are never culled
+        boolean onScreen = width == 0 || height == 0 || !Culling.IsOutside(this.elementMvpMatrix, x, y, x + width, y + height, z);
 
-		Matrix.translateM(this.elementMvpMatrix, 0, this.vectorX + this.vectorWidth/2, this.vectorY + this.vectorHeight/2, -(this.zIndex + 1));
-        this.drawAnimations = this.animations;
-        while (this.drawAnimations.content != null)
+        // cached elements draw the texture of their layer instead of their subtree
+        if ((flags & RenderPacket.CACHE_AS_LAYER) != 0)
         {
-            this.drawAnimations.content.Apply(this.elementMvpMatrix);
-            this.drawAnimations = this.drawAnimations.next;
+            if (onScreen)
+                this._DrawLayer(a_packet, a_index, a_zIndex);
+            return;
+        }
+        else if (this.layer != null)
+        {
+            // caching got disabled, the layer has to be released on the GL-thread
+            this.layer.Release();
+            this.layer = null;
         }
-        Matrix.translateM(this.elementMvpMatrix, 0, -this.vectorWidth / 2 - this.vectorX, -this.vectorHeight / 2 - this.vectorY, (this.zIndex + 1));
 
 		// activate the usage of the currently set stencil/mask and draw the Element
-        GLES20.glDepthMask(false);
-        GLES20.glStencilMask(0x00);
-        GLES20.glStencilFunc(GLES20.GL_EQUAL, a_zIndex, 0xFF);
-        this._Draw(this.elementMvpMatrix);
+        if (onScreen)
+        {
+            batch.SetStencilLevel(a_zIndex);
+            this.drawPacket = a_packet;
+            this.drawIndex = a_index;
+            this._Draw(this.elementMvpMatrix);
+            this.drawPacket = null;
+        }
 
-        // apply masks, this potentially increases the z-index
-        if (this.hideOverflow)
-            a_zIndex = this._ApplyMask(this.elementMvpMatrix, a_zIndex);
+        // clip the child-elements. Child-elements of a hidden masking element are hidden as well
+        boolean scissored = false;
+        int maskedZIndex = a_zIndex;
+        if ((flags & RenderPacket.HIDE_OVERFLOW) != 0)
+        {
+            if (!onScreen)
+                return;
 
-		Matrix.translateM(this.elementMvpMatrix, 0, this.vectorX - this.book.gameRenderer.left, this.vectorY - this.book.gameRenderer.bottom, 0);
-        this.drawElements = this.children;
-        while (this.drawElements.content != null)
+            // elements that stay axis-aligned on the screen are clipped with the scissor-box, everything else with the stencil
+            scissored = batch.PushScissor(this.elementMvpMatrix, x, y, x + width, y + height, z);
+            if (scissored && batch.IsScissorEmpty())
+            {
+                batch.PopScissor();
+                return;
+            }
+
+            // applying the mask potentially increases the z-index
+            if (!scissored)
+            {
+                this.drawPacket = a_packet;
+                this.drawIndex = a_index;
+                maskedZIndex = this._ApplyMask(this.elementMvpMatrix, a_zIndex);
+                this.drawPacket = null;
+            }
+        }
+
+        for (int child = a_index + 1; child < a_packet.subtreeEnds[a_index]; child = a_packet.subtreeEnds[child])
+        {
+            a_packet.elements[child].Draw(a_packet, child, this.childMvpMatrix, this.transformVersion, maskedZIndex);
+        }
+
+        // undo the clipping, so the stencil-buffer doesn't need to be cleared for the next element
+        if (scissored)
+            batch.PopScissor();
+        else if (maskedZIndex != a_zIndex)
+            this._RemoveMask(this.elementMvpMatrix, maskedZIndex);
+    }
+
+    // calculates the matrix of this element (including the recorded animations) and the matrix of its child-elements. The element is moved from its recorded position (a_x, a_y) to the interpolated one (a_drawX, a_drawY)
+    private void _UpdateTransform(RenderPacket a_packet, int a_index, float[] a_mvpMatrix, int a_mvpVersion, float a_drawX, float a_drawY, float a_x, float a_y, float a_width, float a_height)
+    {
+        float zIndex = a_packet.zIndices[a_index];
+        this.transformSource = a_mvpMatrix;
+        this.transformSourceVersion = a_mvpVersion;
+        this.transformDrawX = a_drawX;
+        this.transformDrawY = a_drawY;
+        this.transformX = a_x;
+        this.transformY = a_y;
+        this.transformWidth = a_width;
+        this.transformHeight = a_height;
+        this.transformZIndex = zIndex;
+
+        for (int i = 0; i < 16; i++)
+        {
+            this.elementMvpMatrix[i] = a_mvpMatrix[i];
+        }
+
+		Matrix.translateM(this.elementMvpMatrix, 0, a_drawX + a_width/2, a_drawY + a_height/2, -(zIndex + 1));
+        if (a_packet.animationOffsets[a_index] >= 0)
         {
-            this.drawElements.content.Draw(this.elementMvpMatrix, a_zIndex);
-            this.drawElements = this.drawElements.next;
+            // childMvpMatrix gets overwritten below anyway, so it holds the product meanwhile
+            Matrix.multiplyMM(this.childMvpMatrix, 0, this.elementMvpMatrix, 0, a_packet.animationMatrices, a_packet.animationOffsets[a_index]);
+            System.arraycopy(this.childMvpMatrix, 0, this.elementMvpMatrix, 0, 16);
         }
+        Matrix.translateM(this.elementMvpMatrix, 0, -a_width / 2 - a_x, -a_height / 2 - a_y, (zIndex + 1));
+
+        for (int i = 0; i < 16; i++)
+        {
+            this.childMvpMatrix[i] = this.elementMvpMatrix[i];
+        }
+		Matrix.translateM(this.childMvpMatrix, 0, a_x - this.book.gameRenderer.left, a_y - this.book.gameRenderer.bottom, 0);
+
+        // the child-elements compare this to find out their matrices are outdated
+        this.transformVersion++;
     }
 
 	// gets called once OpenGL is ready to be used
     final void OGLReady()
     {
         this._OGLReady();
-        this.drawElements = this.children;
-        while (this.drawElements.content != null)
+        for (int i = 0; i < this.children.Size(); i++)
         {
-            this.drawElements.content.OGLReady();
-            this.drawElements = this.drawElements.next;
+            this.children.Get(i).OGLReady();
         }
     }
 
@@ -334,19 +721,293 @@ public class GameElement
 		this.SetSize(this.width, this.height);
 
 		this._UpdateScreenDimensions(a_horzVertexRatio, a_vertVertexRatio);
-		this.drawElements = this.children;
-		while (this.drawElements.content != null)
+		for (int i = 0; i < this.children.Size(); i++)
 		{
-			this.drawElements.content.UpdateScreenDimensions(a_horzVertexRatio, a_vertVertexRatio);
-			this.drawElements = this.drawElements.next;
+			this.children.Get(i).UpdateScreenDimensions(a_horzVertexRatio, a_vertVertexRatio);
 		}
 	}
 
+    // converts a width in pixels to the width in vertex-space
+    protected final float PixelToVectorWidth(int a_width)
+    {
+        return ((float) a_width / this.book.gameWidth) * this.book.gameRenderer.width;
+    }
+
+    // converts a height in pixels to the height in vertex-space
+    protected final float PixelToVectorHeight(int a_height)
+    {
+        return ((float) a_height / this.book.gameHeight) * this.book.gameRenderer.height;
+    }
+
+    /*
+        Function: Invalidate
+            Marks the cached layers of this element and all its parents as outdated (see CacheAsLayer). Has to be
+            called by controls whenever they would draw something different
+    */
+    protected final void Invalidate()
+    {
+        GameElement element = this;
+        while (element != null)
+        {
+            element.contentVersion++;
+            element = element.linked ? element.parent : null;
+        }
+        this.book.MarkDirty();
+    }
+
+    // true if this element currently gets drawn from its layer. Elements without a size can't be cached
+    private boolean _IsCached()
+    {
+        return this.cacheAsLayer && this.vectorWidth > 0 && this.vectorHeight > 0;
+    }
+
+    // draws the texture of the layer, after rendering the subtree into it if it changed
+    private void _DrawLayer(RenderPacket a_packet, int a_index, int a_zIndex)
+    {
+        float x = a_packet.geometry[a_index*4];
+        float y = a_packet.geometry[a_index*4 + 1];
+        float width = a_packet.geometry[a_index*4 + 2];
+        float height = a_packet.geometry[a_index*4 + 3];
+        GameRenderer renderer = this.book.gameRenderer;
+        SpriteBatch batch = renderer.spriteBatch;
+        if (this.layer == null)
+        {
+            this.layer = new RenderLayer(renderer.glState);
+            this.layerMvpMatrix = new float[16];
+        }
+
+        // the texture gets the size the element has on the screen
+        int textureWidth = Math.max(1, (int) Math.ceil(width / renderer.width * renderer.displayWidth));
+        int textureHeight = Math.max(1, (int) Math.ceil(height / renderer.height * renderer.displayHeight));
+        boolean created = this.layer.Prepare(batch, textureWidth, textureHeight, x, y, x + width, y + height, -(a_packet.zIndices[a_index] + 1));
+        if (created || this.layerVersion != a_packet.contentVersions[a_index])
+            this._RenderLayer(a_packet, a_index, renderer, batch);
+
+        // rendering the layer changed the stencil-level
+        batch.SetStencilLevel(a_zIndex);
+        batch.Draw(batch.layerProgram, this.layer.texture, this.elementMvpMatrix, this.layer.coords, this.layer.texturePositions, null);
+    }
+
+    // renders this element and its child-elements into the texture of the layer
+    private void _RenderLayer(RenderPacket a_packet, int a_index, GameRenderer a_renderer, SpriteBatch a_batch)
+    {
+        this.layerVersion = a_packet.contentVersions[a_index];
+
+        a_batch.BeginTarget(this.layer.framebuffer, this.layer.width, this.layer.height);
+        boolean layerBlending = a_renderer.glState.SetLayerBlending(true);
+
+        // alpha holds the transparency, so a cleared layer is fully transparent
+        a_renderer.glState.StencilMask(0xFF);
+        a_renderer.glState.ColorMask(true, true, true, true);
+        a_renderer.glState.ClearColor(0, 0, 0, 1);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_STENCIL_BUFFER_BIT);
+
+        a_batch.SetStencilLevel(0);
+        this.drawPacket = a_packet;
+        this.drawIndex = a_index;
+        this._Draw(this.layer.mvpMatrix);
+        this.drawPacket = null;
+
+        for (int i = 0; i < 16; i++)
+        {
+            this.layerMvpMatrix[i] = this.layer.mvpMatrix[i];
+        }
+        Matrix.translateM(this.layerMvpMatrix, 0, a_packet.geometry[a_index*4] - a_renderer.left, a_packet.geometry[a_index*4 + 1] - a_renderer.bottom, 0);
+        this.layerMvpVersion++;
+        for (int child = a_index + 1; child < a_packet.subtreeEnds[a_index]; child = a_packet.subtreeEnds[child])
+        {
+            a_packet.elements[child].Draw(a_packet, child, this.layerMvpMatrix, this.layerMvpVersion, 0);
+        }
+
+        a_batch.EndTarget();
+        a_renderer.glState.SetLayerBlending(layerBlending);
+    }
+
+    /*
+        Function: InvalidateBounds
+            Marks the bounds of this element and all its parents as outdated. Has to be called by
+            controls that change how much space they draw on without calling SetPosition or SetSize
+    */
+    protected final void InvalidateBounds()
+    {
+        GameElement element = this;
+        while (element != null)
+        {
+            element.boundsDirty = true;
+            element = element.linked ? element.parent : null;
+        }
+        this.book.MarkDirty();
+    }
+
+    // calculates the area covered by this element and all its child-elements
+    private void _UpdateBounds()
+    {
+        this.boundsDirty = false;
+
+        // elements without a size might still draw something, so their bounds are unknown
+        this.boundsUnknown = this.vectorWidth == 0 || this.vectorHeight == 0;
+        if (this.boundsUnknown)
+            return;
+
+        this.boundsLeft = this.vectorX;
+        this.boundsBottom = this.vectorY;
+        this.boundsRight = this.vectorX + this.vectorWidth;
+        this.boundsTop = this.vectorY + this.vectorHeight;
+
+        // child-elements can't be visible outside of this element
+        if (this.hideOverflow || this._IsCached())
+            return;
+
+        // child-elements get drawn relative to this element
+        float offsetX = this.vectorX - this.book.gameRenderer.left;
+        float offsetY = this.vectorY - this.book.gameRenderer.bottom;
+        for (int i = 0; i < this.children.Size(); i++)
+        {
+            GameElement child = this.children.Get(i);
+            if (child.boundsDirty)
+                child._UpdateBounds();
+
+            // animations can move a child anywhere, and other z-levels project differently in 3D-mode
+            if (child.boundsUnknown || child.animations.Size() > 0 || child.zIndex != this.zIndex)
+            {
+                this.boundsUnknown = true;
+                return;
+            }
+
+            this.boundsLeft = Math.min(this.boundsLeft, child.boundsLeft + offsetX);
+            this.boundsBottom = Math.min(this.boundsBottom, child.boundsBottom + offsetY);
+            this.boundsRight = Math.max(this.boundsRight, child.boundsRight + offsetX);
+            this.boundsTop = Math.max(this.boundsTop, child.boundsTop + offsetY);
+        }
+    }
+
+    /*
+        Function: EnableUpdating
+            Adds this element to the active-update list of its page, so it gets updated every frame until
+            DisableUpdating gets called. Only the elements in the list are updated, not their parents or children
+    */
     protected final void EnableUpdating()
     {
-        this.needsUpdate = true;
-        if (this.parent != null)
-            this.parent.EnableUpdating();
+        this._PostUpdating(true);
+    }
+
+    /*
+        Function: DisableUpdating
+            Removes this element from the active-update list of its page, it doesn't get updated anymore
+    */
+    protected final void DisableUpdating()
+    {
+        this._PostUpdating(false);
+    }
+
+    // changes the active-update list right away on the gameThread, from other threads and parallel updates before the next update
+    private void _PostUpdating(final boolean a_updating)
+    {
+        if (this.book.CanMutate())
+        {
+            this.SetUpdating(a_updating);
+            return;
+        }
+
+        this.book.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameElement.this.SetUpdating(a_updating);
+            }
+        });
+    }
+
+    // adds this element to or removes it from the active-update list of its page. Is called by the gameThread
+    void SetUpdating(boolean a_updating)
+    {
+        if (this.needsUpdate == a_updating)
+            return;
+
+        this.needsUpdate = a_updating;
+        if (a_updating)
+            this.page.AddActive(this);
+        else
+            this.page.RemoveActive(this);
+    }
+
+    /*
+        Function: StartTimer
+            Schedules a timed callback on the timer wheel of the GameBook. Timers are fired by the gameThread
+            before the elements get updated, and cost nothing while they wait. A timer can start itself again
+            in its Fire-function to run periodically, without allocating anything
+
+        Parameter:
+            a_timer - TimerWheel.Timer  | the callback to schedule. Gets rescheduled if it is already scheduled
+            a_delay - long              | the delay in milliseconds
+    */
+    protected final void StartTimer(final TimerWheel.Timer a_timer, final long a_delay)
+    {
+        if (this.book.CanMutate())
+        {
+            this.book.timers.Schedule(a_timer, a_delay * 1000000);
+            return;
+        }
+
+        this.book.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameElement.this.book.timers.Schedule(a_timer, a_delay * 1000000);
+            }
+        });
+    }
+
+    /*
+        Function: StopTimer
+            Cancels a timed callback started with StartTimer
+
+        Parameter:
+            a_timer - TimerWheel.Timer  | the callback to cancel
+    */
+    protected final void StopTimer(final TimerWheel.Timer a_timer)
+    {
+        if (this.book.CanMutate())
+        {
+            this.book.timers.Cancel(a_timer);
+            return;
+        }
+
+        this.book.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GameElement.this.book.timers.Cancel(a_timer);
+            }
+        });
+    }
+
+    /*
+        Function: DisableParallelUpdate
+            Declares that the _Update of this element is not parallel-safe, e.g. because it changes state shared
+            with other elements. With parallel updating enabled (see GameBook.SetParallelUpdate), this element
+            is then updated on the gameThread, after the parallel updates
+    */
+    protected final void DisableParallelUpdate()
+    {
+        this.serialUpdate = true;
+    }
+
+    // gets called by the gameThread once the element got removed from its page
+    final void Detach()
+    {
+        this.linked = false;
+        this.page.UnindexElement(this);
+        this.SetUpdating(false);
+        this._Detach();
+    }
+
+    // placeholder for the _Detach-function (e.g. to stop timers). Can be overwritten by the actual controls
+    protected void _Detach()
+    {
     }
 
     // placeholder for the _OGLReady-function. Can be overwritten by the actual controls
@@ -364,6 +1025,11 @@ public class GameElement
     {
     }
 
+    // placeholder for the _Record-function. Adds the state _Draw needs to the packet (see RenderPacket.AddFloats). Can be overwritten by the actual controls
+    protected void _Record(RenderPacket a_packet)
+    {
+    }
+
     // placeholder for the _Draw-function. Can be overwritten by the actual controls
     protected void _Draw(float[] a_mvpMatrix)
     {
@@ -374,4 +1040,9 @@ public class GameElement
     {
         return a_zIndex;
     }
+
+    // placeholder for the _RemoveMask-function. Has to undo what _ApplyMask did. Can be overwritten by the actual controls
+    protected void _RemoveMask(float[] a_mvpMatrix, int a_zIndex)
+    {
+    }
 }
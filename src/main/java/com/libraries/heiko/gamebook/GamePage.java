@@ -1,32 +1,34 @@
 package com.libraries.heiko.gamebook;
 
-import android.opengl.GLES20;
-
 import com.libraries.heiko.gamebook.controls.Label;
 import com.libraries.heiko.gamebook.controls.MapLayer;
 import com.libraries.heiko.gamebook.controls.Sheet;
 import com.libraries.heiko.gamebook.tools.GameFont;
-import com.libraries.heiko.gamebook.tools.GameStack;
+import com.libraries.heiko.gamebook.tools.GameList;
+import com.libraries.heiko.gamebook.tools.HandleTable;
+import com.libraries.heiko.gamebook.tools.SortedList;
+
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by heiko on 19.02.2016.
  */
 public class GamePage
 {
-    public String id;                                   // The ID of the GamePage
+    public String id;                                   // The ID of the GamePage, only used to find the page by name
+    int handle = 0;                                     // handle of the page in its GameBook, 0 while it isn't added
     private GameBook book;                              // Reference to the GameBook that created this GamePage
-    private GameStack<GameElement> elements;            // beinhaltet nur die "Parentlosten" elemente. Verweise zu den anderen Elementen der Page laufen über diese
+    private SortedList<GameElement> elements;           // beinhaltet nur die "Parentlosten" elemente. Verweise zu den anderen Elementen der Page laufen über diese
     boolean visible = false;                            // true: the GamePage and its elements will be visible, false: The GamePage will be invisible
     int drawOrder = 0;                                  // z-index of the Page. Pages with a lower z-index will be drawn first (below other pages)
-
-    // cache-variables to prevent memory-allocations
-    private GameElement currentElment;                  // used to add new elements
-    private GameElement tempElement;                    // used to update the elements
-    private GameStack<GameElement> temp;                // used by everything but the _Draw function to iterate through the elements
-    private GameStack<GameElement> temp2;               // used by everything but the _Draw function to iterate through the elements
-    public GameStack<GameElement> renderElements;       // used by the _Draw function to iterate through the elements
-
-    public GameStack<GameElement> getElements()
+    int drawSequence = 0;                               // order of the pages with the same drawOrder, see SortedList
+    private ConcurrentHashMap<String, GameElement> elementIndex;    // all elements of the page by ID, including the ones the gameThread didn't link yet
+    private HandleTable<GameElement> handles;           // all elements of the page by handle, including the ones the gameThread didn't link yet
+    GameElement firstActive, lastActive;                // the active-update list: the elements that get updated every frame, linked through GameElement.activeNext
+    private boolean walkingActive = false;              // true while Update walks the active-update list. Removed elements are only unlinked afterwards
+    private boolean removedWhileWalking = false;        // true if elements left the active-update list during the current walk
+
+    public GameList<GameElement> getElements()
     {
         return elements;
     }
@@ -47,38 +49,100 @@ public class GamePage
         this.id = a_id;
         this.visible = a_visible;
         this.book = a_gamebook;
-        this.elements = new GameStack<GameElement>();
+        this.elements = new GameElement.DrawOrderList();
+        this.elementIndex = new ConcurrentHashMap<String, GameElement>();
+        this.handles = new HandleTable<GameElement>();
     }
 
-    // updates the game-mechanics of the elements of this GamePage
+    // updates the game-mechanics of the elements in the active-update list of this GamePage
     void Update(long a_timeDelta, double a_timeFactor, long a_timePassed)
     {
-        if (this.elements == null)
+        // elements leaving the list during the walk stay linked until it is done, so the walk never follows a stale link.
+        // Elements joining the list get appended and updated in the same walk
+        this.walkingActive = true;
+        try
+        {
+            GameElement element = this.firstActive;
+            while (element != null)
+            {
+                if (element.needsUpdate)
+                    element.Update(a_timeDelta, a_timeFactor, a_timePassed);
+                element = element.activeNext;
+            }
+        } finally
+        {
+            this.walkingActive = false;
+        }
+
+        if (!this.removedWhileWalking)
             return;
 
-        this.temp = this.elements;
-        while (this.temp != null && this.temp.content != null)
+        this.removedWhileWalking = false;
+        GameElement element = this.firstActive;
+        while (element != null)
         {
-            if (this.temp.content.needsUpdate == true)
-                this.temp.content.Update(a_timeDelta, a_timeFactor, a_timePassed);
-
-            this.temp = this.temp.next;
+            GameElement next = element.activeNext;
+            if (!element.needsUpdate)
+                this._UnlinkActive(element);
+            element = next;
         }
     }
 
-    // draws the elements of this GamePage to the current framebuffer
-    void Draw(float[] a_mvpMatrix)
+    // appends an element to the active-update list. Is called by the gameThread
+    void AddActive(GameElement a_element)
+    {
+        // the element left the list during the current walk, but is still linked
+        if (a_element.activeLinked)
+            return;
+
+        a_element.activeLinked = true;
+        a_element.activePrev = this.lastActive;
+        a_element.activeNext = null;
+        if (this.lastActive == null)
+            this.firstActive = a_element;
+        else
+            this.lastActive.activeNext = a_element;
+        this.lastActive = a_element;
+    }
+
+    // removes an element from the active-update list. During a walk of the list, it only gets unlinked once the walk is done. Is called by the gameThread
+    void RemoveActive(GameElement a_element)
+    {
+        if (!a_element.activeLinked)
+            return;
+
+        if (this.walkingActive)
+            this.removedWhileWalking = true;
+        else
+            this._UnlinkActive(a_element);
+    }
+
+    // unlinks an element from the active-update list
+    private void _UnlinkActive(GameElement a_element)
+    {
+        if (a_element.activePrev == null)
+            this.firstActive = a_element.activeNext;
+        else
+            a_element.activePrev.activeNext = a_element.activeNext;
+
+        if (a_element.activeNext == null)
+            this.lastActive = a_element.activePrev;
+        else
+            a_element.activeNext.activePrev = a_element.activePrev;
+        a_element.activePrev = null;
+        a_element.activeNext = null;
+        a_element.activeLinked = false;
+    }
+
+    // records the elements of this GamePage into the packet the next frame gets drawn from. Is called by the gameThread
+    void Record(RenderPacket a_packet)
     {
         if (this.elements == null)
             return;
 
-        this.renderElements = elements;
-        while (this.renderElements.content != null)
+        for (int i = 0; i < this.elements.Size(); i++)
         {
-            GLES20.glStencilMask(0xFF);
-            GLES20.glClear(GLES20.GL_STENCIL_BUFFER_BIT);
-            this.renderElements.content.Draw(a_mvpMatrix, 0);
-            this.renderElements = this.renderElements.next;
+            this.elements.Get(i).Record(a_packet);
         }
     }
 
@@ -88,11 +152,9 @@ public class GamePage
         if (this.elements == null)
             return;
 
-        this.renderElements = elements;
-        while (this.renderElements.content != null)
+        for (int i = 0; i < this.elements.Size(); i++)
         {
-            this.renderElements.content.OGLReady();
-            this.renderElements = this.renderElements.next;
+            this.elements.Get(i).OGLReady();
         }
     }
 
@@ -102,11 +164,9 @@ public class GamePage
         if (this.elements == null)
             return;
 
-        this.renderElements = elements;
-        while (this.renderElements.content != null)
+        for (int i = 0; i < this.elements.Size(); i++)
         {
-            this.renderElements.content.UpdateScreenDimensions(a_horzVertexRatio, a_vertVertexRatio);
-            this.renderElements = this.renderElements.next;
+            this.elements.Get(i).UpdateScreenDimensions(a_horzVertexRatio, a_vertVertexRatio);
         }
     }
 
@@ -122,20 +182,45 @@ public class GamePage
     */
     public GameElement GetElement(String a_id)
     {
-        this.temp = this.elements;
-        while (this.temp != null && this.temp.content != null)
-        {
-            if (this.temp.content.id.equals(a_id))
-                return this.temp.content;
+        if (a_id == null)
+            return null;
 
-            this.tempElement = this.temp.content.GetElement(a_id);
-            if (this.tempElement != null && this.tempElement != null)
-                return this.tempElement;
+        return this.elementIndex.get(a_id);
+    }
 
-            this.temp = this.temp.next;
-        }
+    /*
+        Function: GetElement
+            Returns the GameElement with the given handle
 
-        return null;
+        Parameter:
+            a_handle    - Integer   | The handle of the element, see GameElement.GetHandle
+
+        Returns:
+            GameElement -> - The GameElement with the given handle, null if it got removed
+    */
+    public GameElement GetElement(int a_handle)
+    {
+        return this.handles.Get(a_handle);
+    }
+
+    // gives an element its handle and adds it to the ID-index, unless it is indexed already or the ID is taken. Is called by GameElement.AddChild
+    void IndexElement(GameElement a_element)
+    {
+        if (a_element.handle == 0)
+            a_element.handle = this.handles.Add(a_element);
+        if (a_element.id != null)
+            this.elementIndex.putIfAbsent(a_element.id, a_element);
+    }
+
+    // removes an element from the ID-index and invalidates its handle, unless that happened already. Is called when the removal
+    // of the element is requested and by the gameThread once the element got removed
+    void UnindexElement(GameElement a_element)
+    {
+        if (a_element.id != null)
+            this.elementIndex.remove(a_element.id, a_element);
+        if (a_element.handle != 0)
+            this.handles.Remove(a_element.handle);
+        a_element.handle = 0;
     }
 
     /*
@@ -144,10 +229,22 @@ public class GamePage
     */
     public void RemoveAllElements()
     {
-        this.temp = this.elements;
-        while (this.temp != null && this.temp.content != null)
+        this.book.Post(new Runnable()
         {
-            this.RemoveElement(this.temp);
+            @Override
+            public void run()
+            {
+                GamePage.this._RemoveAllElements();
+            }
+        });
+    }
+
+    // removes all elements from this GamePage. Is called by the gameThread
+    private void _RemoveAllElements()
+    {
+        while (this.elements.Size() > 0)
+        {
+            this._RemoveElementAt(this.elements.Size() - 1);
         }
     }
 
@@ -160,32 +257,58 @@ public class GamePage
     */
     public void RemoveElement(String a_id)
     {
-        this.tempElement = this.GetElement(a_id);
-        if (this.tempElement == null)
+        this.RemoveElement(this.GetElement(a_id));
+    }
+
+    /*
+        Function: RemoveElement
+            Removes an elemente from this GamePage
+
+        Parameter:
+            a_handle    - Integer   | handle of the GameElement to remove
+    */
+    public void RemoveElement(int a_handle)
+    {
+        this.RemoveElement(this.handles.Get(a_handle));
+    }
+
+    // frees the handle and the ID of an element right away, like adding it takes them right away, and posts unlinking it
+    private void RemoveElement(final GameElement a_element)
+    {
+        if (a_element == null)
             return;
 
-        if (this.tempElement.parent != null)
-            this.tempElement.parent.RemoveChild(a_id);
-        else
+        this.UnindexElement(a_element);
+        this.book.Post(new Runnable()
         {
-            this.temp = this.elements;
-            while (this.temp != null && this.temp.content != null)
+            @Override
+            public void run()
             {
-                if (this.temp.content.id.equals(a_id))
-                {
-                    this.RemoveElement(this.temp);
-                    return;
-                }
-
-                this.temp = this.temp.next;
+                GamePage.this._RemoveElement(a_element);
             }
+        });
+    }
+
+    // removes an element from this GamePage. Is called by the gameThread
+    private void _RemoveElement(GameElement a_element)
+    {
+        if (a_element.parent != null)
+            a_element.parent._RemoveChild(a_element);
+        else
+        {
+            int index = this.elements.IndexOf(a_element);
+            if (index >= 0)
+                this._RemoveElementAt(index);
         }
     }
 
-    private void RemoveElement(GameStack<GameElement> a_element)
+    // removes the element at the given index and its children. Is called by the gameThread
+    private void _RemoveElementAt(int a_index)
     {
-        a_element.content.RemoveAllChildren();
-        a_element.pop();
+        GameElement element = this.elements.Get(a_index);
+        element.RemoveAllChildren();
+        element.Detach();
+        this.elements.RemoveAt(a_index);
     }
 
     /*
@@ -200,7 +323,19 @@ public class GamePage
         if (this.drawOrder == a_drawOrder)
             return;
 
-        this.book.SetPageDrawOrder(this.id, a_drawOrder);
+        this.book.SetPageDrawOrder(this.handle, a_drawOrder);
+    }
+
+    /*
+        Function: GetHandle
+            Returns the handle of this page. It stays valid until the page gets removed
+
+        Returns:
+            int -> - the handle of the page, 0 if the page isn't added to a GameBook
+    */
+    public int GetHandle()
+    {
+        return this.handle;
     }
 
     /*
@@ -208,39 +343,81 @@ public class GamePage
             Sets the drawOrder-Index of a child-element of this page. Higher draworder = later rendering = above other elements
 
         Parameter:
-            a_drawOrder - Integer   | The drawOrder-index the page should get
+            a_id        - String    | ID of the element
+            a_drawOrder - Integer   | The drawOrder-index the element should get
     */
-    public void SetChildDrawOrder(String a_id, int a_drawOrder)
+    public void SetChildDrawOrder(final String a_id, final int a_drawOrder)
     {
-        this.temp = this.elements;
-        while (this.temp.content != null)
+        this.book.Post(new Runnable()
         {
-            if (this.temp.content.id.equals(a_id))
-                break;
+            @Override
+            public void run()
+            {
+                GamePage.this._SetChildDrawOrder(GamePage.this.GetElement(a_id), a_drawOrder);
+            }
+        });
+    }
 
-            this.temp = this.temp.next;
-        }
+    /*
+        Function: SetChildDrawOrder
+            Sets the drawOrder-Index of a child-element of this page. Higher draworder = later rendering = above other elements
+
+        Parameter:
+            a_handle    - Integer   | handle of the element
+            a_drawOrder - Integer   | The drawOrder-index the element should get
+    */
+    public void SetChildDrawOrder(final int a_handle, final int a_drawOrder)
+    {
+        this.book.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                GamePage.this._SetChildDrawOrder(GamePage.this.handles.Get(a_handle), a_drawOrder);
+            }
+        });
+    }
 
-        // if the element with the given ID was not found, abort
-        if (this.temp.content == null)
+    // moves an element to the position of its new drawOrder. Is called by the gameThread
+    private void _SetChildDrawOrder(GameElement a_element, int a_drawOrder)
+    {
+        if (a_element == null || a_element.parent != null)
             return;
 
-        this.temp2 = this.temp;
-        if (this.temp.content.drawOrder > a_drawOrder)
-            this.temp = this.elements;
+        if (this.elements.Reorder(a_element, a_drawOrder))
+            this.book.MarkDirty();
+    }
+
+    /*
+        Function: SortElements
+            Sets the drawOrder of all elements without a parent at once and sorts them by it. Sorting is fast if the
+            order barely changed, e.g. when sprites get sorted by their y-position every frame
 
-        // find the first entry that has a higher zIndex than the element should get
-        while (this.temp.content != null)
+        Parameter:
+            a_key   - DrawOrderKey  | calculates the new drawOrder of every element
+    */
+    public void SortElements(final GameElement.DrawOrderKey a_key)
+    {
+        this.book.Post(new Runnable()
         {
-            if (this.temp.content.drawOrder > a_drawOrder)
-                break;
+            @Override
+            public void run()
+            {
+                GamePage.this._SortElements(a_key);
+            }
+        });
+    }
 
-            this.temp = this.temp.next;
+    // sets the drawOrder of all elements without a parent and sorts them. Is called by the gameThread
+    private void _SortElements(GameElement.DrawOrderKey a_key)
+    {
+        for (int i = 0; i < this.elements.Size(); i++)
+        {
+            GameElement element = this.elements.Get(i);
+            element.drawOrder = a_key.GetDrawOrder(element);
         }
-
-        // remove the Element from its old position and push it to the new one
-        this.temp.push(this.temp2.pop());
-        this.temp.content.drawOrder = a_drawOrder;
+        this.elements.Sort();
+        this.book.MarkDirty();
     }
 
     /*
@@ -248,7 +425,7 @@ public class GamePage
             Adds a new label to the GamePage
 
         Parameter:
-            a_id        - String    | The ID of the new element
+            a_id        - String    | The ID of the new element, can be null
             a_parentID  - String    | The ID of the GameElement that should act as the parent for the new element
             a_x         - int       | x-position of the new element
             a_y         - int       | y-position of the new element
@@ -258,11 +435,35 @@ public class GamePage
             GameElement -> - The new label
     */
     public GameElement AddLabel(String a_id, String a_parentID, int a_x, int a_y, GameFont a_font, String a_text)
+    {
+        return this._AddLabel(a_id, this.GetParentElement(a_parentID), a_x, a_y, a_font, a_text);
+    }
+
+    /*
+        Function: AddLabel
+            Adds a new label to the GamePage
+
+        Parameter:
+            a_id            - String    | The ID of the new element, can be null
+            a_parentHandle  - Integer   | The handle of the GameElement that should act as the parent for the new element, 0 for none
+            a_x             - int       | x-position of the new element
+            a_y             - int       | y-position of the new element
+            a_text          - String    | The text that the new label will show
+
+        Returns:
+            GameElement -> - The new label
+    */
+    public GameElement AddLabel(String a_id, int a_parentHandle, int a_x, int a_y, GameFont a_font, String a_text)
+    {
+        return this._AddLabel(a_id, this.GetParentElement(a_parentHandle), a_x, a_y, a_font, a_text);
+    }
+
+    // creates a label and adds it to the GamePage
+    private GameElement _AddLabel(String a_id, GameElement a_parent, int a_x, int a_y, GameFont a_font, String a_text)
     {
         this.CheckElementAlreadyExists(a_id);
-        this.tempElement = this.GetParentElement(a_parentID);
-        this.currentElment = new Label(a_id, this, this.book, this.tempElement, a_font, a_text);
-        return this.AddElement(this.currentElment, this.tempElement, a_x, a_y);
+        GameElement element = new Label(a_id, this, this.book, a_parent, a_font, a_text);
+        return this.AddElement(element, a_parent, a_x, a_y);
     }
 
     /*
@@ -270,7 +471,7 @@ public class GamePage
             Adds a new label to the GamePage
 
         Parameter:
-            a_id        - String    | The ID of the new element
+            a_id        - String    | The ID of the new element, can be null
             a_parentID  - String    | The ID of the GameElement that should act as the parent for the new element
             a_x         - int       | x-position of the new element
             a_y         - int       | y-position of the new element
@@ -281,11 +482,36 @@ public class GamePage
             GameElement -> - The new Sheet
     */
     public GameElement AddSheet(String a_id, String a_parentID, int a_x, int a_y, int a_width, int a_height)
+    {
+        return this._AddSheet(a_id, this.GetParentElement(a_parentID), a_x, a_y, a_width, a_height);
+    }
+
+    /*
+        Function: AddSheet
+            Adds a new label to the GamePage
+
+        Parameter:
+            a_id            - String    | The ID of the new element, can be null
+            a_parentHandle  - Integer   | The handle of the GameElement that should act as the parent for the new element, 0 for none
+            a_x             - int       | x-position of the new element
+            a_y             - int       | y-position of the new element
+            a_width         - int       | width of the new element
+            a_height        - int       | height of the new element
+
+        Returns:
+            GameElement -> - The new Sheet
+    */
+    public GameElement AddSheet(String a_id, int a_parentHandle, int a_x, int a_y, int a_width, int a_height)
+    {
+        return this._AddSheet(a_id, this.GetParentElement(a_parentHandle), a_x, a_y, a_width, a_height);
+    }
+
+    // creates a sheet and adds it to the GamePage
+    private GameElement _AddSheet(String a_id, GameElement a_parent, int a_x, int a_y, int a_width, int a_height)
     {
         this.CheckElementAlreadyExists(a_id);
-        this.tempElement = this.GetParentElement(a_parentID);
-        this.currentElment = new Sheet(a_id, this, this.book, this.tempElement);
-        return this.AddElement(this.currentElment, this.tempElement, a_x, a_y, a_width, a_height);
+        GameElement element = new Sheet(a_id, this, this.book, a_parent);
+        return this.AddElement(element, a_parent, a_x, a_y, a_width, a_height);
     }
 
     /*
@@ -293,7 +519,7 @@ public class GamePage
             Adds a new AddMapLayer to the GamePage
 
         Parameter:
-            a_id            - String    | The ID of the new element
+            a_id            - String    | The ID of the new element, can be null
             a_parentID      - String    | The ID of the GameElement that should act as the parent for the new element
             a_x             - int       | x-position of the new element
             a_y             - int       | y-position of the new element
@@ -308,11 +534,38 @@ public class GamePage
             GameElement -> - The new MapLayer
     */
     public GameElement AddMapLayer(String a_id, String a_parentID, int a_x, int a_y, int a_mapWidth, int a_mapHeight, int a_tileWidth, int a_tileHeight)
+    {
+        return this._AddMapLayer(a_id, this.GetParentElement(a_parentID), a_x, a_y, a_mapWidth, a_mapHeight, a_tileWidth, a_tileHeight);
+    }
+
+    /*
+        Function: AddMapLayer
+            Adds a new AddMapLayer to the GamePage
+
+        Parameter:
+            a_id            - String    | The ID of the new element, can be null
+            a_parentHandle  - Integer   | The handle of the GameElement that should act as the parent for the new element, 0 for none
+            a_x             - int       | x-position of the new element
+            a_y             - int       | y-position of the new element
+            a_mapWidth      - int       | width of the new mapLayer in tiles
+            a_mapHeight     - int       | height of the new mapLayer in tiles
+            a_tileWidth     - int       | width mapTiles in pixel
+            a_tileHeight    - int       | height of the mapTiles in pixel
+
+        Returns:
+            GameElement -> - The new MapLayer
+    */
+    public GameElement AddMapLayer(String a_id, int a_parentHandle, int a_x, int a_y, int a_mapWidth, int a_mapHeight, int a_tileWidth, int a_tileHeight)
+    {
+        return this._AddMapLayer(a_id, this.GetParentElement(a_parentHandle), a_x, a_y, a_mapWidth, a_mapHeight, a_tileWidth, a_tileHeight);
+    }
+
+    // creates a MapLayer and adds it to the GamePage
+    private GameElement _AddMapLayer(String a_id, GameElement a_parent, int a_x, int a_y, int a_mapWidth, int a_mapHeight, int a_tileWidth, int a_tileHeight)
     {
         this.CheckElementAlreadyExists(a_id);
-        this.tempElement = this.GetParentElement(a_parentID);
-        this.currentElment = new MapLayer(a_id, this, this.book, this.tempElement, a_mapWidth, a_mapHeight, a_tileWidth, a_tileHeight);
-        return this.AddElement(this.currentElment, this.tempElement, a_x, a_y, a_mapWidth * a_tileHeight, a_mapHeight * a_tileHeight);
+        GameElement element = new MapLayer(a_id, this, this.book, a_parent, a_mapWidth, a_mapHeight, a_tileWidth, a_tileHeight);
+        return this.AddElement(element, a_parent, a_x, a_y, a_mapWidth * a_tileWidth, a_mapHeight * a_tileHeight);
     }
 
     // Checks if an element with a given ID already exists
@@ -327,27 +580,63 @@ public class GamePage
     {
         if (a_parentID != null)
         {
-            this.tempElement = GetElement(a_parentID);
-            if (this.tempElement == null)
+            GameElement parent = this.GetElement(a_parentID);
+            if (parent == null)
                 throw new Error("Element can't be added to page '" + this.id + "' with parent '" + a_parentID + "': The parent does not exist on this page");
 
-            return this.tempElement;
+            return parent;
         }
 
         return null;
     }
 
-    // Adds a GameElement to the GamePage
-    private GameElement AddElement(GameElement a_element, GameElement a_parent, int a_x, int a_y, int a_width, int a_height)
+    // Gets the parent-element with a given handle
+    private GameElement GetParentElement(int a_parentHandle)
     {
+        if (a_parentHandle != 0)
+        {
+            GameElement parent = this.handles.Get(a_parentHandle);
+            if (parent == null)
+                throw new Error("Element can't be added to page '" + this.id + "' with parent " + a_parentHandle + ": The parent does not exist on this page");
+
+            return parent;
+        }
+
+        return null;
+    }
+
+    // Adds a GameElement to the GamePage. The element gets its handle, is indexed and positioned right away (it isn't linked
+    // yet, so that doesn't touch its parent) and is linked by the gameThread
+    private GameElement AddElement(final GameElement a_element, final GameElement a_parent, int a_x, int a_y, int a_width, int a_height)
+    {
+        if (a_element.id != null && this.elementIndex.putIfAbsent(a_element.id, a_element) != null)
+            throw new Error("Element '" + a_element.id + "' already exists on page '" + this.id + "'");
+        a_element.handle = this.handles.Add(a_element);
         a_element.SetPosition(a_x, a_y);
         a_element.SetSize(a_width, a_height);
 
-        if (a_parent == null)
-            this.elements.push(a_element);
-        else
-            a_parent.AddChild(a_element);
+        this.book.Post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // the parent got removed before the element could be linked to it
+                if (a_parent != null && !a_parent.linked)
+                {
+                    GamePage.this.UnindexElement(a_element);
+                    return;
+                }
 
+                if (a_parent == null)
+                {
+                    GamePage.this.elements.AddSorted(a_element);
+                    a_element.linked = true;
+                    a_element.Invalidate();
+                }
+                else
+                    a_parent._AddChild(a_element);
+            }
+        });
         return a_element;
     }
 
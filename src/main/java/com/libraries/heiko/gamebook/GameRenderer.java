@@ -4,6 +4,10 @@ import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
 import android.opengl.Matrix;
 
+import com.libraries.heiko.gamebook.tools.GLState;
+import com.libraries.heiko.gamebook.tools.ShaderCache;
+import com.libraries.heiko.gamebook.tools.SpriteBatch;
+
 import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
@@ -15,11 +19,15 @@ public class GameRenderer implements GLSurfaceView.Renderer
     private final float[] mvpMatrix = new float[16];            // holds the final mvp-matrix for the vertexShader-program (MVP Matrix = Model View Projection Matrix)
     private final float[] projectionMatrix = new float[16];     // used to make object not look streched due to screen-ratio
     private final float[] viewMatrix = new float[16];           // used to define where the camera is
+    private int mvpVersion = 0;                                 // gets increased every time mvpMatrix changes, so the elements know their cached matrices are outdated
     private long lastFrameTime = 0;                             // stores when the last frame finished rendering
-    private int displayWidth = 0;                               // stores the current DisplayWidth, so the projection-matrix can be changed later on
-    private int displayHeight = 0;                              // stores the current DisplayHeight, so the projection-matrix can be changed later on
+    int displayWidth = 0;                                       // stores the current DisplayWidth, so the projection-matrix can be changed later on
+    int displayHeight = 0;                                      // stores the current DisplayHeight, so the projection-matrix can be changed later on
     private RenderMode renderMode = RenderMode.TWOD;			// stores the current renderMode
-    public boolean oglReady = false;                           	// flag that indicates wether OpenGL is ready to be used
+    public volatile boolean oglReady = false;                 	// flag that indicates wether OpenGL is ready to be used
+    public GLState glState;                                     // tracks the OpenGL-state to skip redundant state-changes
+    public SpriteBatch spriteBatch;                             // collects the quads of the elements to draw them with as few draw-calls as possible
+    public ShaderCache shaders;                                 // holds the shader-programs, so every program only gets compiled once
 
     // screen-position and size
     float left = 0;
@@ -37,6 +45,9 @@ public class GameRenderer implements GLSurfaceView.Renderer
     {
         super();
         this.gamebook = a_gamebook;
+        this.glState = new GLState();
+        this.spriteBatch = new SpriteBatch(this.glState);
+        this.shaders = new ShaderCache();
     }
 
     public void onPause()
@@ -49,8 +60,10 @@ public class GameRenderer implements GLSurfaceView.Renderer
 
     public void onSurfaceCreated(GL10 a_gl, EGLConfig a_config)
     {
-        // Make the Background black
-        GLES20.glClearColor(0.3f, 0.3f, 0.3f, 1.0f);
+        // the programs and the state of a previous context are gone
+        this.glState.Reset();
+        this.shaders.Clear();
+        this.spriteBatch.OGLReady(this.shaders);
     }
 
     public void onSurfaceChanged(GL10 a_gl, int a_width, int a_height)
@@ -63,6 +76,7 @@ public class GameRenderer implements GLSurfaceView.Renderer
 
         // make OpenGL use the new screen-size
         GLES20.glViewport(0, 0, this.displayWidth, this.displayHeight);
+        this.spriteBatch.SetViewport(this.displayWidth, this.displayHeight);
         this.SetRenderMode(this.renderMode);
     }
 
@@ -95,6 +109,7 @@ public class GameRenderer implements GLSurfaceView.Renderer
 
         Matrix.setLookAtM(viewMatrix, 0,   0, 0, 1,   0, 0, 0,   0, 1, 0);
         Matrix.multiplyMM(mvpMatrix, 0, projectionMatrix, 0, viewMatrix, 0);
+        this.mvpVersion++;
 
         // In 3D-Mode, Elements are drawn on a z-level that is one away from the camera
         // To make Elements with the lowest z-level the correct size on the screen,
@@ -108,9 +123,15 @@ public class GameRenderer implements GLSurfaceView.Renderer
     // gets called every time a Frame can be drawn. Draws the current scene
     public void onDrawFrame(GL10 a_gl)
     {
-        // Clear the BackGround and draws the enviroment
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-        this.gamebook.Draw(this.mvpMatrix);
+        // Clear the BackGround and the stencil and draws the enviroment
+        // Elements undo their masks after drawing their children, so the stencil only needs to be cleared once per frame
+        this.glState.ResetCounters();
+        this.spriteBatch.Begin();
+        this.glState.ClearColor(0.3f, 0.3f, 0.3f, 1.0f);
+        this.glState.StencilMask(0xFF);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_STENCIL_BUFFER_BIT);
+        this.gamebook.Draw(this.mvpMatrix, this.mvpVersion);
+        this.spriteBatch.End();
 
         // calculate draw-fps
         this.gamebook.lastDrawFPS = 1000000000/(System.nanoTime() - this.lastFrameTime);
@@ -0,0 +1,252 @@
+package com.libraries.heiko.gamebook;
+
+import java.util.Arrays;
+
+/**
+ * Everything the GL-thread needs to draw one frame, recorded by the GameThread at the end of GameBook.Update.
+ * Holds the visible elements in draw-order (every element followed by its subtree) together with the state
+ * that was valid when the frame was recorded: position, size, bounds and the flags that decide how an element
+ * is drawn. Controls can add the state their _Draw needs (e.g. vertices, colors, text) with AddFloats, AddInts
+ * and AddObject while they get recorded, and read it back with FloatOffset, IntOffset and ObjectOffset while
+ * they get drawn.
+ * The GL-thread only reads from the packet, so it never sees a half-updated element. Packets are reused,
+ * the arrays only grow.
+ */
+public class RenderPacket
+{
+    // values of flags
+    final static int HIDE_OVERFLOW = 0x01;                          // the element clips its child-elements
+    final static int CACHE_AS_LAYER = 0x02;                         // the element gets drawn from its RenderLayer
+    final static int BOUNDS_UNKNOWN = 0x04;                         // the bounds of the subtree are unknown, it never gets culled
+    final static int ANIMATED = 0x08;                               // the element has active animations
+
+    public float alpha = 1.0f;                                      // how far the frame is between the previous and the recorded update (0..1), set by the GL-thread before drawing
+    long recordTime = 0;                                            // System.nanoTime() when the packet was recorded
+    long tickDuration = 0;                                          // duration of a fixed update-step, 0 for variable steps (no interpolation)
+
+    int count = 0;                                                  // number of elements in the packet
+    GameElement[] elements;                                         // the elements, every element is followed by its subtree
+    int[] subtreeEnds;                                              // index of the first element after the subtree of every element
+    float[] geometry;                                               // vectorX, vectorY, vectorWidth, vectorHeight of every element
+    float[] zIndices;                                               // the zIndex of every element
+    float[] previousPositions;                                      // vectorX, vectorY of every element when the previous packet was recorded
+    float[] bounds;                                                 // left, bottom, right, top of the subtree of every element
+    int[] flags;                                                    // combination of the flags above for every element
+    int[] contentVersions;                                          // the contentVersion of every element, used to find outdated layers
+    int[] animationOffsets;                                         // index of the animation-matrix of every element in animationMatrices, -1 if it isn't animated
+    float[] animationMatrices;                                      // the combined matrix of the animations of every animated element (16 floats each)
+    private int animationCount = 0;                                 // number of matrices in animationMatrices
+
+    // the state recorded by the controls themselves
+    public float[] floats;                                          // the floats added by all elements
+    public int[] ints;                                              // the integers added by all elements
+    public Object[] objects;                                        // the objects added by all elements
+    private int floatCount = 0;                                     // number of used entries in floats
+    private int intCount = 0;                                       // number of used entries in ints
+    private int objectCount = 0;                                    // number of used entries in objects
+    private int[] floatOffsets;                                     // index of the first float of every element
+    private int[] intOffsets;                                       // index of the first integer of every element
+    private int[] objectOffsets;                                    // index of the first object of every element
+
+    RenderPacket()
+    {
+        this._Allocate(64);
+        this.floats = new float[1024];
+        this.animationMatrices = new float[16 * 16];
+        this.ints = new int[256];
+        this.objects = new Object[64];
+    }
+
+    // removes all elements, so the packet can be recorded again
+    void Clear()
+    {
+        // don't keep removed elements alive
+        Arrays.fill(this.elements, 0, this.count, null);
+        Arrays.fill(this.objects, 0, this.objectCount, null);
+        this.count = 0;
+        this.floatCount = 0;
+        this.animationCount = 0;
+        this.intCount = 0;
+        this.objectCount = 0;
+    }
+
+    // adds an element. Its subtree has to be added afterwards, followed by a call to EndSubtree. Returns the index of the element
+    int Add(GameElement a_element, float a_x, float a_y, float a_width, float a_height, float a_zIndex, float a_previousX, float a_previousY, int a_flags, int a_contentVersion)
+    {
+        if (this.count == this.elements.length)
+            this._Allocate(this.count * 2);
+
+        int index = this.count++;
+        this.elements[index] = a_element;
+        this.geometry[index*4] = a_x;
+        this.geometry[index*4 + 1] = a_y;
+        this.geometry[index*4 + 2] = a_width;
+        this.geometry[index*4 + 3] = a_height;
+        this.zIndices[index] = a_zIndex;
+        this.animationOffsets[index] = -1;
+        this.previousPositions[index*2] = a_previousX;
+        this.previousPositions[index*2 + 1] = a_previousY;
+        this.flags[index] = a_flags;
+        this.contentVersions[index] = a_contentVersion;
+        this.subtreeEnds[index] = index + 1;
+        this.floatOffsets[index] = this.floatCount;
+        this.intOffsets[index] = this.intCount;
+        this.objectOffsets[index] = this.objectCount;
+        return index;
+    }
+
+    /*
+        Function: AddFloats
+            Adds floats to the state of the element that was added last. Has to be called while the element gets recorded
+
+        Parameter:
+            a_values    - float[]   | The values to add
+            a_count     - Integer   | Number of values to add, starting at the first one
+    */
+    public void AddFloats(float[] a_values, int a_count)
+    {
+        if (this.floatCount + a_count > this.floats.length)
+            this.floats = Arrays.copyOf(this.floats, Math.max(this.floats.length * 2, this.floatCount + a_count));
+
+        System.arraycopy(a_values, 0, this.floats, this.floatCount, a_count);
+        this.floatCount += a_count;
+    }
+
+    /*
+        Function: AddInts
+            Adds integers to the state of the element that was added last. Has to be called while the element gets recorded
+
+        Parameter:
+            a_values    - int[]     | The values to add
+            a_count     - Integer   | number of values to add, starting with the first one
+    */
+    public void AddInts(int[] a_values, int a_count)
+    {
+        if (this.intCount + a_count > this.ints.length)
+            this.ints = Arrays.copyOf(this.ints, Math.max(this.ints.length * 2, this.intCount + a_count));
+
+        System.arraycopy(a_values, 0, this.ints, this.intCount, a_count);
+        this.intCount += a_count;
+    }
+
+    /*
+        Function: AddObject
+            Adds an object to the state of the element that was added last. The object must not be changed
+            afterwards (e.g. use a new array instead of changing the old one)
+
+        Parameter:
+            a_value - Object    | The object to add
+    */
+    public void AddObject(Object a_value)
+    {
+        if (this.objectCount == this.objects.length)
+            this.objects = Arrays.copyOf(this.objects, this.objectCount * 2);
+
+        this.objects[this.objectCount++] = a_value;
+    }
+
+    /*
+        Function: FloatOffset
+            Returns where the floats added by an element start
+
+        Parameter:
+            a_index - Integer   | index of the element in the packet
+
+        Returns:
+            Integer -> - index of the first float of the element in floats
+    */
+    public int FloatOffset(int a_index)
+    {
+        return this.floatOffsets[a_index];
+    }
+
+    /*
+        Function: IntOffset
+            Returns where the integers added by an element start
+
+        Parameter:
+            a_index - Integer   | index of the element in the packet
+
+        Returns:
+            Integer -> - index of the first integer of the element in ints
+    */
+    public int IntOffset(int a_index)
+    {
+        return this.intOffsets[a_index];
+    }
+
+    /*
+        Function: ObjectOffset
+            Returns where the objects added by an element start
+
+        Parameter:
+            a_index - Integer   | index of the element in the packet
+
+        Returns:
+            Integer -> - index of the first object of the element in objects
+    */
+    public int ObjectOffset(int a_index)
+    {
+        return this.objectOffsets[a_index];
+    }
+
+    // sets the combined matrix of the animations of an element
+    void SetAnimation(int a_index, float[] a_matrix)
+    {
+        if ((this.animationCount + 1) * 16 > this.animationMatrices.length)
+            this.animationMatrices = Arrays.copyOf(this.animationMatrices, this.animationMatrices.length * 2);
+
+        System.arraycopy(a_matrix, 0, this.animationMatrices, this.animationCount * 16, 16);
+        this.animationOffsets[a_index] = this.animationCount * 16;
+        this.animationCount++;
+    }
+
+    // sets the bounds of the subtree of an element
+    void SetBounds(int a_index, float a_left, float a_bottom, float a_right, float a_top)
+    {
+        this.bounds[a_index*4] = a_left;
+        this.bounds[a_index*4 + 1] = a_bottom;
+        this.bounds[a_index*4 + 2] = a_right;
+        this.bounds[a_index*4 + 3] = a_top;
+    }
+
+    // marks the end of the subtree of an element
+    void EndSubtree(int a_index)
+    {
+        this.subtreeEnds[a_index] = this.count;
+    }
+
+    // grows the arrays to the given capacity
+    private void _Allocate(int a_capacity)
+    {
+        if (this.elements == null)
+        {
+            this.elements = new GameElement[a_capacity];
+            this.subtreeEnds = new int[a_capacity];
+            this.geometry = new float[a_capacity * 4];
+            this.zIndices = new float[a_capacity];
+            this.animationOffsets = new int[a_capacity];
+            this.previousPositions = new float[a_capacity * 2];
+            this.bounds = new float[a_capacity * 4];
+            this.flags = new int[a_capacity];
+            this.contentVersions = new int[a_capacity];
+            this.floatOffsets = new int[a_capacity];
+            this.intOffsets = new int[a_capacity];
+            this.objectOffsets = new int[a_capacity];
+            return;
+        }
+
+        this.elements = Arrays.copyOf(this.elements, a_capacity);
+        this.subtreeEnds = Arrays.copyOf(this.subtreeEnds, a_capacity);
+        this.geometry = Arrays.copyOf(this.geometry, a_capacity * 4);
+        this.zIndices = Arrays.copyOf(this.zIndices, a_capacity);
+        this.animationOffsets = Arrays.copyOf(this.animationOffsets, a_capacity);
+        this.previousPositions = Arrays.copyOf(this.previousPositions, a_capacity * 2);
+        this.bounds = Arrays.copyOf(this.bounds, a_capacity * 4);
+        this.flags = Arrays.copyOf(this.flags, a_capacity);
+        this.contentVersions = Arrays.copyOf(this.contentVersions, a_capacity);
+        this.floatOffsets = Arrays.copyOf(this.floatOffsets, a_capacity);
+        this.intOffsets = Arrays.copyOf(this.intOffsets, a_capacity);
+        this.objectOffsets = Arrays.copyOf(this.objectOffsets, a_capacity);
+    }
+}
@@ -11,22 +11,17 @@ import com.libraries.heiko.gamebook.tools.*;
  */
 public class ResourceManager
 {
-    private GameStack<GameResource> images;     // holds resources of the type 'image'
-    private GameStack<GameResource> fonts;      // holds resources of the type 'font'
-    private GameStack<GameResource> tilesets;   // holds resources of the type 'font'
-    private GameFont tempFont;                  // hold a font to load it
-    private Tileset tempTileset;               // hold a font to load it
-    private GameStack<GameResource> tempStack;  // used to iterate trough resurce-stacks
-    private GameResource tempResource;          // used to temporarily hold a new resource when adding it
+    private Registry<Bitmap> images;            // holds resources of the type 'image'
+    private Registry<GameFont> fonts;           // holds resources of the type 'font'
+    private Registry<Tileset> tilesets;         // holds resources of the type 'tileset'
     private GameBook book;                      // reference to the GameBook
 
     public ResourceManager(GameBook a_book)
     {
         this.book = a_book;
-        this.images = new GameStack<GameResource>();
-        this.fonts = new GameStack<GameResource>();
-        this.tilesets = new GameStack<GameResource>();
-        this.tempStack = new GameStack<GameResource>();
+        this.images = new Registry<Bitmap>();
+        this.fonts = new Registry<GameFont>();
+        this.tilesets = new Registry<Tileset>();
     }
 
     /*
@@ -41,7 +36,37 @@ public class ResourceManager
     */
     public Bitmap GetImage(String a_id)
     {
-        return (Bitmap) this._GetResource(a_id, this.images);
+        return this.images.Get(a_id);
+    }
+
+    /*
+        Function: GetImage
+            Gets a previously stored image by its handle
+
+        Parameter:
+            a_handle    - Integer   | handle of the stored image, see GetImageHandle
+
+        Returns:
+            Bitmap -> - The requestes image, null if it got removed
+    */
+    public Bitmap GetImage(int a_handle)
+    {
+        return this.images.Get(a_handle);
+    }
+
+    /*
+        Function: GetImageHandle
+            Resolves the ID of a stored image to a handle, to look the image up faster later on
+
+        Parameter:
+            a_id    - String    | ID of the stored image
+
+        Returns:
+            int -> - the handle of the image, 0 if there is no image with the ID
+    */
+    public int GetImageHandle(String a_id)
+    {
+        return this.images.GetHandle(a_id);
     }
 
     /*
@@ -57,7 +82,7 @@ public class ResourceManager
     */
     public Bitmap AddImage(String a_id, Bitmap a_image)
     {
-        return (Bitmap) this._AddResource(a_id, this.images, a_image);
+        return this._AddResource(a_id, this.images, a_image);
     }
 
     /*
@@ -76,7 +101,7 @@ public class ResourceManager
         BitmapFactory.Options options = new BitmapFactory.Options();
         options.inPreferredConfig = this.book.bitmapConfig;
         options.inScaled = false;
-        return (Bitmap) this._AddResource(a_id, this.images, BitmapFactory.decodeResource(this.book.getContext().getResources(), a_image, options));
+        return this._AddResource(a_id, this.images, BitmapFactory.decodeResource(this.book.getContext().getResources(), a_image, options));
     }
 
     /*
@@ -92,7 +117,7 @@ public class ResourceManager
     */
     public Bitmap AddImage(String a_id, String a_path)
     {
-        return (Bitmap) this._AddResource(a_id, this.images, BitmapFactory.decodeFile(a_path));
+        return this._AddResource(a_id, this.images, BitmapFactory.decodeFile(a_path));
     }
 
     /*
@@ -123,14 +148,13 @@ public class ResourceManager
     */
     public GameFont AddFont(String a_id, String a_font, int a_fontSize, int a_padX, int a_padY, int a_spaceX)
     {
-        tempFont =  new GameFont(this.book.getContext().getAssets(), a_font, a_fontSize, a_padX, a_padY, a_spaceX);
-        this._AddResource(a_id, this.fonts, tempFont);
+        GameFont font = new GameFont(this.book.getContext().getAssets(), a_font, a_fontSize, a_padX, a_padY, a_spaceX);
+        this._AddResource(a_id, this.fonts, font);
         if (this.book.gameRenderer.oglReady == true)
-        {
-            tempFont.Load();
-            tempFont.SetDisplayScale(this.book.gameRenderer.horzVertexRatio, this.book.gameRenderer.vertVertexRatio);
-        }
-        return (GameFont) this._GetResource(a_id, this.fonts);
+            font.SetDisplayScale(this.book.gameRenderer.horzVertexRatio, this.book.gameRenderer.vertVertexRatio);
+
+        this._CreatePending();
+        return font;
     }
 
     /*
@@ -168,6 +192,51 @@ public class ResourceManager
         return this.AddFont(a_id, a_font, a_fontSize, 2, 2, 0);
     }
 
+    /*
+        Function: GetFont
+            Gets a previously stored font
+
+        Parameter:
+            a_id    - String    | ID of the stored font
+
+        Returns:
+            GameFont -> - The requested font
+    */
+    public GameFont GetFont(String a_id)
+    {
+        return this.fonts.Get(a_id);
+    }
+
+    /*
+        Function: GetFont
+            Gets a previously stored font by its handle
+
+        Parameter:
+            a_handle    - Integer   | handle of the stored font, see GetFontHandle
+
+        Returns:
+            GameFont -> - The requested font, null if it got removed
+    */
+    public GameFont GetFont(int a_handle)
+    {
+        return this.fonts.Get(a_handle);
+    }
+
+    /*
+        Function: GetFontHandle
+            Resolves the ID of a stored font to a handle, to look the font up faster later on
+
+        Parameter:
+            a_id    - String    | ID of the stored font
+
+        Returns:
+            int -> - the handle of the font, 0 if there is no font with the ID
+    */
+    public int GetFontHandle(String a_id)
+    {
+        return this.fonts.GetHandle(a_id);
+    }
+
     /*
         Function: RemoveImage
             Removes a previously stored font from the ResourceManager
@@ -192,7 +261,37 @@ public class ResourceManager
     */
     public Tileset GetTileset(String a_id)
     {
-        return (Tileset) this._GetResource(a_id, this.tilesets);
+        return this.tilesets.Get(a_id);
+    }
+
+    /*
+        Function: GetTileset
+            Gets a previously stored Tileset by its handle
+
+        Parameter:
+            a_handle    - Integer   | handle of the stored Tileset, see GetTilesetHandle
+
+        Returns:
+            Tileset -> - The requested Tileset, null if it got removed
+    */
+    public Tileset GetTileset(int a_handle)
+    {
+        return this.tilesets.Get(a_handle);
+    }
+
+    /*
+        Function: GetTilesetHandle
+            Resolves the ID of a stored Tileset to a handle, to look the Tileset up faster later on
+
+        Parameter:
+            a_id    - String    | ID of the stored Tileset
+
+        Returns:
+            int -> - the handle of the Tileset, 0 if there is no Tileset with the ID
+    */
+    public int GetTilesetHandle(String a_id)
+    {
+        return this.tilesets.GetHandle(a_id);
     }
 
     /*
@@ -210,11 +309,9 @@ public class ResourceManager
     */
     public Tileset AddTileset(String a_id, Bitmap a_image, int a_tileWidth, int a_tileHeight)
     {
-        tempTileset = new Tileset(a_image, a_tileWidth, a_tileHeight);
-        if (this.book.gameRenderer.oglReady == true)
-            tempTileset.CreateTexture();
-
-        return (Tileset) this._AddResource(a_id, this.tilesets, tempTileset);
+        Tileset tileset = this._AddResource(a_id, this.tilesets, new Tileset(a_image, a_tileWidth, a_tileHeight));
+        this._CreatePending();
+        return tileset;
     }
 
     /*
@@ -268,89 +365,66 @@ public class ResourceManager
         this._RemoveResource(a_id, this.tilesets);
     }
 
+    // creates the OpenGL-resources of all resources that don't have them yet. Is called by the GL-thread
     public void _OGLReady()
     {
-        this.tempStack = this.fonts;
-        while (this.tempStack.content != null)
+        GameList<GameFont> fonts = this.fonts.GetItems();
+        for (int i = 0; i < fonts.Size(); i++)
         {
-            if (!((GameFont) this.tempStack.content.resource).fontLoaded)
-                ((GameFont) this.tempStack.content.resource).Load();
-
-            this.tempStack = this.tempStack.next;
+            if (!fonts.Get(i).fontLoaded)
+                fonts.Get(i).Load(this.book.gameRenderer.shaders, this.book.gameRenderer.glState, this.book.gameRenderer.spriteBatch);
         }
 
-        this.tempStack = this.tilesets;
-        while (this.tempStack.content != null)
+        GameList<Tileset> tilesets = this.tilesets.GetItems();
+        for (int i = 0; i < tilesets.Size(); i++)
         {
-            if (!((Tileset) this.tempStack.content.resource).textureCreated)
-                ((Tileset) this.tempStack.content.resource).CreateTexture();
-
-            this.tempStack = this.tempStack.next;
+            if (!tilesets.Get(i).textureCreated)
+                tilesets.Get(i).CreateTexture();
         }
+
+        // the tilesets bound their textures while creating them
+        this.book.gameRenderer.glState.InvalidateTextures();
     }
 
     public void _UpdateScreenDimensions(float a_horzVertexRatio, float a_vertVertexRatio)
     {
-        this.tempStack = this.fonts;
-        while (this.tempStack.content != null)
+        GameList<GameFont> fonts = this.fonts.GetItems();
+        for (int i = 0; i < fonts.Size(); i++)
         {
-            ((GameFont) this.tempStack.content.resource).SetDisplayScale(a_horzVertexRatio, a_vertVertexRatio);
-            this.tempStack = this.tempStack.next;
+            fonts.Get(i).SetDisplayScale(a_horzVertexRatio, a_vertVertexRatio);
         }
     }
 
-    private Object _GetResource(String a_id, GameStack<GameResource> a_targetStack)
+    // lets the GL-thread create the OpenGL-resources of newly added resources. Before OpenGL is ready, _OGLReady creates them
+    private void _CreatePending()
     {
-        this.tempStack = a_targetStack;
-        while (this.tempStack.content != null)
-        {
-            if (this.tempStack.content.id.equals(a_id))
-                return this.tempStack.content.resource;
+        if (this.book.gameRenderer.oglReady == false)
+            return;
 
-            this.tempStack = this.tempStack.next;
-        }
-        return null;
+        this.book.queueEvent(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ResourceManager.this._OGLReady();
+            }
+        });
     }
 
-    private Object _AddResource(String a_id, GameStack<GameResource> a_targetStack, Object a_resource)
+    // registers a resource, IDs can only be used once per type of resource
+    private <T> T _AddResource(String a_id, Registry<T> a_registry, T a_resource)
     {
-        if (this._GetResource(a_id, a_targetStack) != null)
+        if (a_registry.Add(a_id, a_resource) == 0)
             throw new RuntimeException("resource already registered: " + a_id);
 
-        this.tempResource = new GameResource(a_id, a_resource);
-        a_targetStack.push(this.tempResource);
-        this.tempResource = null;
-        return a_targetStack.peek().resource;
+        this.book.MarkDirty();
+        return a_resource;
     }
 
-    private void _RemoveResource(String a_id, GameStack<GameResource> a_targetStack)
+    // removes a resource
+    private void _RemoveResource(String a_id, Registry<?> a_registry)
     {
-        this.tempStack = a_targetStack;
-        while (this.tempStack.content != null)
-        {
-            if (this.tempStack.content.id.equals(a_id))
-            {
-                this.tempStack.pop();
-                return;
-            }
-
-            this.tempStack = this.tempStack.next;
-        }
-    }
-
-    class GameResource
-    {
-        String id;
-        Object resource;
-        public GameResource(String a_id)
-        {
-            this.id = a_id;
-        }
-
-        public GameResource(String a_id, Object a_resource)
-        {
-            this.id = a_id;
-            this.resource = a_resource;
-        }
+        if (a_registry.Remove(a_id))
+            this.book.MarkDirty();
     }
 }
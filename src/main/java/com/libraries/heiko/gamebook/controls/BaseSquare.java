@@ -8,12 +8,13 @@ import android.opengl.GLUtils;
 import com.libraries.heiko.gamebook.GameBook;
 import com.libraries.heiko.gamebook.GameElement;
 import com.libraries.heiko.gamebook.GamePage;
+import com.libraries.heiko.gamebook.RenderPacket;
+import com.libraries.heiko.gamebook.tools.ShaderProgram;
 import com.libraries.heiko.gamebook.tools.Tileset;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.nio.ShortBuffer;
 
 /**
  * Created by heiko on 23.02.2016.
@@ -33,13 +34,11 @@ public class BaseSquare extends GameElement
 
 	// cache-variables to prevent memory-allocations
 	private int tempColor;								// used by SetBoxStyle to parse new colors
+	private final static float[] noColor = new float[4];	// recorded instead of the backgroundColor if there is none
 
     // OpenGL stuff
-    private int colorShaderProgram;						// the ShaderProgram to use when only a backgroundColor is set
-    private int imageShaderProgram;						// the ShaderProgram to use when only a backgroundImage is set
-    private int colorAndImageShaderProgram;				// the ShaderProgram to use when both backgroundColor and backgroundImage are set
-    protected int stencilProgram;                       // the ShaderProgram to use when applying the mask
-    protected int shaderProgram;						// the currently used shaderProgram based on the set backgroundColor and backgroundImage
+    protected ShaderProgram stencilProgram;             // the ShaderProgram to use when applying the mask
+    protected ShaderProgram shaderProgram;				// the currently used batch-program based on the set backgroundColor and backgroundImage
 														// needs to be public, so subclasses can decide not to call DrawBasics if not needed
 
 	// Variables necessary for positioning the vertices
@@ -51,39 +50,24 @@ public class BaseSquare extends GameElement
             1, 0, -(this.zIndex + 1)
     };
 
-	private FloatBuffer vertexBuffer;														// Buffer holding the coordinates from coords
-	private int vertexPositionHandle = 0;													// Handle to vPosition in the vertexShaders
-    private int stencilVertexPositionHandle = 0;                                            // Handle to vPosition in the stencil-vertexShader
-
-    // Variables necessary for fullscreen-stencil-reset
-    private FloatBuffer fullscreenVertexBuffer;											    // Buffer holding the coordinates from coords
-
-	// Variables necessary to determine the drawOrder of the vertices
-	private short drawOrder[] = {0, 1, 2, 0, 2, 3};											// The order in which to draw the vertices
-	private ShortBuffer drawListBuffer;														// Buffer holding the draworder
+	private FloatBuffer vertexBuffer;														// used to upload coords to the mask-buffer
+	private int[] maskBufferID = new int[1];												// vertex-buffer-object holding coords, used when applying the mask
+	private int maskBufferVersion = -1;														// contextVersion of the SpriteBatch the mask-buffer was created in
+	private int maskBufferCoords = -1;														// the recorded coordsVersion that was uploaded to the mask-buffer. Is used by the GL-thread
+	private int coordsVersion = 0;															// gets increased whenever coords change. Is changed by the gameThread
+	private int[] recordInts = new int[1];													// used to record coordsVersion
 
 	// Variables necessary to draw the texture (aka backgroundImage, if there is one set)
 	private int[] textureIDs = new int[1];													// Array holding the pointer to the background-texture
 	private float[] texturePositions = {0.0f, 1.0f, 0.0f, 0.0f, 1.0f, 0.0f, 1.0f, 1.0f};	// Positions of the texture
-	private FloatBuffer texturePositionBuffer;												// Buffer holding the texture-positions
-	private int texturePositionHandle = 0;													// Handle to s_texture in the fragmentShaders
 	private Bitmap backgroundBitmap;														// The Bitmap to use as texture (aka backgroundImage)
 	private Tileset tileset;																// the currently used Tileset
+	private Bitmap uploadedBitmap;															// the Bitmap currently in the background-texture, only used by the GL-thread
+	private boolean uploadedRepeat = false;													// the backgroundRepeat the background-texture was set up with
+	private int textureVersion = -1;														// contextVersion of the SpriteBatch the background-texture was created in
 
-	// The texture-shader to use, when a background-texture is set
-    private final String textureVertexShaderCode  =
-        "uniform mat4 uMVPMatrix;" +
-        "attribute vec4 vPosition;" +
-        "attribute vec2 a_texCoord;" +
-        "varying vec2 v_texCoord;" +
-        "void main()" +
-        "{" +
-        "   gl_Position = uMVPMatrix * vPosition;" +
-        "   v_texCoord = a_texCoord;" +
-        "}";
-
-	// The texture-shader to use, when no background-texture is set
-    private final String colorVertexShaderCode =
+    // The vertex-shader to use when editing the current stencil
+    private final static String stencilVertexShaderCode =
         "uniform mat4 uMVPMatrix;" +
         "attribute vec4 vPosition;" +
         "void main()" +
@@ -91,46 +75,8 @@ public class BaseSquare extends GameElement
         "   gl_Position = uMVPMatrix * vPosition;" +
         "}";
 
-	// The fragment-shader to use, when only a background-color, but no background-texture is set
-    private final String colorFragmentShaderCode =
-        "precision mediump float;" +
-        "uniform vec4 vColor;" +
-        "void main()" +
-        "{" +
-        "   gl_FragColor = vColor;" +
-        "}";
-
-	// The fragment-shader to use, when only a background-texture, but no background-color is set
-    private final String imageFragmentShaderCode =
-        "precision mediump float;" +
-        "varying vec2 v_texCoord;" +
-        "uniform sampler2D s_texture;" +
-        "void main()" +
-        "{" +
-        "   vec4 tex = texture2D (s_texture, v_texCoord);" +
-        "   gl_FragColor = vec4(tex.r, tex.g, tex.b, 1.0 - tex.a);" +
-        "}";
-
-	// The fragment-shader to use, when both background-color and background-texture are set
-    private final String colorAndImageFragmentShaderCode =
-        "precision mediump float;" +
-        "uniform vec4 vColor;" +
-        "varying vec2 v_texCoord;" +
-        "uniform sampler2D s_texture;" +
-        "void main()" +
-        "{" +
-        "   vec4 texture = texture2D(s_texture, v_texCoord);" +
-        "   vec4 bgColor = vColor;" +
-        "   bgColor.a = bgColor.a - clamp(bgColor.a + texture.a - 1.0, 0.0, bgColor.a);" +
-        "   texture.a = 1.0 - (texture.a - clamp(vColor.a + texture.a - 1.0, 0.0, texture.a));" +
-        "   gl_FragColor = vec4(bgColor.r*bgColor.a/vColor.a + texture.r," +		// Dividing by old alpha, multiplying by new one
-        "						bgColor.g*bgColor.a/vColor.a + texture.g, " +
-        "						bgColor.b*bgColor.a/vColor.a + texture.b, " +
-        "						bgColor.a * texture.a);" +
-        "}";
-
     // The fragment-shader to use when editing the current stencil
-    private final String stencilFragmentShaderCode =
+    private final static String stencilFragmentShaderCode =
         "precision mediump float;" +
         "uniform vec4 vColor;" +
         "void main()" +
@@ -143,54 +89,20 @@ public class BaseSquare extends GameElement
         super(a_id, a_page, a_book, a_parent);
         this.SetBoxStyle(this.borderRadius, null, null, this.borderWidth);
 
-		// initialize vertexbuffer and texturePositionBuffer
+		// initialize vertexbuffer
         ByteBuffer vertexByteBuffer = ByteBuffer.allocateDirect(this.coords.length * 4);
         this.vertexBuffer = vertexByteBuffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
-
-        vertexByteBuffer = ByteBuffer.allocateDirect(this.coords.length * 4);
-        this.fullscreenVertexBuffer = vertexByteBuffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
-        this.fullscreenVertexBuffer.put(this.coords).position(0);
-
-		ByteBuffer textureByteBuffer = ByteBuffer.allocateDirect(texturePositions.length * 4);
-		this.texturePositionBuffer = textureByteBuffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
-
-        // initialize byte buffer for the draw list
-        ByteBuffer dlb = ByteBuffer.allocateDirect(drawOrder.length * 2);
-        this.drawListBuffer = dlb.order(ByteOrder.nativeOrder()).asShortBuffer();
-        this.drawListBuffer.put(this.drawOrder).position(0);
         this.PosToVertices();
 
         if (this.book.gameRenderer.oglReady == true)
             this._OGLReady();
     }
 
+    // the batch-programs of a previous context are gone. The mask-buffer, the stencil-program and the background-texture
+    // are recreated by the GL-thread the next time they are used (see SpriteBatch.contextVersion)
     @Override
     protected void _OGLReady()
     {
-        // Create an empty OpenGL ES Program, Load the Shaders and add them to the program and create (compile) it
-        this.colorShaderProgram = GLES20.glCreateProgram();
-        GLES20.glAttachShader(this.colorShaderProgram, this._LoadShader(GLES20.GL_VERTEX_SHADER, this.colorVertexShaderCode));
-        GLES20.glAttachShader(this.colorShaderProgram, this._LoadShader(GLES20.GL_FRAGMENT_SHADER, this.colorFragmentShaderCode));
-        GLES20.glLinkProgram(this.colorShaderProgram);
-
-        this.imageShaderProgram = GLES20.glCreateProgram();
-        GLES20.glAttachShader(this.imageShaderProgram, this._LoadShader(GLES20.GL_VERTEX_SHADER, this.textureVertexShaderCode));
-        GLES20.glAttachShader(this.imageShaderProgram, this._LoadShader(GLES20.GL_FRAGMENT_SHADER, this.imageFragmentShaderCode));
-        GLES20.glLinkProgram(this.imageShaderProgram);
-
-        this.colorAndImageShaderProgram = GLES20.glCreateProgram();
-        GLES20.glAttachShader(this.colorAndImageShaderProgram, this._LoadShader(GLES20.GL_VERTEX_SHADER, this.textureVertexShaderCode));
-        GLES20.glAttachShader(this.colorAndImageShaderProgram, this._LoadShader(GLES20.GL_FRAGMENT_SHADER, this.colorAndImageFragmentShaderCode));
-        GLES20.glLinkProgram(this.colorAndImageShaderProgram);
-
-        this.stencilProgram = GLES20.glCreateProgram();
-        GLES20.glAttachShader(this.stencilProgram, this._LoadShader(GLES20.GL_VERTEX_SHADER, this.colorVertexShaderCode));
-        GLES20.glAttachShader(this.stencilProgram, this._LoadShader(GLES20.GL_FRAGMENT_SHADER, this.stencilFragmentShaderCode));
-        GLES20.glLinkProgram(this.stencilProgram);
-        this.stencilVertexPositionHandle = GLES20.glGetAttribLocation(this.stencilProgram, "vPosition");
-
-        // Create a texture and get its ID
-        GLES20.glGenTextures(1, this.textureIDs, 0);
         this.UpdateShaderProgram();
     }
 
@@ -210,6 +122,11 @@ public class BaseSquare extends GameElement
 
     private void PosToVertices()
     {
+        // nothing to do, if the vertices wouldn't change
+        if (this.coords[0] == this.vectorX && this.coords[1] == this.vectorY &&
+            this.coords[6] == this.vectorX + this.vectorWidth && this.coords[7] == this.vectorY + this.vectorHeight)
+            return;
+
         // top left
         this.coords[0] = this.vectorX;
         this.coords[1] = this.vectorY;
@@ -226,9 +143,8 @@ public class BaseSquare extends GameElement
         this.coords[9] = this.vectorX + this.vectorWidth;
         this.coords[10] = this.vectorY;
 
-        // create a floating point buffer from the ByteBuffer, add the coordinates to it,
-        // and make it read from the beginning of the buffer
-        this.vertexBuffer.put(this.coords).position(0);
+        // the mask-buffer gets updated the next time it is used
+        this.coordsVersion++;
     }
 
     /*
@@ -450,7 +366,7 @@ public class BaseSquare extends GameElement
 		// bottom-right
 		this.texturePositions[4] = this.texturePositions[6];
 		this.texturePositions[5] = this.texturePositions[3];
-		this.texturePositionBuffer.put(this.texturePositions).position(0);
+		this.Invalidate();
 	}
 
 	/*
@@ -469,160 +385,216 @@ public class BaseSquare extends GameElement
     // Sets the shader-program to use, depending on the backgroundImage and backgroundColor currently set
     private void UpdateShaderProgram()
     {
+        this.Invalidate();
         if (this.book.gameRenderer.oglReady == false)
         {
-            this.shaderProgram = 0;
+            this.shaderProgram = null;
             return;
         }
 
         if (this.backgroundColor != null && this.backgroundBitmap == null)
-            this.shaderProgram = this.colorShaderProgram;
+            this.shaderProgram = this.book.gameRenderer.spriteBatch.colorProgram;
         else if (this.backgroundColor == null && this.backgroundBitmap != null)
-            this.shaderProgram = this.imageShaderProgram;
+            this.shaderProgram = this.book.gameRenderer.spriteBatch.imageProgram;
         else if (this.backgroundColor != null && this.backgroundBitmap != null)
-            this.shaderProgram = this.colorAndImageShaderProgram;
+            this.shaderProgram = this.book.gameRenderer.spriteBatch.colorAndImageProgram;
         else
-            this.shaderProgram = 0;
-
-		if (this.shaderProgram == 0)
-			return;
-
-		// Get the vertex-position handle of the current program and enable its usage
-		this.vertexPositionHandle = GLES20.glGetAttribLocation(this.shaderProgram, "vPosition");
+            this.shaderProgram = null;
+    }
 
-        if (this.backgroundBitmap != null && this.tileset == null)
+    // creates the background-texture if its context got lost, and uploads the bitmap if it changed. Returns the texture. Is called by the GL-thread
+    private int _UploadTexture(Bitmap a_bitmap, boolean a_repeat)
+    {
+        if (this.textureVersion != this.book.gameRenderer.spriteBatch.contextVersion)
         {
-            // Bind texture to texturename
-			GLES20.glGenTextures(1, this.textureIDs, 0);
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, this.textureIDs[0]);
-
-            // Set filtering
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
-            GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
-
-            // Set wrapping mode
-
-			if (this.backgroundRepeat)
-			{
-				GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_REPEAT);
-				GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_REPEAT);
-			}
-			else
-			{
-				GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
-				GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
-			}
-
-            // Load the bitmap into the bound texture.
-            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, this.backgroundBitmap, 0);
+            GLES20.glGenTextures(1, this.textureIDs, 0);
+            this.textureVersion = this.book.gameRenderer.spriteBatch.contextVersion;
+            this.uploadedBitmap = null;
         }
 
-		// Get handle to texture coordinates
-		if (this.backgroundBitmap != null)
-			this.texturePositionHandle = GLES20.glGetAttribLocation(this.shaderProgram, "a_texCoord");
+        if (a_bitmap == this.uploadedBitmap && a_repeat == this.uploadedRepeat)
+            return this.textureIDs[0];
+
+        // Bind texture to texturename
+        this.book.gameRenderer.glState.ActiveTexture(GLES20.GL_TEXTURE0);
+        this.book.gameRenderer.glState.BindTexture(this.textureIDs[0]);
+
+        // Set filtering
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+
+        // Set wrapping mode
+		if (a_repeat)
+		{
+			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_REPEAT);
+			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_REPEAT);
+		}
+		else
+		{
+			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+			GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+		}
+
+        // Load the bitmap into the bound texture.
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, a_bitmap, 0);
+        this.uploadedBitmap = a_bitmap;
+        this.uploadedRepeat = a_repeat;
+        return this.textureIDs[0];
     }
 
     /*
         Function: DrawBasics
-            Draws the box as currently set up
+            Adds the box as currently set up to the SpriteBatch
 
         Parameter:
-            a_shaderProgram  - int    | The ShaderProgram to use
+            a_mvpMatrix  - float[]    | The mvp-matrix to draw the box with
     */
     protected void DrawBasics(float[] a_mvpMatrix)
     {
-        if (this.shaderProgram == 0)
+        // while drawn from a packet, the box is drawn as it was when the frame was recorded
+        if (this.drawPacket != null)
+        {
+            this._DrawRecorded(a_mvpMatrix);
             return;
+        }
 
-        // Make use of the current Program and the currently set stencil
-		GLES20.glUseProgram(this.shaderProgram);
-
-        // Enable blending for premultiplied alpha
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_SRC_ALPHA);
+        if (this.shaderProgram == null)
+            return;
 
-		// Set the view-projecton-matrix and the vertex-position
-		GLES20.glEnableVertexAttribArray(this.vertexPositionHandle);
-        GLES20.glUniformMatrix4fv(GLES20.glGetUniformLocation(this.shaderProgram, "uMVPMatrix"), 1, false, a_mvpMatrix, 0);
-        GLES20.glVertexAttribPointer(this.vertexPositionHandle, 3, GLES20.GL_FLOAT, false, 12, this.vertexBuffer);
+        if (this.backgroundBitmap == null)
+            this.book.gameRenderer.spriteBatch.Draw(this.shaderProgram, 0, a_mvpMatrix, this.coords, this.texturePositions, this.backgroundColor);
+        else if (this.tileset != null)
+            this.book.gameRenderer.spriteBatch.Draw(this.shaderProgram, this.tileset.textureIDs[0], a_mvpMatrix, this.coords, this.texturePositions, this.backgroundColor);
+        else
+            this.book.gameRenderer.spriteBatch.Draw(this.shaderProgram, this._UploadTexture(this.backgroundBitmap, this.backgroundRepeat), a_mvpMatrix, this.coords, this.texturePositions, this.backgroundColor);
+    }
 
-        // Set Background color
-        if (this.backgroundColor != null)
-			GLES20.glUniform4fv(GLES20.glGetUniformLocation(this.shaderProgram, "vColor"), 1, this.backgroundColor, 0);
+    @Override
+    // records the box as currently set up, so DrawBasics can draw it while the GameThread changes it
+    protected void _Record(RenderPacket a_packet)
+    {
+        // objects: program, tileset, bitmap, backgroundRepeat. floats: coords (12), texturePositions (8), backgroundColor (4). ints: coordsVersion
+        a_packet.AddObject(this.shaderProgram);
+        a_packet.AddObject(this.backgroundBitmap == null ? null : this.tileset);
+        a_packet.AddObject(this.backgroundBitmap);
+        a_packet.AddObject(Boolean.valueOf(this.backgroundRepeat));
+        a_packet.AddFloats(this.coords, 12);
+        a_packet.AddFloats(this.texturePositions, 8);
+        a_packet.AddFloats(this.backgroundColor == null ? noColor : this.backgroundColor, 4);
+        this.recordInts[0] = this.coordsVersion;
+        a_packet.AddInts(this.recordInts, 1);
+    }
 
-        // Set background image
-        if (this.backgroundBitmap != null)
-        {
-			// Bind the Texture and set its coordinates
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-			if (this.tileset != null)
-				GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, this.tileset.textureIDs[0]);
-			else
-            	GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, this.textureIDs[0]);
-
-			GLES20.glEnableVertexAttribArray(this.texturePositionHandle);
-			GLES20.glVertexAttribPointer(this.texturePositionHandle, 2, GLES20.GL_FLOAT, false, 0, this.texturePositionBuffer);
-        }
+    // adds the box recorded by _Record to the SpriteBatch
+    private void _DrawRecorded(float[] a_mvpMatrix)
+    {
+        int objects = this.drawPacket.ObjectOffset(this.drawIndex);
+        int floats = this.drawPacket.FloatOffset(this.drawIndex);
+        ShaderProgram program = (ShaderProgram) this.drawPacket.objects[objects];
+        if (program == null)
+            return;
 
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, drawOrder.length, GLES20.GL_UNSIGNED_SHORT, drawListBuffer);
-		GLES20.glDisableVertexAttribArray(this.vertexPositionHandle);
+        Tileset tileset = (Tileset) this.drawPacket.objects[objects + 1];
+        int texture = 0;
+        if (tileset != null)
+            texture = tileset.textureIDs[0];
+        else if (program != this.book.gameRenderer.spriteBatch.colorProgram)
+            texture = this._UploadTexture((Bitmap) this.drawPacket.objects[objects + 2], this.drawPacket.objects[objects + 3] == Boolean.TRUE);
 
-		if (this.backgroundBitmap != null)
-			GLES20.glDisableVertexAttribArray(this.texturePositionHandle);
+        this.book.gameRenderer.spriteBatch.Draw(program, texture, a_mvpMatrix, this.drawPacket.floats, floats, this.drawPacket.floats, floats + 12, this.drawPacket.floats, floats + 20);
     }
 
     @Override
     // apply the mask of this element, so sub elements won't overflow
     protected int _ApplyMask(float[] a_mvpMatrix, int a_zIndex)
     {
-        if (this.stencilProgram == 0)
+        // the mask is applied as it was when the frame was recorded
+        if (this.drawPacket == null)
             return a_zIndex;
 
-        GLES20.glUseProgram(this.stencilProgram);
+        // (re)create the mask-buffer and get the program used to apply the mask, if the context got lost. The drawing
+        // itself is done by the SpriteBatch
+        if (this.maskBufferVersion != this.book.gameRenderer.spriteBatch.contextVersion)
+        {
+            this.stencilProgram = this.book.gameRenderer.shaders.GetProgram(stencilVertexShaderCode, stencilFragmentShaderCode);
+            GLES20.glGenBuffers(1, this.maskBufferID, 0);
+            this.maskBufferVersion = this.book.gameRenderer.spriteBatch.contextVersion;
+            this.maskBufferCoords = -1;
+        }
+
+        // everything drawn so far needs to be on the framebuffer before the stencil changes
+        this.book.gameRenderer.spriteBatch.Flush();
+        this.book.gameRenderer.glState.UseProgram(this.stencilProgram.program);
 
         // Initialize Stencil-manipulation
-        GLES20.glEnable(GLES20.GL_STENCIL_TEST);
-        GLES20.glColorMask(false, false, false, false);
-        GLES20.glStencilMask(0xFF);
+        this.book.gameRenderer.glState.Enable(GLES20.GL_STENCIL_TEST);
+        this.book.gameRenderer.glState.ColorMask(false, false, false, false);
+        this.book.gameRenderer.glState.StencilMask(0xFF);
 
         if (a_zIndex == 255)
         {
             // TODO: Test, if this actually works
             // flip the zIndex, because the maximum depth has been reached
             // who the fuck uses more than 255 GUI-Elements inside one another?
-            GLES20.glStencilFunc(GLES20.GL_EQUAL, a_zIndex, 0xFF);
-            GLES20.glStencilOp(GLES20.GL_ZERO, GLES20.GL_ZERO, 5);
+            this.book.gameRenderer.glState.StencilFunc(GLES20.GL_EQUAL, a_zIndex, 0xFF);
+            this.book.gameRenderer.glState.StencilOp(GLES20.GL_ZERO, GLES20.GL_ZERO, 5);
 
             // clear the whole stencil-buffer with 0, except where its 255, set it to 1 there
-            GLES20.glEnableVertexAttribArray(this.stencilVertexPositionHandle);
-            GLES20.glUniformMatrix4fv(GLES20.glGetUniformLocation(this.stencilProgram, "uMVPMatrix"), 1, false, a_mvpMatrix, 0);
-            GLES20.glVertexAttribPointer(this.stencilVertexPositionHandle, 3, GLES20.GL_FLOAT, false, 12, this.fullscreenVertexBuffer);
-            GLES20.glDrawElements(GLES20.GL_TRIANGLES, drawOrder.length, GLES20.GL_UNSIGNED_SHORT, drawListBuffer);
+            this._DrawMaskQuad(a_mvpMatrix, this.book.gameRenderer.spriteBatch.unitQuadBuffer);
             a_zIndex = 1;
         }
 
         // make it increase the stencil value by one for the whole area
-        GLES20.glStencilFunc(GLES20.GL_ALWAYS, 0, 0xFF);
-        GLES20.glStencilOp(GLES20.GL_KEEP, GLES20.GL_KEEP, GLES20.GL_INCR);
+        this.book.gameRenderer.glState.StencilFunc(GLES20.GL_ALWAYS, 0, 0xFF);
+        this.book.gameRenderer.glState.StencilOp(GLES20.GL_KEEP, GLES20.GL_KEEP, GLES20.GL_INCR);
 
-        // Set the view-projecton-matrix and the vertex-position
-        GLES20.glEnableVertexAttribArray(this.stencilVertexPositionHandle);
-        GLES20.glUniformMatrix4fv(GLES20.glGetUniformLocation(this.stencilProgram, "uMVPMatrix"), 1, false, a_mvpMatrix, 0);
-        GLES20.glVertexAttribPointer(this.stencilVertexPositionHandle, 3, GLES20.GL_FLOAT, false, 12, this.vertexBuffer);
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, drawOrder.length, GLES20.GL_UNSIGNED_SHORT, drawListBuffer);
+        // upload the recorded coords if they changed since the last upload
+        int coordsVersion = this.drawPacket.ints[this.drawPacket.IntOffset(this.drawIndex)];
+        if (this.maskBufferCoords != coordsVersion)
+        {
+            this.vertexBuffer.put(this.drawPacket.floats, this.drawPacket.FloatOffset(this.drawIndex), 12).position(0);
+            this.book.gameRenderer.glState.BindArrayBuffer(this.maskBufferID[0]);
+            GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, 12 * 4, this.vertexBuffer, GLES20.GL_STATIC_DRAW);
+            this.maskBufferCoords = coordsVersion;
+        }
+
+        this._DrawMaskQuad(a_mvpMatrix, this.maskBufferID[0]);
 
         // switch back to regular non-stencil rendering
-        GLES20.glColorMask(true, true, true, true);
+        this.book.gameRenderer.glState.ColorMask(true, true, true, true);
         return a_zIndex + 1;
     }
 
-    // creates a shader of a given type an compiles a given sourceCode into it
-    private static int _LoadShader(int a_type, String a_shaderCode)
+    @Override
+    // removes the mask applied by _ApplyMask again, after the sub elements are drawn
+    protected void _RemoveMask(float[] a_mvpMatrix, int a_zIndex)
+    {
+        if (this.stencilProgram == null)
+            return;
+
+        this.book.gameRenderer.spriteBatch.Flush();
+        this.book.gameRenderer.glState.UseProgram(this.stencilProgram.program);
+        this.book.gameRenderer.glState.ColorMask(false, false, false, false);
+        this.book.gameRenderer.glState.StencilMask(0xFF);
+
+        // decrease the stencil value by one for the same area it was increased for
+        this.book.gameRenderer.glState.StencilFunc(GLES20.GL_ALWAYS, 0, 0xFF);
+        this.book.gameRenderer.glState.StencilOp(GLES20.GL_KEEP, GLES20.GL_KEEP, GLES20.GL_DECR);
+        this._DrawMaskQuad(a_mvpMatrix, this.maskBufferID[0]);
+
+        this.book.gameRenderer.glState.ColorMask(true, true, true, true);
+    }
+
+    // draws the quad stored in the given vertex-buffer-object with the stencil-program
+    private void _DrawMaskQuad(float[] a_mvpMatrix, int a_buffer)
     {
-        int shader = GLES20.glCreateShader(a_type);
-        GLES20.glShaderSource(shader, a_shaderCode);
-        GLES20.glCompileShader(shader);
-        return shader;
+        this.book.gameRenderer.glState.BindArrayBuffer(a_buffer);
+        this.book.gameRenderer.glState.BindElementArrayBuffer(this.book.gameRenderer.spriteBatch.quadIndexBuffer);
+
+        GLES20.glEnableVertexAttribArray(this.stencilProgram.positionHandle);
+        GLES20.glUniformMatrix4fv(this.stencilProgram.mvpMatrixHandle, 1, false, a_mvpMatrix, 0);
+        GLES20.glVertexAttribPointer(this.stencilProgram.positionHandle, 3, GLES20.GL_FLOAT, false, 12, 0);
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, 6, GLES20.GL_UNSIGNED_SHORT, 0);
+        GLES20.glDisableVertexAttribArray(this.stencilProgram.positionHandle);
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import android.graphics.Color;
 import com.libraries.heiko.gamebook.GameBook;
 import com.libraries.heiko.gamebook.GameElement;
 import com.libraries.heiko.gamebook.GamePage;
+import com.libraries.heiko.gamebook.RenderPacket;
 import com.libraries.heiko.gamebook.tools.GameFont;
 
 /**
@@ -17,6 +18,9 @@ public class Label extends BaseSquare
     private boolean sizeSet = false;        // true: the size was set when the text changed, false: the size was not set
     private char[] text;                    // holds a char-array version of the current value
 
+    // cache-variables to prevent memory-allocations
+    private float[] position = new float[2];  // used to record the position of the text
+
     public Label(String a_id, GamePage a_page, GameBook a_book, GameElement a_parent, GameFont a_font)
     {
         super(a_id, a_page, a_book, a_parent);
@@ -42,6 +46,7 @@ public class Label extends BaseSquare
     {
         this.value = a_value;
         this.text = ((String) a_value).toCharArray();
+        this.Invalidate();
 
         if (this.font.fontLoaded)
         {
@@ -63,6 +68,27 @@ public class Label extends BaseSquare
     public void SetColor(String a_fontColor)
     {
         this.fontColor = Color.parseColor(a_fontColor);
+        this.Invalidate();
+    }
+
+    @Override
+    // records the text and its position, so _Draw can draw them while the GameThread changes them
+    protected void _Record(RenderPacket a_packet)
+    {
+        // the size can only be calculated once the font is loaded
+        if (this.sizeSet == false && this.font.fontLoaded)
+        {
+            this.SetSize(this.font.TextWidth((String) this.value), this.font.TextHeight());
+            this.sizeSet = true;
+        }
+
+        super._Record(a_packet);
+
+        // SetValue always creates a new array, so the recorded one never changes
+        a_packet.AddObject(this.text);
+        this.position[0] = this.vectorX;
+        this.position[1] = this.vectorY;
+        a_packet.AddFloats(this.position, 2);
     }
 
     @Override
@@ -70,21 +96,19 @@ public class Label extends BaseSquare
     protected void _Draw(float[] a_mvpMatrix)
     {
 
-        if (this.font.fontLoaded == false)
+        if (this.font.fontLoaded == false || this.drawPacket == null)
             return;
 
-        if (this.sizeSet == false)
-        {
-            this.SetSize(this.font.TextWidth((String) this.value), this.font.TextHeight());
-            this.sizeSet = true;
-        }
+        this.DrawBasics(a_mvpMatrix);
+        char[] text = (char[]) this.drawPacket.objects[this.drawPacket.ObjectOffset(this.drawIndex) + 4];
+        int position = this.drawPacket.FloatOffset(this.drawIndex) + 24;
 
-        if (this.shaderProgram != 0)
-            this.DrawBasics(a_mvpMatrix);
+        // the font uses its own program, so the batched quads need to be drawn first
+        this.book.gameRenderer.spriteBatch.Flush();
 
         // TODO: Set correct fontColor (this.fontColor)
         this.font.Begin(1.0f, 1.0f, 1.0f, 1.0f, a_mvpMatrix);
-        this.font.Draw(this.text, this.vectorX, this.vectorY, -(this.zIndex + 1));
+        this.font.Draw(text, this.drawPacket.floats[position], this.drawPacket.floats[position + 1], -(this.zIndex + 1));
         this.font.End();
     }
 }
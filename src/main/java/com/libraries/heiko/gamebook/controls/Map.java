@@ -3,6 +3,7 @@ package com.libraries.heiko.gamebook.controls;
 import com.libraries.heiko.gamebook.GameBook;
 import com.libraries.heiko.gamebook.GameElement;
 import com.libraries.heiko.gamebook.GamePage;
+import com.libraries.heiko.gamebook.tools.Culling;
 
 /**
  * Created by heiko on 12.04.2016.
@@ -14,6 +15,9 @@ public class Map extends BaseSquare
 	private int cameraY = 0;
 	private Sheet[][][] tiles;
 	private boolean mapReady = false;
+
+	// cache-variables to prevent memory-allocations
+	private float[] visibleArea = new float[4];		// used to calculate the area of the map inside the viewport
 	public Map(String a_id, GamePage a_page, GameBook a_book, GameElement a_parent, int a_mapWidth, int a_mapHeight, int a_layerCount)
 	{
 		super(a_id, a_page, a_book, a_parent);
@@ -30,15 +34,30 @@ public class Map extends BaseSquare
 		if (this.mapReady != true)
 			return;
 
-		// TODO: make use of the cameraX and cameraY, and only draw the necessary tiles
-		// TODO: based on size and position (as this is still a subclass of GameElement)
+		// TODO: make use of the cameraX and cameraY
+		// only draw the tiles inside the viewport. The tiles cover the map evenly, starting at its top-left corner
+		int firstColumn = 0;
+		int lastColumn = this.mapWidth - 1;
+		int firstRow = 0;
+		int lastRow = this.mapHeight - 1;
+		float tileWidth = this.vectorWidth / this.mapWidth;
+		float tileHeight = this.vectorHeight / this.mapHeight;
+		if (tileWidth > 0 && tileHeight > 0 && Culling.GetVisibleArea(a_mvpMatrix, -(this.zIndex + 1), this.visibleArea))
+		{
+			firstColumn = Math.max(firstColumn, (int) Math.floor((this.visibleArea[0] - this.vectorX) / tileWidth));
+			lastColumn = Math.min(lastColumn, (int) Math.floor((this.visibleArea[2] - this.vectorX) / tileWidth));
+			firstRow = Math.max(firstRow, (int) Math.floor((this.vectorY + this.vectorHeight - this.visibleArea[3]) / tileHeight));
+			lastRow = Math.min(lastRow, (int) Math.floor((this.vectorY + this.vectorHeight - this.visibleArea[1]) / tileHeight));
+		}
+
 		for (int i = 0; i < tiles.length; i++)
 		{
-			for (int j = 0; j < this.mapWidth; j++)
+			for (int j = firstColumn; j <= lastColumn; j++)
 			{
-				for (int k = 0; k < this.mapHeight; k++)
+				for (int k = firstRow; k <= lastRow; k++)
 				{
-					this.tiles[i][j][k].DrawBasics(a_mvpMatrix);
+					if (this.tiles[i][j][k] != null)
+						this.tiles[i][j][k].DrawBasics(a_mvpMatrix);
 				}
 			}
 		}
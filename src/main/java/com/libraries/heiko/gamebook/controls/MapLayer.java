@@ -1,21 +1,119 @@
 package com.libraries.heiko.gamebook.controls;
 
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+
 import com.libraries.heiko.gamebook.GameBook;
 import com.libraries.heiko.gamebook.GameElement;
 import com.libraries.heiko.gamebook.GamePage;
+import com.libraries.heiko.gamebook.RenderPacket;
+import com.libraries.heiko.gamebook.tools.Culling;
+import com.libraries.heiko.gamebook.tools.GLState;
+import com.libraries.heiko.gamebook.tools.Position;
+import com.libraries.heiko.gamebook.tools.ShaderProgram;
 import com.libraries.heiko.gamebook.tools.Tileset;
+import com.libraries.heiko.gamebook.tools.TimerWheel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
 
 /**
  * Created by heiko on 13.04.2016.
+ * Draws a whole layer of tiles without creating an element per tile. The tiles are stored in a
+ * primitive grid and get drawn in chunks of CHUNK_SIZE x CHUNK_SIZE tiles. Every chunk has one
+ * vertex-buffer-object per Tileset, which only gets rebuilt when a tile inside the chunk changes.
+ * Every chunk has a version that gets increased by the gameThread whenever one of its tiles changes.
+ * The versions are recorded with the frame, and the GL-thread rebuilds a chunk once its recorded
+ * version differs from the one it was built from, so no change gets lost between the threads.
+ * Only the chunks inside the viewport get built and drawn
  */
 public class MapLayer extends GameElement
 {
+	public final static int CHUNK_SIZE = 16;							// width and height of a chunk in tiles
+	public final static int MAX_TILESETS = 8;							// maximum number of different Tilesets per layer
+	private final static int VERTEX_FLOATS = 5;							// Floats per vertex: position (3), texture-position (2)
+	private final static int VERTEX_STRIDE = VERTEX_FLOATS * 4;			// Bytesize of a single vertex
+	private final static int EMPTY = -1;								// value of a cell without a tile
+
 	public int mapWidth, mapHeight;
 	private int tileWidth, tileHeight;
 	private int cameraX = 0;
 	private int cameraY = 0;
-	private MapTile[] tiles;
-	private MapTile tempTile;
+
+	// the tiles. A cell holds (tileset-index << 24) | (tileX + tileY * tileset.columns), or EMPTY
+	private int[] cells;
+	private Tileset[] tilesets = new Tileset[MAX_TILESETS];				// the Tilesets used by this layer
+	private int tilesetCount = 0;										// number of Tilesets used by this layer
+
+	// the animated tiles. Only the cells that actually are animated are stored, the cells with the same speed share a timer
+	private AnimationTimer[] animationTimers = new AnimationTimer[4];	// one timer per animation-speed in use
+	private int animationTimerCount = 0;								// number of entries in animationTimers
+
+	// the chunks
+	private int chunkColumns, chunkRows;								// number of chunks in x- and y-direction
+	private int[] chunkVersions;											// gets increased whenever a tile of the chunk changes. Is changed by the gameThread
+	private int[] builtVersions;										// the recorded version every chunk was built from, -1 if it needs to be rebuilt. Is used by the GL-thread
+	private int[][] chunkBuffers;										// the vertex-buffer-objects of every chunk, one per Tileset
+	private int[][] chunkQuadCounts;									// number of tiles in each vertex-buffer-object
+	private int chunkBufferVersion = -1;								// contextVersion of the SpriteBatch the buffers were created in
+	private int[] visibleChunks;										// the chunks inside the viewport in the current frame
+	private int visibleChunkCount = 0;									// number of chunks inside the viewport in the current frame
+
+	// OpenGL stuff
+	private ShaderProgram tileProgram;									// the program used to draw the chunks
+
+	// cache-variables to prevent memory-allocations
+	private float[] chunkValues = new float[CHUNK_SIZE * CHUNK_SIZE * 4 * VERTEX_FLOATS];	// used to build the vertices of a chunk
+	private FloatBuffer chunkVertices;									// used to upload chunkValues to a vertex-buffer-object
+	private float[] layerMvpMatrix = new float[16];						// mvp-matrix with the origin moved to the top-left corner of the layer
+	private int[] bufferIDs = new int[1];								// used to generate vertex-buffer-objects
+	private float[] visibleArea = new float[4];							// used to calculate the area of the layer inside the viewport
+	private float[] recordValues = new float[3];						// used to record the position of the layer and its number of Tilesets
+
+	// the timer of all animated cells with the same speed
+	private class AnimationTimer extends TimerWheel.Timer
+	{
+		final int speed;												// milliseconds per frame of the cells
+		int[] cells = new int[8];										// index of the animated cells
+		int count = 0;													// number of animated cells
+
+		AnimationTimer(int a_speed)
+		{
+			this.speed = a_speed;
+		}
+
+		@Override
+		public void Fire(long a_time)
+		{
+			MapLayer.this._NextFrame(this);
+		}
+	}
+
+	// The vertex-shader used to draw the chunks
+	private final static String vertexShaderCode =
+		"uniform mat4 uMVPMatrix;" +
+		"attribute vec4 vPosition;" +
+		"attribute vec2 a_texCoord;" +
+		"varying vec2 v_texCoord;" +
+		"void main()" +
+		"{" +
+		"   gl_Position = uMVPMatrix * vPosition;" +
+		"   v_texCoord = a_texCoord;" +
+		"}";
+
+	// The fragment-shader used to draw the chunks. Uses the same alpha-handling as the images of BaseSquare
+	private final static String fragmentShaderCode =
+		"precision mediump float;" +
+		"varying vec2 v_texCoord;" +
+		"uniform sampler2D s_texture;" +
+		"void main()" +
+		"{" +
+		"   vec4 tex = texture2D (s_texture, v_texCoord);" +
+		"   gl_FragColor = vec4(tex.r, tex.g, tex.b, 1.0 - tex.a);" +
+		"}";
+
 	public MapLayer(String a_id, GamePage a_page, GameBook a_book, GameElement a_parent, int a_mapWidth, int a_mapHeight, int a_tileWidth, int a_tileHeight)
 	{
 		super(a_id, a_page, a_book, a_parent);
@@ -23,23 +121,396 @@ public class MapLayer extends GameElement
 		this.mapHeight = a_mapHeight;
 		this.tileWidth = a_tileWidth;
 		this.tileHeight = a_tileHeight;
-		this.tiles = new MapTile[this.mapWidth * this.mapHeight];
-		for (int i = 0; i < tiles.length; i++)
+
+		this.cells = new int[this.mapWidth * this.mapHeight];
+		for (int i = 0; i < this.cells.length; i++)
 		{
-			tempTile = new MapTile(a_id + "_tile" + i, a_page, a_book, this);
-			tempTile.SetPosition((i - (i/this.mapWidth)*this.mapWidth) * this.tileWidth, ((i/this.mapWidth) * this.tileHeight));
-			tempTile.SetSize(this.tileWidth, this.tileHeight);
-			tiles[i] = (MapTile) this.AddChild(tempTile);
+			this.cells[i] = EMPTY;
 		}
+
+		this.chunkColumns = (this.mapWidth + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		this.chunkRows = (this.mapHeight + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		this.chunkVersions = new int[this.chunkColumns * this.chunkRows];
+		this.builtVersions = new int[this.chunkColumns * this.chunkRows];
+		Arrays.fill(this.builtVersions, -1);
+		this.chunkBuffers = new int[this.chunkColumns * this.chunkRows][];
+		this.chunkQuadCounts = new int[this.chunkColumns * this.chunkRows][];
+		this.visibleChunks = new int[this.chunkColumns * this.chunkRows];
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(this.chunkValues.length * 4);
+		this.chunkVertices = buffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
 	}
 
+	/*
+		Function: SetTile
+			Sets the tile of a cell of the layer
+
+		Parameter:
+			a_x			- Integer	| x-position of the cell
+			a_y			- Integer	| y-position of the cell
+			a_tileset	- Tileset	| The Tileset the tile is part of. null clears the cell
+			a_tilesetX	- Integer	| x-position of the Tile inside the Tileset
+			a_tilesetY	- Integer	| y-position of the Tile inside the Tileset
+	*/
 	public void SetTile(int a_x, int a_y, Tileset a_tileset, int a_tilesetX, int a_tilesetY)
 	{
-		tiles[a_x + a_y*this.mapWidth].SetTile(a_tileset, a_tilesetX, a_tilesetY);
+		if (a_x < 0 || a_y < 0 || a_x >= this.mapWidth || a_y >= this.mapHeight)
+			return;
+
+		if (a_tileset == null)
+			this.cells[a_x + a_y*this.mapWidth] = EMPTY;
+		else
+			this.cells[a_x + a_y*this.mapWidth] = (this._GetTilesetIndex(a_tileset) << 24) | (a_tilesetX + a_tilesetY*a_tileset.columns);
+
+		this.chunkVersions[this._GetChunk(a_x + a_y*this.mapWidth)]++;
+		this.Invalidate();
 	}
 
+	/*
+		Function: SetTileAnimationSpeed
+			Sets how fast the tile of a cell gets animated. The animation-frames are taken from the animationInfo of its Tileset.
+			Cells with the same speed switch their frames at the same time
+
+		Parameter:
+			a_tileX				- Integer	| x-position of the cell
+			a_tileY				- Integer	| y-position of the cell
+			a_millisecPerFrame	- Integer	| duration of an animation-frame in milliseconds. 0 stops the animation
+	*/
 	public void SetTileAnimationSpeed(int a_tileX, int a_tileY, int a_millisecPerFrame)
 	{
-		tiles[a_tileX + a_tileY*this.mapWidth].SetAnimationSpeed(a_millisecPerFrame);
+		if (a_tileX < 0 || a_tileY < 0 || a_tileX >= this.mapWidth || a_tileY >= this.mapHeight)
+			return;
+
+		int cell = a_tileX + a_tileY*this.mapWidth;
+		this._RemoveAnimatedCell(cell);
+		if (a_millisecPerFrame <= 0)
+			return;
+
+		AnimationTimer timer = null;
+		for (int i = 0; i < this.animationTimerCount && timer == null; i++)
+		{
+			if (this.animationTimers[i].speed == a_millisecPerFrame)
+				timer = this.animationTimers[i];
+		}
+
+		// the first cell with this speed starts a new timer
+		if (timer == null)
+		{
+			if (this.animationTimerCount == this.animationTimers.length)
+				this.animationTimers = Arrays.copyOf(this.animationTimers, this.animationTimerCount * 2);
+
+			timer = new AnimationTimer(a_millisecPerFrame);
+			this.animationTimers[this.animationTimerCount++] = timer;
+			this.StartTimer(timer, a_millisecPerFrame);
+		}
+
+		if (timer.count == timer.cells.length)
+			timer.cells = Arrays.copyOf(timer.cells, timer.count * 2);
+		timer.cells[timer.count++] = cell;
+	}
+
+	// removes a cell from the timer of its animation-speed, and stops the timer if it was the last cell
+	private void _RemoveAnimatedCell(int a_cell)
+	{
+		for (int i = 0; i < this.animationTimerCount; i++)
+		{
+			AnimationTimer timer = this.animationTimers[i];
+			for (int j = 0; j < timer.count; j++)
+			{
+				if (timer.cells[j] != a_cell)
+					continue;
+
+				// move the last cell into its place
+				timer.cells[j] = timer.cells[--timer.count];
+				if (timer.count == 0)
+				{
+					this.StopTimer(timer);
+					this.animationTimers[i] = this.animationTimers[--this.animationTimerCount];
+					this.animationTimers[this.animationTimerCount] = null;
+				}
+				return;
+			}
+		}
+	}
+
+	// switches the cells of a timer to their next animation-frame and waits for the one after it. Is called by the timer on the gameThread
+	private void _NextFrame(AnimationTimer a_timer)
+	{
+		for (int i = 0; i < a_timer.count; i++)
+		{
+			int cell = this.cells[a_timer.cells[i]];
+			if (cell == EMPTY)
+				continue;
+
+			Tileset tileset = this.tilesets[cell >>> 24];
+			int tileX = (cell & 0xFFFFFF) % tileset.columns;
+			int tileY = (cell & 0xFFFFFF) / tileset.columns;
+			Position next = tileset.animationInfo[tileX][tileY];
+			if (next.x < 0 || next.y < 0)
+				continue;
+
+			this.cells[a_timer.cells[i]] = (cell & 0xFF000000) | (next.x + next.y*tileset.columns);
+			this.chunkVersions[this._GetChunk(a_timer.cells[i])]++;
+			this.Invalidate();
+		}
+
+		this.StartTimer(a_timer, a_timer.speed);
+	}
+
+	// the animations stop with the layer
+	@Override
+	protected void _Detach()
+	{
+		for (int i = 0; i < this.animationTimerCount; i++)
+		{
+			this.StopTimer(this.animationTimers[i]);
+		}
+	}
+
+	@Override
+	protected void _UpdateScreenDimensions(float a_horzVertexRatio, float a_vertVertexRatio)
+	{
+		// the size of a tile in vertex-space changed, so every chunk needs to be rebuilt
+		for (int i = 0; i < this.chunkVersions.length; i++)
+		{
+			this.chunkVersions[i]++;
+		}
+	}
+
+	// records the position of the layer, its number of Tilesets and the version of every chunk
+	@Override
+	protected void _Record(RenderPacket a_packet)
+	{
+		// floats: left, top, tilesetCount. ints: chunkVersions
+		this.recordValues[0] = this.vectorX;
+		this.recordValues[1] = this.vectorY + this.vectorHeight;
+		this.recordValues[2] = this.tilesetCount;
+		a_packet.AddFloats(this.recordValues, 3);
+		a_packet.AddInts(this.chunkVersions, this.chunkVersions.length);
+	}
+
+	// Draws the chunks of the layer on the framebuffer
+	@Override
+	protected void _Draw(float[] a_mvpMatrix)
+	{
+		// the layer is drawn as it was when the frame was recorded
+		if (this.drawPacket == null)
+			return;
+
+		int floats = this.drawPacket.FloatOffset(this.drawIndex);
+		int versions = this.drawPacket.IntOffset(this.drawIndex);
+		int tilesetCount = (int) this.drawPacket.floats[floats + 2];
+		if (tilesetCount == 0)
+			return;
+
+		// the program and the buffers of a previous context are gone, so every chunk needs to be rebuilt
+		if (this.chunkBufferVersion != this.book.gameRenderer.spriteBatch.contextVersion)
+		{
+			this.tileProgram = this.book.gameRenderer.shaders.GetProgram(vertexShaderCode, fragmentShaderCode);
+			for (int i = 0; i < this.chunkBuffers.length; i++)
+			{
+				this.chunkBuffers[i] = null;
+				this.chunkQuadCounts[i] = null;
+				this.builtVersions[i] = -1;
+			}
+			this.chunkBufferVersion = this.book.gameRenderer.spriteBatch.contextVersion;
+		}
+
+		System.arraycopy(a_mvpMatrix, 0, this.layerMvpMatrix, 0, 16);
+		Matrix.translateM(this.layerMvpMatrix, 0, this.drawPacket.floats[floats], this.drawPacket.floats[floats + 1], 0);
+		this._FindVisibleChunks();
+		if (this.visibleChunkCount == 0)
+			return;
+
+		// everything batched so far has to be drawn before the chunks
+		this.book.gameRenderer.spriteBatch.Flush();
+
+		GLState glState = this.book.gameRenderer.glState;
+		glState.UseProgram(this.tileProgram.program);
+		glState.Enable(GLES20.GL_BLEND);
+		glState.BlendFunc(GLES20.GL_ONE, GLES20.GL_SRC_ALPHA);
+		glState.ActiveTexture(GLES20.GL_TEXTURE0);
+		glState.BindElementArrayBuffer(this.book.gameRenderer.spriteBatch.quadIndexBuffer);
+
+		GLES20.glUniformMatrix4fv(this.tileProgram.mvpMatrixHandle, 1, false, this.layerMvpMatrix, 0);
+		GLES20.glUniform1i(this.tileProgram.textureUniformHandle, 0);
+		GLES20.glEnableVertexAttribArray(this.tileProgram.positionHandle);
+		GLES20.glEnableVertexAttribArray(this.tileProgram.texturePositionHandle);
+
+		// chunks outside the viewport stay outdated until they become visible
+		for (int i = 0; i < this.visibleChunkCount; i++)
+		{
+			int chunk = this.visibleChunks[i];
+			int version = this.drawPacket.ints[versions + chunk];
+			if (this.builtVersions[chunk] != version)
+			{
+				this._BuildChunk(chunk, tilesetCount);
+				this.builtVersions[chunk] = version;
+			}
+		}
+
+		// draw Tileset by Tileset, so every texture only gets bound once
+		for (int t = 0; t < tilesetCount; t++)
+		{
+			if (!this.tilesets[t].textureCreated)
+				continue;
+
+			glState.BindTexture(this.tilesets[t].textureIDs[0]);
+			for (int j = 0; j < this.visibleChunkCount; j++)
+			{
+				int i = this.visibleChunks[j];
+				if (this.chunkQuadCounts[i] == null || this.chunkQuadCounts[i][t] == 0)
+					continue;
+
+				glState.BindArrayBuffer(this.chunkBuffers[i][t]);
+				GLES20.glVertexAttribPointer(this.tileProgram.positionHandle, 3, GLES20.GL_FLOAT, false, VERTEX_STRIDE, 0);
+				GLES20.glVertexAttribPointer(this.tileProgram.texturePositionHandle, 2, GLES20.GL_FLOAT, false, VERTEX_STRIDE, 3 * 4);
+				GLES20.glDrawElements(GLES20.GL_TRIANGLES, this.chunkQuadCounts[i][t] * 6, GLES20.GL_UNSIGNED_SHORT, 0);
+				this.book.gameRenderer.spriteBatch.drawCalls++;
+			}
+		}
+
+		GLES20.glDisableVertexAttribArray(this.tileProgram.positionHandle);
+		GLES20.glDisableVertexAttribArray(this.tileProgram.texturePositionHandle);
+	}
+
+	// collects the chunks that are inside the viewport in visibleChunks
+	private void _FindVisibleChunks()
+	{
+		this.visibleChunkCount = 0;
+		float chunkWidth = this.PixelToVectorWidth(this.tileWidth) * CHUNK_SIZE;
+		float chunkHeight = this.PixelToVectorHeight(this.tileHeight) * CHUNK_SIZE;
+		float z = -(this.zIndex + 1);
+		if (chunkWidth <= 0 || chunkHeight <= 0)
+			return;
+
+		// in 2D-mode the visible tile-range can be calculated directly, so the cost doesn't depend on the size of the map
+		if (Culling.GetVisibleArea(this.layerMvpMatrix, z, this.visibleArea))
+		{
+			int firstColumn = Math.max(0, (int) Math.floor(this.visibleArea[0] / chunkWidth));
+			int lastColumn = Math.min(this.chunkColumns - 1, (int) Math.floor(this.visibleArea[2] / chunkWidth));
+			int firstRow = Math.max(0, (int) Math.floor(-this.visibleArea[3] / chunkHeight));
+			int lastRow = Math.min(this.chunkRows - 1, (int) Math.floor(-this.visibleArea[1] / chunkHeight));
+			for (int y = firstRow; y <= lastRow; y++)
+			{
+				for (int x = firstColumn; x <= lastColumn; x++)
+				{
+					this.visibleChunks[this.visibleChunkCount++] = x + y*this.chunkColumns;
+				}
+			}
+			return;
+		}
+
+		// in 3D-mode every chunk gets tested on its own
+		for (int y = 0; y < this.chunkRows; y++)
+		{
+			for (int x = 0; x < this.chunkColumns; x++)
+			{
+				if (!Culling.IsOutside(this.layerMvpMatrix, x * chunkWidth, -(y + 1) * chunkHeight, (x + 1) * chunkWidth, -y * chunkHeight, z))
+					this.visibleChunks[this.visibleChunkCount++] = x + y*this.chunkColumns;
+			}
+		}
+	}
+
+	// rebuilds the vertex-buffer-objects of the first a_tilesetCount Tilesets of a chunk. The vertices are relative to the top-left corner of the layer
+	private void _BuildChunk(int a_chunk, int a_tilesetCount)
+	{
+		int startX = (a_chunk % this.chunkColumns) * CHUNK_SIZE;
+		int startY = (a_chunk / this.chunkColumns) * CHUNK_SIZE;
+		int endX = Math.min(startX + CHUNK_SIZE, this.mapWidth);
+		int endY = Math.min(startY + CHUNK_SIZE, this.mapHeight);
+		float vectorTileWidth = this.PixelToVectorWidth(this.tileWidth);
+		float vectorTileHeight = this.PixelToVectorHeight(this.tileHeight);
+		float z = -(this.zIndex + 1);
+
+		if (this.chunkBuffers[a_chunk] == null)
+		{
+			this.chunkBuffers[a_chunk] = new int[MAX_TILESETS];
+			this.chunkQuadCounts[a_chunk] = new int[MAX_TILESETS];
+		}
+
+		for (int t = 0; t < a_tilesetCount; t++)
+		{
+			Tileset tileset = this.tilesets[t];
+			float textureWidth = tileset.tileImage.getWidth();
+			float textureHeight = tileset.tileImage.getHeight();
+			int index = 0;
+			int quads = 0;
+			for (int y = startY; y < endY; y++)
+			{
+				for (int x = startX; x < endX; x++)
+				{
+					int cell = this.cells[x + y*this.mapWidth];
+					if (cell == EMPTY || (cell >>> 24) != t)
+						continue;
+
+					int tileX = (cell & 0xFFFFFF) % tileset.columns;
+					int tileY = (cell & 0xFFFFFF) / tileset.columns;
+					float left = x * vectorTileWidth;
+					float right = left + vectorTileWidth;
+					float top = -y * vectorTileHeight;
+					float bottom = top - vectorTileHeight;
+					float textureLeft = tileset.GetXPosition(tileX) / textureWidth;
+					float textureRight = tileset.GetXPosition(tileX + 1) / textureWidth;
+					float textureTop = tileset.GetYPosition(tileY) / textureHeight;
+					float textureBottom = tileset.GetYPosition(tileY + 1) / textureHeight;
+
+					// same vertex-order as BaseSquare: bottom-left, top-left, top-right, bottom-right
+					index = this._PutVertex(index, left, bottom, z, textureLeft, textureBottom);
+					index = this._PutVertex(index, left, top, z, textureLeft, textureTop);
+					index = this._PutVertex(index, right, top, z, textureRight, textureTop);
+					index = this._PutVertex(index, right, bottom, z, textureRight, textureBottom);
+					quads++;
+				}
+			}
+
+			this.chunkQuadCounts[a_chunk][t] = quads;
+			if (quads == 0)
+				continue;
+
+			if (this.chunkBuffers[a_chunk][t] == 0)
+			{
+				GLES20.glGenBuffers(1, this.bufferIDs, 0);
+				this.chunkBuffers[a_chunk][t] = this.bufferIDs[0];
+			}
+
+			this.chunkVertices.clear();
+			this.chunkVertices.put(this.chunkValues, 0, index).position(0);
+			this.book.gameRenderer.glState.BindArrayBuffer(this.chunkBuffers[a_chunk][t]);
+			GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, index * 4, this.chunkVertices, GLES20.GL_STATIC_DRAW);
+		}
+	}
+
+	// writes a single vertex to chunkValues and returns the next free index
+	private int _PutVertex(int a_index, float a_x, float a_y, float a_z, float a_u, float a_v)
+	{
+		this.chunkValues[a_index] = a_x;
+		this.chunkValues[a_index + 1] = a_y;
+		this.chunkValues[a_index + 2] = a_z;
+		this.chunkValues[a_index + 3] = a_u;
+		this.chunkValues[a_index + 4] = a_v;
+		return a_index + VERTEX_FLOATS;
+	}
+
+	// returns the index of the chunk a cell belongs to
+	private int _GetChunk(int a_cell)
+	{
+		return ((a_cell / this.mapWidth) / CHUNK_SIZE) * this.chunkColumns + (a_cell % this.mapWidth) / CHUNK_SIZE;
+	}
+
+	// returns the index of a Tileset inside this layer, and registers it if it isn't used yet
+	private int _GetTilesetIndex(Tileset a_tileset)
+	{
+		for (int i = 0; i < this.tilesetCount; i++)
+		{
+			if (this.tilesets[i] == a_tileset)
+				return i;
+		}
+
+		if (this.tilesetCount == MAX_TILESETS)
+			throw new Error("MapLayer '" + this.id + "' can't use more than " + MAX_TILESETS + " Tilesets");
+
+		this.tilesets[this.tilesetCount] = a_tileset;
+		return this.tilesetCount++;
 	}
 }
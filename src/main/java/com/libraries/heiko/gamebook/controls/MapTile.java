@@ -5,6 +5,7 @@ import com.libraries.heiko.gamebook.GameBook;
 import com.libraries.heiko.gamebook.GameElement;
 import com.libraries.heiko.gamebook.GamePage;
 import com.libraries.heiko.gamebook.tools.Position;
+import com.libraries.heiko.gamebook.tools.TimerWheel;
 import com.libraries.heiko.gamebook.tools.Tileset;
 
 /**
@@ -14,13 +15,21 @@ public class MapTile extends BaseSquare
 {
 	Tileset tileset;
 	Position tilePosition;
-	long lastAnimationUpdate;
 	int frameDuration = 0;
 
+	// shows the next frame of the animation and waits for the one after it
+	private final TimerWheel.Timer animationTimer = new TimerWheel.Timer()
+	{
+		@Override
+		public void Fire(long a_time)
+		{
+			MapTile.this._NextFrame();
+		}
+	};
+
 	public MapTile(String a_id, GamePage a_page, GameBook a_book, GameElement a_parent)
 	{
 		super(a_id, a_page, a_book, a_parent);
-		this.lastAnimationUpdate = 0;
 		this.tilePosition = new Position(-1, -1);
 		// TODO: Implement map with layers, tiles and collision-info
 	}
@@ -56,10 +65,10 @@ public class MapTile extends BaseSquare
 	public void SetAnimationSpeed(int a_millisecPerFrame)
 	{
 		this.frameDuration = a_millisecPerFrame;
-		if (this.frameDuration == 0)
-			this.needsUpdate = false;
+		if (this.frameDuration <= 0)
+			this.StopTimer(this.animationTimer);
 		else
-			this.EnableUpdating();
+			this.StartTimer(this.animationTimer, this.frameDuration);
 	}
 
 	// Draws the Tile on the framebuffer
@@ -69,16 +78,23 @@ public class MapTile extends BaseSquare
 		this.DrawBasics(a_mvpMatrix);
 	}
 
+	// the animation stops with the tile
 	@Override
-	protected void _Update(long a_timeDelta, double a_timeFactor, long a_timePassed)
+	protected void _Detach()
+	{
+		this.StopTimer(this.animationTimer);
+	}
+
+	// switches to the next frame of the animation. Is called by the animationTimer on the gameThread
+	private void _NextFrame()
 	{
-		if (this.tileset == null || this.tileset.animationInfo[this.tilePosition.x][this.tilePosition.y].x < 0 || this.tileset.animationInfo[this.tilePosition.x][this.tilePosition.y].y < 0 || this.frameDuration <= 0)
+		if (this.frameDuration <= 0)
 			return;
 
-		if ((a_timePassed - this.lastAnimationUpdate)/1000000 >= this.frameDuration)
-		{
+		// tiles without an animation keep checking, the tile might get changed to an animated one
+		if (this.tileset != null && this.tileset.animationInfo[this.tilePosition.x][this.tilePosition.y].x >= 0 && this.tileset.animationInfo[this.tilePosition.x][this.tilePosition.y].y >= 0)
 			this.SetTilePosition(this.tileset.animationInfo[this.tilePosition.x][this.tilePosition.y]);
-			this.lastAnimationUpdate = a_timePassed;
-		}
+
+		this.StartTimer(this.animationTimer, this.frameDuration);
 	}
 }
@@ -0,0 +1,144 @@
+package com.libraries.heiko.gamebook.tools;
+
+import java.util.Arrays;
+
+/**
+ * Computes the sort-keys of the quads of a batch, so sorting them groups quads with the same
+ * render-state without breaking the painter's order. Quads are added in the order they have to
+ * be drawn in (the pre-order of the elements). Every quad gets a layer that is above all earlier
+ * quads it overlaps with a different state, and the same as the highest earlier quad it overlaps
+ * with the same state. The key is layer, state and sequence-number, so quads that overlap are
+ * always drawn in the order they were added in, while quads that don't overlap can be grouped by
+ * their state. To find the layer, the quad is only compared with the last quads of the grid-cells
+ * it covers (the screen from -1 to 1 is split into GRID x GRID cells). The older quads of a cell are
+ * folded into the highest layer of the cell and its state, which is treated as overlapping
+ * everything in the cell. That can only give a quad a higher layer than needed, so a batch costs
+ * at most GRID * GRID * CELL_QUADS comparisons per quad.
+ */
+public class BatchOrder
+{
+    public int count = 0;                                           // number of quads in the batch
+    private int[] states;                                           // render-state of every quad
+    private int[] layers;                                           // layer of every quad
+    private float[] bounds;                                         // left, bottom, right, top of every quad
+    int comparisons = 0;                                            // number of quads compared so far, see BatchOrderTest
+
+    // the grid
+    final static int GRID = 8;                                      // number of cells in x- and y-direction
+    final static int CELL_QUADS = 16;                               // number of quads every cell compares exactly
+    private int[] cellQuads = new int[GRID * GRID * CELL_QUADS];    // the last quads of every cell, a ring of CELL_QUADS per cell
+    private int[] cellSizes = new int[GRID * GRID];                 // number of quads in the ring of every cell
+    private int[] cellNext = new int[GRID * GRID];                  // position in the ring of every cell the next quad gets stored at
+    private int[] cellTops = new int[GRID * GRID];                  // highest layer of the quads folded into every cell, -1 if there are none
+    private int[] cellTopStates = new int[GRID * GRID];             // state of the quads at cellTops
+    private boolean[] cellTopsMixed = new boolean[GRID * GRID];     // true if the quads at cellTops have different states
+
+    public BatchOrder(int a_capacity)
+    {
+        this.states = new int[a_capacity];
+        this.layers = new int[a_capacity];
+        this.bounds = new float[a_capacity * 4];
+        Arrays.fill(this.cellTops, -1);
+    }
+
+    /*
+        Function: Add
+            Adds a quad to the end of the batch and computes its sort-key
+
+        Parameter:
+            a_state     - Integer   | The render-state of the quad. Quads with the same state can be drawn together
+            a_left      - float     | left edge of the quad on the screen
+            a_bottom    - float     | bottom edge of the quad on the screen
+            a_right     - float     | right edge of the quad on the screen
+            a_top       - float     | top edge of the quad on the screen
+
+        Returns:
+            long -> - the sort-key of the quad: layer (16 bit), state (32 bit), sequence-number (16 bit)
+    */
+    public long Add(int a_state, float a_left, float a_bottom, float a_right, float a_top)
+    {
+        if (this.count == this.states.length)
+        {
+            this.states = Arrays.copyOf(this.states, this.count * 2);
+            this.layers = Arrays.copyOf(this.layers, this.count * 2);
+            this.bounds = Arrays.copyOf(this.bounds, this.count * 8);
+        }
+
+        int firstColumn = _Cell(a_left), lastColumn = _Cell(a_right);
+        int firstRow = _Cell(a_bottom), lastRow = _Cell(a_top);
+
+        // quads that only touch each other don't overlap
+        int layer = 0;
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int column = firstColumn; column <= lastColumn; column++)
+            {
+                int cell = row * GRID + column;
+                if (this.cellTops[cell] >= 0)
+                    layer = Math.max(layer, this.cellTopStates[cell] == a_state && !this.cellTopsMixed[cell] ? this.cellTops[cell] : this.cellTops[cell] + 1);
+
+                for (int j = 0; j < this.cellSizes[cell]; j++)
+                {
+                    int i = this.cellQuads[cell * CELL_QUADS + j];
+                    this.comparisons++;
+                    if (this.bounds[i*4] < a_right && a_left < this.bounds[i*4 + 2] && this.bounds[i*4 + 1] < a_top && a_bottom < this.bounds[i*4 + 3])
+                        layer = Math.max(layer, this.states[i] == a_state ? this.layers[i] : this.layers[i] + 1);
+                }
+            }
+        }
+
+        int quad = this.count++;
+        this.states[quad] = a_state;
+        this.layers[quad] = layer;
+        this.bounds[quad*4] = a_left;
+        this.bounds[quad*4 + 1] = a_bottom;
+        this.bounds[quad*4 + 2] = a_right;
+        this.bounds[quad*4 + 3] = a_top;
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int column = firstColumn; column <= lastColumn; column++)
+            {
+                this._AddToCell(row * GRID + column, quad);
+            }
+        }
+        return ((long) Math.min(layer, 0xFFFF) << 48) | ((a_state & 0xFFFFFFFFL) << 16) | (quad & 0xFFFF);
+    }
+
+    // removes all quads
+    public void Clear()
+    {
+        this.count = 0;
+        Arrays.fill(this.cellSizes, 0);
+        Arrays.fill(this.cellNext, 0);
+        Arrays.fill(this.cellTops, -1);
+    }
+
+    // returns the column or row of the grid a coordinate is in. Coordinates outside the screen belong to the border-cells
+    private static int _Cell(float a_value)
+    {
+        return Math.min(Math.max((int) Math.floor((a_value + 1) * 0.5f * GRID), 0), GRID - 1);
+    }
+
+    // stores a quad in the ring of a cell. If the ring is full, its oldest quad gets folded into the top of the cell
+    private void _AddToCell(int a_cell, int a_quad)
+    {
+        int slot = a_cell * CELL_QUADS + this.cellNext[a_cell];
+        if (this.cellSizes[a_cell] == CELL_QUADS)
+        {
+            int oldest = this.cellQuads[slot];
+            if (this.layers[oldest] > this.cellTops[a_cell])
+            {
+                this.cellTops[a_cell] = this.layers[oldest];
+                this.cellTopStates[a_cell] = this.states[oldest];
+                this.cellTopsMixed[a_cell] = false;
+            }
+            else if (this.layers[oldest] == this.cellTops[a_cell] && this.states[oldest] != this.cellTopStates[a_cell])
+                this.cellTopsMixed[a_cell] = true;
+        }
+        else
+            this.cellSizes[a_cell]++;
+
+        this.cellQuads[slot] = a_quad;
+        this.cellNext[a_cell] = (this.cellNext[a_cell] + 1) % CELL_QUADS;
+    }
+}
@@ -0,0 +1,104 @@
+package com.libraries.heiko.gamebook.tools;
+
+/**
+ * Cheap tests to find out which parts of the scene are inside the viewport.
+ * All tests work on the mvp-matrix an element is drawn with, so animations and
+ * the 2D/3D projection are taken into account. Uses no allocations.
+ */
+public class Culling
+{
+    /*
+        Function: IsOutside
+            Tests if a rectangle is completely outside the viewport.
+            The test is conservative: it never returns true for a rectangle that is (partly) visible
+
+        Parameter:
+            a_mvpMatrix - float[]   | The mvp-matrix the rectangle is drawn with
+            a_left      - float     | left edge of the rectangle
+            a_bottom    - float     | bottom edge of the rectangle
+            a_right     - float     | right edge of the rectangle
+            a_top       - float     | top edge of the rectangle
+            a_z         - float     | z-position of the rectangle
+
+        Returns:
+            boolean -> - true: the rectangle is outside the viewport, false: it might be visible
+    */
+    public static boolean IsOutside(float[] a_mvpMatrix, float a_left, float a_bottom, float a_right, float a_top, float a_z)
+    {
+        // the rectangle is outside if all 4 corners are outside the same clipping-plane (-w <= x, y <= w)
+        int outside = 0x0F;
+        for (int i = 0; i < 4; i++)
+        {
+            float x = (i == 0 || i == 1) ? a_left : a_right;
+            float y = (i == 0 || i == 3) ? a_bottom : a_top;
+            float clipX = a_mvpMatrix[0]*x + a_mvpMatrix[4]*y + a_mvpMatrix[8]*a_z + a_mvpMatrix[12];
+            float clipY = a_mvpMatrix[1]*x + a_mvpMatrix[5]*y + a_mvpMatrix[9]*a_z + a_mvpMatrix[13];
+            float clipW = a_mvpMatrix[3]*x + a_mvpMatrix[7]*y + a_mvpMatrix[11]*a_z + a_mvpMatrix[15];
+
+            int corner = 0;
+            if (clipX < -clipW)
+                corner |= 0x01;
+            if (clipX > clipW)
+                corner |= 0x02;
+            if (clipY < -clipW)
+                corner |= 0x04;
+            if (clipY > clipW)
+                corner |= 0x08;
+
+            outside &= corner;
+            if (outside == 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /*
+        Function: GetVisibleArea
+            Calculates which area of the plane at a given z-position is visible. Only works if the mvp-matrix
+            is affine (2D-mode). In 3D-mode IsOutside has to be used instead
+
+        Parameter:
+            a_mvpMatrix - float[]   | The mvp-matrix the plane is drawn with
+            a_z         - float     | z-position of the plane
+            a_result    - float[]   | receives the visible area (left, bottom, right, top) in the coordinates of the plane
+
+        Returns:
+            boolean -> - true: a_result was filled, false: the matrix is not affine, a_result was not touched
+    */
+    public static boolean GetVisibleArea(float[] a_mvpMatrix, float a_z, float[] a_result)
+    {
+        if (a_mvpMatrix[3] != 0 || a_mvpMatrix[7] != 0 || a_mvpMatrix[11] != 0 || a_mvpMatrix[15] == 0)
+            return false;
+
+        // the plane maps to the screen with ndc = A * (x, y) + b
+        float a = a_mvpMatrix[0] / a_mvpMatrix[15];
+        float b = a_mvpMatrix[4] / a_mvpMatrix[15];
+        float c = a_mvpMatrix[1] / a_mvpMatrix[15];
+        float d = a_mvpMatrix[5] / a_mvpMatrix[15];
+        float offsetX = (a_mvpMatrix[8]*a_z + a_mvpMatrix[12]) / a_mvpMatrix[15];
+        float offsetY = (a_mvpMatrix[9]*a_z + a_mvpMatrix[13]) / a_mvpMatrix[15];
+        float determinant = a*d - b*c;
+        if (determinant == 0)
+            return false;
+
+        // map the 4 corners of the screen back onto the plane and take their bounding-box
+        a_result[0] = Float.MAX_VALUE;
+        a_result[1] = Float.MAX_VALUE;
+        a_result[2] = -Float.MAX_VALUE;
+        a_result[3] = -Float.MAX_VALUE;
+        for (int i = 0; i < 4; i++)
+        {
+            float ndcX = ((i == 0 || i == 1) ? -1 : 1) - offsetX;
+            float ndcY = ((i == 0 || i == 3) ? -1 : 1) - offsetY;
+            float x = (d*ndcX - b*ndcY) / determinant;
+            float y = (a*ndcY - c*ndcX) / determinant;
+            a_result[0] = Math.min(a_result[0], x);
+            a_result[1] = Math.min(a_result[1], y);
+            a_result[2] = Math.max(a_result[2], x);
+            a_result[3] = Math.max(a_result[3], y);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,505 @@
+package com.libraries.heiko.gamebook.tools;
+
+import android.opengl.GLES20;
+
+/**
+ * Remembers the OpenGL-state that was set last and only forwards a state-change to the
+ * driver if the value actually changes. Everything on the draw-path sets its state through
+ * this class, so the same state doesn't get set again for every element.
+ * Must only be used on the GL-thread.
+ */
+public class GLState
+{
+    private final static int UNKNOWN = -1;                          // marks a state as unknown, so the next call always gets forwarded
+    private final static int TEXTURE_UNITS = 8;                     // number of texture-units that get tracked
+
+    public int skippedCalls = 0;                                    // number of calls that were not forwarded since the last ResetCounters
+    public int forwardedCalls = 0;                                  // number of calls that were forwarded since the last ResetCounters
+
+    // the currently set state
+    private int program;
+    private int blend, stencilTest, depthTest, cullFace, scissorTest;
+    private int blendSrc, blendDst;
+    private int depthMask;
+    private int colorMask;
+    private int stencilWriteMask;
+    private int stencilFunc, stencilRef, stencilFuncMask;
+    private int stencilFail, stencilDepthFail, stencilPass;
+    private int activeTexture;
+    private int[] boundTextures;
+    private int arrayBuffer, elementArrayBuffer;
+    private int scissorX, scissorY, scissorWidth, scissorHeight;
+    private int framebuffer;
+    private float clearRed = -1, clearGreen = -1, clearBlue = -1, clearAlpha = -1;
+    private boolean layerBlending = false;                          // true: the alpha-channel gets blended separately, see SetLayerBlending
+
+    public GLState()
+    {
+        this.boundTextures = new int[TEXTURE_UNITS];
+        this.Reset();
+    }
+
+    /*
+        Function: Reset
+            Forgets the whole state. Has to be called when the OpenGL-context got (re)created,
+            or when someone else changed the state without using this class
+    */
+    public void Reset()
+    {
+        this.program = UNKNOWN;
+        this.blend = UNKNOWN;
+        this.stencilTest = UNKNOWN;
+        this.depthTest = UNKNOWN;
+        this.cullFace = UNKNOWN;
+        this.scissorTest = UNKNOWN;
+        this.blendSrc = UNKNOWN;
+        this.blendDst = UNKNOWN;
+        this.depthMask = UNKNOWN;
+        this.colorMask = UNKNOWN;
+        this.stencilWriteMask = UNKNOWN;
+        this.stencilFunc = UNKNOWN;
+        this.stencilRef = UNKNOWN;
+        this.stencilFuncMask = UNKNOWN;
+        this.stencilFail = UNKNOWN;
+        this.stencilDepthFail = UNKNOWN;
+        this.stencilPass = UNKNOWN;
+        this.arrayBuffer = UNKNOWN;
+        this.elementArrayBuffer = UNKNOWN;
+        this.scissorX = UNKNOWN;
+        this.scissorY = UNKNOWN;
+        this.scissorWidth = UNKNOWN;
+        this.scissorHeight = UNKNOWN;
+        this.framebuffer = UNKNOWN;
+        this.clearRed = -1;
+        this.clearGreen = -1;
+        this.clearBlue = -1;
+        this.clearAlpha = -1;
+        this.InvalidateTextures();
+    }
+
+    /*
+        Function: InvalidateTextures
+            Forgets the texture-bindings. Has to be called after a texture got bound without using this class
+            (e.g. while creating a texture)
+    */
+    public void InvalidateTextures()
+    {
+        this.activeTexture = UNKNOWN;
+        for (int i = 0; i < TEXTURE_UNITS; i++)
+        {
+            this.boundTextures[i] = UNKNOWN;
+        }
+    }
+
+    // resets the call-counters. Gets called at the start of every frame
+    public void ResetCounters()
+    {
+        this.skippedCalls = 0;
+        this.forwardedCalls = 0;
+    }
+
+    /*
+        Function: UseProgram
+            Replacement for glUseProgram
+
+        Parameter:
+            a_program   - Integer   | The program to use
+    */
+    public void UseProgram(int a_program)
+    {
+        if (this.program == a_program)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glUseProgram(a_program);
+        this.program = a_program;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: Enable
+            Replacement for glEnable
+
+        Parameter:
+            a_capability    - Integer   | The capability to enable (e.g. GLES20.GL_BLEND)
+    */
+    public void Enable(int a_capability)
+    {
+        this._SetCapability(a_capability, 1);
+    }
+
+    /*
+        Function: Disable
+            Replacement for glDisable
+
+        Parameter:
+            a_capability    - Integer   | The capability to disable (e.g. GLES20.GL_BLEND)
+    */
+    public void Disable(int a_capability)
+    {
+        this._SetCapability(a_capability, 0);
+    }
+
+    /*
+        Function: BlendFunc
+            Replacement for glBlendFunc
+
+        Parameter:
+            a_src   - Integer   | The source-factor
+            a_dst   - Integer   | The destination-factor
+    */
+    public void BlendFunc(int a_src, int a_dst)
+    {
+        if (this.blendSrc == a_src && this.blendDst == a_dst)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        if (this.layerBlending)
+        {
+            // the framework stores transparency in the alpha-channel if the destination-factor is GL_SRC_ALPHA,
+            // otherwise (e.g. fonts) the alpha-channel holds the coverage. Either way the transparencies have to be multiplied
+            GLES20.glBlendFuncSeparate(a_src, a_dst, GLES20.GL_ZERO, a_dst == GLES20.GL_SRC_ALPHA ? GLES20.GL_SRC_ALPHA : GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        }
+        else
+            GLES20.glBlendFunc(a_src, a_dst);
+
+        this.blendSrc = a_src;
+        this.blendDst = a_dst;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: SetLayerBlending
+            Enables or disables layer-blending. While drawing to the main framebuffer, its alpha-channel doesn't matter.
+            While drawing into a texture that gets drawn again later (see RenderLayer), the alpha-channel has to hold
+            the transparency of the result, so it gets blended separately from the color
+
+        Parameter:
+            a_enabled   - boolean   | true: blend the alpha-channel separately, false: use the same blend-function for all channels
+
+        Returns:
+            boolean -> - the previous value, so it can be restored afterwards
+    */
+    public boolean SetLayerBlending(boolean a_enabled)
+    {
+        boolean previous = this.layerBlending;
+        if (previous != a_enabled)
+        {
+            this.layerBlending = a_enabled;
+            this.blendSrc = UNKNOWN;
+            this.blendDst = UNKNOWN;
+        }
+        return previous;
+    }
+
+    /*
+        Function: ClearColor
+            Replacement for glClearColor
+
+        Parameter:
+            a_red   - float | Red-part of the clear-color
+            a_green - float | Green-part of the clear-color
+            a_blue  - float | Blue-part of the clear-color
+            a_alpha - float | Alpha-part of the clear-color
+    */
+    public void ClearColor(float a_red, float a_green, float a_blue, float a_alpha)
+    {
+        if (this.clearRed == a_red && this.clearGreen == a_green && this.clearBlue == a_blue && this.clearAlpha == a_alpha)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glClearColor(a_red, a_green, a_blue, a_alpha);
+        this.clearRed = a_red;
+        this.clearGreen = a_green;
+        this.clearBlue = a_blue;
+        this.clearAlpha = a_alpha;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: BindFramebuffer
+            Replacement for glBindFramebuffer(GL_FRAMEBUFFER, ...)
+
+        Parameter:
+            a_framebuffer   - Integer   | The framebuffer to bind, 0 for the screen
+    */
+    public void BindFramebuffer(int a_framebuffer)
+    {
+        if (this.framebuffer == a_framebuffer)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, a_framebuffer);
+        this.framebuffer = a_framebuffer;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: DepthMask
+            Replacement for glDepthMask
+
+        Parameter:
+            a_flag  - boolean   | true: the depth-buffer gets written, false: it doesn't
+    */
+    public void DepthMask(boolean a_flag)
+    {
+        if (this.depthMask == (a_flag ? 1 : 0))
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glDepthMask(a_flag);
+        this.depthMask = a_flag ? 1 : 0;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: ColorMask
+            Replacement for glColorMask
+
+        Parameter:
+            a_red   - boolean   | true: the red-channel gets written, false: it doesn't
+            a_green - boolean   | true: the green-channel gets written, false: it doesn't
+            a_blue  - boolean   | true: the blue-channel gets written, false: it doesn't
+            a_alpha - boolean   | true: the alpha-channel gets written, false: it doesn't
+    */
+    public void ColorMask(boolean a_red, boolean a_green, boolean a_blue, boolean a_alpha)
+    {
+        int mask = (a_red ? 1 : 0) | (a_green ? 2 : 0) | (a_blue ? 4 : 0) | (a_alpha ? 8 : 0);
+        if (this.colorMask == mask)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glColorMask(a_red, a_green, a_blue, a_alpha);
+        this.colorMask = mask;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: StencilMask
+            Replacement for glStencilMask
+
+        Parameter:
+            a_mask  - Integer   | The bits of the stencil-buffer that can be written
+    */
+    public void StencilMask(int a_mask)
+    {
+        if (this.stencilWriteMask == a_mask)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glStencilMask(a_mask);
+        this.stencilWriteMask = a_mask;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: StencilFunc
+            Replacement for glStencilFunc
+
+        Parameter:
+            a_func  - Integer   | The test-function (e.g. GLES20.GL_EQUAL)
+            a_ref   - Integer   | The reference-value
+            a_mask  - Integer   | The mask applied to both the reference-value and the stored value
+    */
+    public void StencilFunc(int a_func, int a_ref, int a_mask)
+    {
+        if (this.stencilFunc == a_func && this.stencilRef == a_ref && this.stencilFuncMask == a_mask)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glStencilFunc(a_func, a_ref, a_mask);
+        this.stencilFunc = a_func;
+        this.stencilRef = a_ref;
+        this.stencilFuncMask = a_mask;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: StencilOp
+            Replacement for glStencilOp
+
+        Parameter:
+            a_fail      - Integer   | Action when the stencil-test fails
+            a_depthFail - Integer   | Action when the stencil-test passes, but the depth-test fails
+            a_pass      - Integer   | Action when both tests pass
+    */
+    public void StencilOp(int a_fail, int a_depthFail, int a_pass)
+    {
+        if (this.stencilFail == a_fail && this.stencilDepthFail == a_depthFail && this.stencilPass == a_pass)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glStencilOp(a_fail, a_depthFail, a_pass);
+        this.stencilFail = a_fail;
+        this.stencilDepthFail = a_depthFail;
+        this.stencilPass = a_pass;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: ActiveTexture
+            Replacement for glActiveTexture
+
+        Parameter:
+            a_texture   - Integer   | The texture-unit to activate (e.g. GLES20.GL_TEXTURE0)
+    */
+    public void ActiveTexture(int a_texture)
+    {
+        if (this.activeTexture == a_texture)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glActiveTexture(a_texture);
+        this.activeTexture = a_texture;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: BindTexture
+            Replacement for glBindTexture(GL_TEXTURE_2D, ...) on the currently active texture-unit
+
+        Parameter:
+            a_texture   - Integer   | The texture to bind
+    */
+    public void BindTexture(int a_texture)
+    {
+        int unit = this.activeTexture - GLES20.GL_TEXTURE0;
+        if (this.activeTexture != UNKNOWN && unit >= 0 && unit < TEXTURE_UNITS && this.boundTextures[unit] == a_texture)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, a_texture);
+        if (this.activeTexture != UNKNOWN && unit >= 0 && unit < TEXTURE_UNITS)
+            this.boundTextures[unit] = a_texture;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: BindArrayBuffer
+            Replacement for glBindBuffer(GL_ARRAY_BUFFER, ...)
+
+        Parameter:
+            a_buffer    - Integer   | The buffer to bind
+    */
+    public void BindArrayBuffer(int a_buffer)
+    {
+        if (this.arrayBuffer == a_buffer)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, a_buffer);
+        this.arrayBuffer = a_buffer;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: BindElementArrayBuffer
+            Replacement for glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ...)
+
+        Parameter:
+            a_buffer    - Integer   | The buffer to bind
+    */
+    public void BindElementArrayBuffer(int a_buffer)
+    {
+        if (this.elementArrayBuffer == a_buffer)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, a_buffer);
+        this.elementArrayBuffer = a_buffer;
+        this.forwardedCalls++;
+    }
+
+    /*
+        Function: Scissor
+            Replacement for glScissor
+
+        Parameter:
+            a_x         - Integer   | x-position of the bottom-left corner of the scissor-box in pixels
+            a_y         - Integer   | y-position of the bottom-left corner of the scissor-box in pixels
+            a_width     - Integer   | width of the scissor-box in pixels
+            a_height    - Integer   | height of the scissor-box in pixels
+    */
+    public void Scissor(int a_x, int a_y, int a_width, int a_height)
+    {
+        if (this.scissorX == a_x && this.scissorY == a_y && this.scissorWidth == a_width && this.scissorHeight == a_height)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        GLES20.glScissor(a_x, a_y, a_width, a_height);
+        this.scissorX = a_x;
+        this.scissorY = a_y;
+        this.scissorWidth = a_width;
+        this.scissorHeight = a_height;
+        this.forwardedCalls++;
+    }
+
+    // enables or disables a capability, if it isn't already
+    private void _SetCapability(int a_capability, int a_value)
+    {
+        int current;
+        if (a_capability == GLES20.GL_BLEND)
+            current = this.blend;
+        else if (a_capability == GLES20.GL_STENCIL_TEST)
+            current = this.stencilTest;
+        else if (a_capability == GLES20.GL_DEPTH_TEST)
+            current = this.depthTest;
+        else if (a_capability == GLES20.GL_CULL_FACE)
+            current = this.cullFace;
+        else if (a_capability == GLES20.GL_SCISSOR_TEST)
+            current = this.scissorTest;
+        else
+            current = UNKNOWN;
+
+        if (current == a_value)
+        {
+            this.skippedCalls++;
+            return;
+        }
+
+        if (a_value == 1)
+            GLES20.glEnable(a_capability);
+        else
+            GLES20.glDisable(a_capability);
+        this.forwardedCalls++;
+
+        if (a_capability == GLES20.GL_BLEND)
+            this.blend = a_value;
+        else if (a_capability == GLES20.GL_STENCIL_TEST)
+            this.stencilTest = a_value;
+        else if (a_capability == GLES20.GL_DEPTH_TEST)
+            this.depthTest = a_value;
+        else if (a_capability == GLES20.GL_CULL_FACE)
+            this.cullFace = a_value;
+        else if (a_capability == GLES20.GL_SCISSOR_TEST)
+            this.scissorTest = a_value;
+    }
+}
@@ -13,7 +13,6 @@ import android.opengl.Matrix;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.nio.ShortBuffer;
 
 public class GameFont
 {
@@ -44,34 +43,29 @@ public class GameFont
     float displayScaleX = 1, displayScaleY = 1;                     // Font Scale used to render the text. Converts pixes-values to vertex-values
     float spaceX = 0;                                               // Additional (X,Y Axis) Spacing (Unscaled)
 
-    private int programHandle; 						                // OpenGL Program object
-    private int mColorHandle;						                // Shader color handle
-    private int mTextureUniformHandle;                              // Shader texture handle
-
-    // cache-variables to prevent memory-allocations
-    int tempWidth;
-    int tempLen;
+    private ShaderProgram program;                                  // OpenGL Program object including its attribute- and uniform-locations
+    private GLState glState;                                        // used to set the OpenGL-state without redundant calls
 
     private static final String vertexShaderCode =
             "uniform mat4 uMVPMatrix;      \n"     // An array representing the combined
-                    + "attribute vec4 a_Position;     \n"     // Per-vertex position information we will pass in.
-                    + "attribute vec2 a_TexCoordinate;\n"     // Per-vertex texture coordinate information we will pass in
-                    + "varying vec2 v_TexCoordinate;  \n"   // This will be passed into the fragment shader.
+                    + "attribute vec4 vPosition;      \n"     // Per-vertex position information we will pass in.
+                    + "attribute vec2 a_texCoord;     \n"     // Per-vertex texture coordinate information we will pass in
+                    + "varying vec2 v_texCoord;       \n"   // This will be passed into the fragment shader.
                     + "void main()                    \n"     // The entry point for our vertex shader.
                     + "{                              \n"
-                    + "   v_TexCoordinate = a_TexCoordinate; \n"
-                    + "   gl_Position = uMVPMatrix * a_Position;   \n"     // gl_Position is a special variable used to store the final position.
+                    + "   v_texCoord = a_texCoord;    \n"
+                    + "   gl_Position = uMVPMatrix * vPosition;   \n"     // gl_Position is a special variable used to store the final position.
                     + "}                              \n";
 
 
     private static final String fragmentShaderCode =
-            "uniform sampler2D u_Texture;       \n"
+            "uniform sampler2D s_texture;       \n"
                     + "precision mediump float;       \n"
-                    + "uniform vec4 u_Color;          \n"
-                    + "varying vec2 v_TexCoordinate;  \n"
+                    + "uniform vec4 vColor;           \n"
+                    + "varying vec2 v_texCoord;       \n"
                     + "void main()                    \n"
                     + "{                              \n"
-                    + "   gl_FragColor = texture2D(u_Texture, v_TexCoordinate).w * u_Color;\n"
+                    + "   gl_FragColor = texture2D(s_texture, v_texCoord).w * vColor;\n"
                     + "}                             \n";
 
 
@@ -80,13 +74,13 @@ public class GameFont
     int numSprites = 0;                                    // Number of Sprites Currently in Buffer
     int maxSprites = 24;                                    // Maximum Sprites Allowed in Buffer
     private float[] mVPMatrix;							// View and projection matrix specified at begin
-    private int mMVPMatricesHandle;							// shader handle of the MVP matrix array
     private float[] mMVPMatrix = new float[16];				// used to calculate MVP matrix of each sprite
     private float[] modelMatrix = new float[16];				// used to calculate MVP matrix of each sprite
 
     public final int vertexSize = 20;                       // Bytesize of a Single Vertex
-    final FloatBuffer vertices;                          // Vertex Buffer
-    final ShortBuffer indices;                         // Index Buffer
+    final FloatBuffer vertices;                          // used to upload vertexValues to the vertex-buffer-object
+    private int[] vertexBufferID = new int[1];                // vertex-buffer-object the vertices get streamed into
+    private SpriteBatch spriteBatch;                        // provides the shared quad-index-buffer
     private float[] vertexValues;				// used to calculate MVP matrix of each sprite
 
     /*
@@ -118,44 +112,30 @@ public class GameFont
         vertexValues = new float[20*maxSprites];
         ByteBuffer buffer = ByteBuffer.allocateDirect(this.maxSprites * 4 * vertexSize);  // Allocate Buffer for vertices (Max)
         this.vertices = buffer.order(ByteOrder.nativeOrder()).asFloatBuffer();           // Save Vertex Buffer
-
-        buffer = ByteBuffer.allocateDirect(this.maxSprites * 6 * (Short.SIZE / 8));  // Allocate Buffer for Indices (MAX)
-        this.indices = buffer.order(ByteOrder.nativeOrder()).asShortBuffer();       // Save Index Buffer
-
-        this.indices.clear();
-        for ( int i = 0; i < maxSprites; i++)
-        {
-            this.indices.put((short) (i*4 + 0));
-            this.indices.put((short) (i*4 + 1));
-            this.indices.put((short) (i*4 + 2));
-            this.indices.put((short) (i*4 + 2));
-            this.indices.put((short) (i*4 + 3));
-            this.indices.put((short) (i*4 + 0));
-        }
     }
 
     /*
         Function: Load
             Loads the font with the settings set in the constructor
+
+        Parameter:
+            a_shaders   - ShaderCache   | The ShaderCache to get the font-program from
+            a_glState   - GLState       | The GLState to set the OpenGL-state with
+            a_batch     - SpriteBatch   | The SpriteBatch whose quad-index-buffer gets used to draw the characters
     */
-    public boolean Load()
+    public boolean Load(ShaderCache a_shaders, GLState a_glState, SpriteBatch a_batch)
     {
-        // Program erstellen
-        this.programHandle = GLES20.glCreateProgram();
+        this.glState = a_glState;
+        this.spriteBatch = a_batch;
 
-        // Shader attachen
-        GLES20.glAttachShader(this.programHandle, this._LoadShader(GLES20.GL_VERTEX_SHADER, vertexShaderCode));
-        GLES20.glAttachShader(this.programHandle, this._LoadShader(GLES20.GL_FRAGMENT_SHADER, fragmentShaderCode));
+        // the vertex-buffer-object of a previous context is gone, create a new one
+        GLES20.glGenBuffers(1, this.vertexBufferID, 0);
+        this.glState.BindArrayBuffer(this.vertexBufferID[0]);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, this.maxSprites * 4 * vertexSize, null, GLES20.GL_STREAM_DRAW);
 
-        GLES20.glBindAttribLocation(this.programHandle, 1, "a_Position");
-        GLES20.glBindAttribLocation(this.programHandle, 2, "a_TexCoordinate");
-        GLES20.glBindAttribLocation(this.programHandle, 3, "a_MVPMatrixIndex");
-        GLES20.glLinkProgram(this.programHandle);
-
-        // Initialize the color and texture handles
-        this.mColorHandle = GLES20.glGetUniformLocation(this.programHandle, "u_Color");
-        this.mTextureUniformHandle = GLES20.glGetUniformLocation(this.programHandle, "u_Texture");
-        this.mMVPMatricesHandle = GLES20.glGetUniformLocation(programHandle, "uMVPMatrix");
+        // the program is shared by all fonts
+        // the attribute- and uniform-locations are resolved by the ShaderCache when the program is linked
+        this.program = a_shaders.GetProgram(vertexShaderCode, fragmentShaderCode);
 
         // load the font and setup paint instance for drawing
         Typeface tf = Typeface.createFromAsset(this.assets, this.fontFile);  // Create the Typeface from Font File
@@ -269,28 +249,27 @@ public class GameFont
     */
     public void Begin(float a_red, float a_green, float a_blue, float a_alpha, float[] a_vpMatrix)
     {
-        GLES20.glUseProgram(this.programHandle); // specify the program to use
+        this.glState.UseProgram(this.program.program); // specify the program to use
 
         // No culling of back faces and Depth-testing
-        GLES20.glDisable(GLES20.GL_CULL_FACE);
-        GLES20.glDisable(GLES20.GL_DEPTH_TEST);
+        this.glState.Disable(GLES20.GL_CULL_FACE);
+        this.glState.Disable(GLES20.GL_DEPTH_TEST);
 
         // Enable blending
-        GLES20.glEnable(GLES20.GL_BLEND);
-        GLES20.glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE);
+        this.glState.Enable(GLES20.GL_BLEND);
+        this.glState.BlendFunc(GLES20.GL_ONE, GLES20.GL_ONE);
 
         // TODO: Alpha seems not to be working yet. Color works
         color[0] = a_red;
         color[1] = a_green;
         color[2] = a_blue;
         color[3] = a_alpha;
-        GLES20.glUniform4fv(mColorHandle, 1, color, 0);
-        GLES20.glEnableVertexAttribArray(mColorHandle);
-        GLES20.glActiveTexture(GLES20.GL_TEXTURE0);  // Set the active texture unit to texture unit 0
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId); // Bind the texture to this unit
+        GLES20.glUniform4fv(this.program.colorUniformHandle, 1, color, 0);
+        this.glState.ActiveTexture(GLES20.GL_TEXTURE0);  // Set the active texture unit to texture unit 0
+        this.glState.BindTexture(textureId); // Bind the texture to this unit
 
         // Tell the texture uniform sampler to use this texture in the shader by binding to texture unit 0
-        GLES20.glUniform1i(mTextureUniformHandle, 0);
+        GLES20.glUniform1i(this.program.textureUniformHandle, 0);
 
         this.BeginBatch();                             // Reset Buffer Index (Empty)
         this.mVPMatrix = a_vpMatrix;
@@ -440,7 +419,6 @@ public class GameFont
     public void End()
     {
         this.EndBatch();
-        GLES20.glDisableVertexAttribArray(mColorHandle);
     }
 
     // Stars the batch-rendering
@@ -459,25 +437,32 @@ public class GameFont
 
         // bind MVP matrices array to shader
         Matrix.multiplyMM(this.mMVPMatrix, 0, this.mVPMatrix , 0, this.modelMatrix, 0);
-        vertices.put(this.vertexValues, 0, this.bufferIndex - 1);
-        GLES20.glUniformMatrix4fv(this.mMVPMatricesHandle, 1, false, this.mMVPMatrix, 0);
-        GLES20.glEnableVertexAttribArray(this.mMVPMatricesHandle);
+        vertices.put(this.vertexValues, 0, this.bufferIndex);
+        vertices.position(0);
+        GLES20.glUniformMatrix4fv(this.program.mvpMatrixHandle, 1, false, this.mMVPMatrix, 0);
+
+        // orphan the old storage and stream the vertices into the vertex-buffer-object
+        this.glState.BindArrayBuffer(this.vertexBufferID[0]);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, this.maxSprites * 4 * vertexSize, null, GLES20.GL_STREAM_DRAW);
+        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, this.bufferIndex * 4, vertices);
 
         // bind vertex position pointer
-        GLES20.glVertexAttribPointer(1, 2, GLES20.GL_FLOAT, false, this.vertexSize, vertices.position(0));
-        GLES20.glEnableVertexAttribArray(1);
+        GLES20.glVertexAttribPointer(this.program.positionHandle, 2, GLES20.GL_FLOAT, false, this.vertexSize, 0);
+        GLES20.glEnableVertexAttribArray(this.program.positionHandle);
 
         // bind texture position pointer
-        // Set Vertex Buffer to Texture Coords (NOTE: position based on whether color is also specified)
-        GLES20.glVertexAttribPointer(2, 2, GLES20.GL_FLOAT, false, this.vertexSize, vertices.position(2));
-        GLES20.glEnableVertexAttribArray(2);
-
-        GLES20.glDrawElements(GLES20.GL_TRIANGLES, this.numSprites * 6, GLES20.GL_UNSIGNED_SHORT, indices.position(0));
-        GLES20.glDisableVertexAttribArray(2);
+        GLES20.glVertexAttribPointer(this.program.texturePositionHandle, 2, GLES20.GL_FLOAT, false, this.vertexSize, 2 * 4);
+        GLES20.glEnableVertexAttribArray(this.program.texturePositionHandle);
+
+        // the characters use the same vertex-order as the quads of the SpriteBatch, so its index-buffer can be shared
+        this.glState.BindElementArrayBuffer(this.spriteBatch.quadIndexBuffer);
+        GLES20.glDrawElements(GLES20.GL_TRIANGLES, this.numSprites * 6, GLES20.GL_UNSIGNED_SHORT, 0);
+        GLES20.glDisableVertexAttribArray(this.program.texturePositionHandle);
+        GLES20.glDisableVertexAttribArray(this.program.positionHandle);
     }
 
     // Loads the font-texture
-    private static int LoadTexture(Bitmap a_bitmap)
+    private int LoadTexture(Bitmap a_bitmap)
     {
         final int[] textureHandle = new int[1];
         GLES20.glGenTextures(1, textureHandle, 0);
@@ -486,7 +471,7 @@ public class GameFont
             throw new RuntimeException("Error loading texture.");
 
         // Bind to the texture in OpenGL
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureHandle[0]);
+        this.glState.BindTexture(textureHandle[0]);
 
         // Set filtering
         GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
@@ -502,15 +487,6 @@ public class GameFont
         return textureHandle[0];
     }
 
-    // creates a shader of a given type an compiles a given sourceCode into it
-    private static int _LoadShader(int a_type, String a_shaderCode)
-    {
-        int shader = GLES20.glCreateShader(a_type);
-        GLES20.glShaderSource(shader, a_shaderCode);
-        GLES20.glCompileShader(shader);
-        return shader;
-    }
-
     /*
         Function: TextWidth
             Gets the width of a given text if it were to be drawn with this font.
@@ -523,17 +499,17 @@ public class GameFont
     */
     public int TextWidth(String a_text)
     {
-        this.tempWidth = 0;
-        this.tempLen = a_text.length();
-        for (int i = 0; i < this.tempLen; i++)
+        int width = 0;
+        int length = a_text.length();
+        for (int i = 0; i < length; i++)
         {
             int c = (int) a_text.charAt(i) - this.CHAR_START;  // Calculate Character Index (Offset by First Char in Font)
             if (i < 0 || i >= this.CHAR_CNT)                // IF Character Not In Font
                 c = this.CHAR_UNKNOWN;                         // Set to Unknown Character Index
 
-            this.tempWidth += (this.charWidths[c] + this.spaceX ) * this.scaleX;    // Advance X Position by Scaled Character Width
+            width += (this.charWidths[c] + this.spaceX ) * this.scaleX;    // Advance X Position by Scaled Character Width
         }
-        return tempWidth;
+        return width;
     }
 
     /*
@@ -549,16 +525,16 @@ public class GameFont
     */
     public int TextWidth(char[] a_text)
     {
-        this.tempWidth = 0;
+        int width = 0;
         for (int i = 0; i < a_text.length; i++)
         {
             int c = (int) a_text[i] - this.CHAR_START;  // Calculate Character Index (Offset by First Char in Font)
             if (i < 0 || i >= this.CHAR_CNT)                // IF Character Not In Font
                 c = this.CHAR_UNKNOWN;                         // Set to Unknown Character Index
 
-            this.tempWidth += (this.charWidths[c] + this.spaceX ) * this.scaleX;    // Advance X Position by Scaled Character Width
+            width += (this.charWidths[c] + this.spaceX ) * this.scaleX;    // Advance X Position by Scaled Character Width
         }
-        return tempWidth;
+        return width;
     }
 
     /*
@@ -0,0 +1,205 @@
+package com.libraries.heiko.gamebook.tools;
+
+import java.util.Arrays;
+
+/**
+ * Ordered list backed by one growable array. Items keep the order they were added or inserted in,
+ * indexed access is O(1) and iterating is a plain loop over the array. The array only grows, so
+ * once it is big enough, adding and removing items doesn't allocate anything.
+ * Iterate with: for (int i = 0; i < list.Size(); i++) list.Get(i)
+ */
+public class GameList<T>
+{
+    private Object[] items;                                         // the items, followed by unused slots
+    private int count = 0;                                          // number of items
+
+    public GameList()
+    {
+        this(8);
+    }
+
+    /*
+        Function: GameList
+            Creates an empty list
+
+        Parameter:
+            a_capacity  - Integer   | number of items the list can hold before it has to grow
+    */
+    public GameList(int a_capacity)
+    {
+        this.items = new Object[Math.max(a_capacity, 1)];
+    }
+
+    /*
+        Function: Size
+            Returns the number of items in the list
+
+        Returns:
+            int -> - the number of items
+    */
+    public int Size()
+    {
+        return this.count;
+    }
+
+    /*
+        Function: Get
+            Returns the item at the given index
+
+        Parameter:
+            a_index - Integer   | index of the item, from 0 to Size() - 1
+
+        Returns:
+            T -> - The item at the index
+    */
+    @SuppressWarnings("unchecked")
+    public T Get(int a_index)
+    {
+        if (a_index >= this.count)
+            throw new Error("Index " + a_index + " is out of bounds, the list has " + this.count + " items");
+
+        return (T) this.items[a_index];
+    }
+
+    /*
+        Function: Set
+            Replaces the item at the given index
+
+        Parameter:
+            a_index - Integer   | index of the item, from 0 to Size() - 1
+            a_item  - T         | The new item
+    */
+    public void Set(int a_index, T a_item)
+    {
+        if (a_index >= this.count)
+            throw new Error("Index " + a_index + " is out of bounds, the list has " + this.count + " items");
+
+        this.items[a_index] = a_item;
+    }
+
+    /*
+        Function: Add
+            Adds an item to the end of the list
+
+        Parameter:
+            a_item  - T | The item to add
+    */
+    public void Add(T a_item)
+    {
+        if (this.count == this.items.length)
+            this.items = Arrays.copyOf(this.items, this.count * 2);
+
+        this.items[this.count++] = a_item;
+    }
+
+    /*
+        Function: Insert
+            Inserts an item at the given index. The items from that index on move one index back
+
+        Parameter:
+            a_index - Integer   | index the item will get, from 0 to Size()
+            a_item  - T         | The item to insert
+    */
+    public void Insert(int a_index, T a_item)
+    {
+        if (a_index < 0 || a_index > this.count)
+            throw new Error("Index " + a_index + " is out of bounds, the list has " + this.count + " items");
+
+        if (this.count == this.items.length)
+            this.items = Arrays.copyOf(this.items, this.count * 2);
+
+        System.arraycopy(this.items, a_index, this.items, a_index + 1, this.count - a_index);
+        this.items[a_index] = a_item;
+        this.count++;
+    }
+
+    /*
+        Function: RemoveAt
+            Removes the item at the given index. The items behind it move one index forward
+
+        Parameter:
+            a_index - Integer   | index of the item to remove
+
+        Returns:
+            T -> - The item that was just removed
+    */
+    public T RemoveAt(int a_index)
+    {
+        T item = this.Get(a_index);
+        this.count--;
+        System.arraycopy(this.items, a_index + 1, this.items, a_index, this.count - a_index);
+        this.items[this.count] = null;
+        return item;
+    }
+
+    /*
+        Function: Move
+            Moves an item to another index. Only the items between the old and the new index move by one
+
+        Parameter:
+            a_from  - Integer   | current index of the item
+            a_to    - Integer   | index the item will get, from 0 to Size() - 1
+    */
+    public void Move(int a_from, int a_to)
+    {
+        Object item = this.Get(a_from);
+        if (a_to < 0 || a_to >= this.count)
+            throw new Error("Index " + a_to + " is out of bounds, the list has " + this.count + " items");
+
+        if (a_from < a_to)
+            System.arraycopy(this.items, a_from + 1, this.items, a_from, a_to - a_from);
+        else
+            System.arraycopy(this.items, a_to, this.items, a_to + 1, a_from - a_to);
+        this.items[a_to] = item;
+    }
+
+    /*
+        Function: Remove
+            Removes an item from the list
+
+        Parameter:
+            a_item  - T | The item to remove
+
+        Returns:
+            boolean -> - true: the item was removed, false: the item isn't in the list
+    */
+    public boolean Remove(T a_item)
+    {
+        int index = this.IndexOf(a_item);
+        if (index < 0)
+            return false;
+
+        this.RemoveAt(index);
+        return true;
+    }
+
+    /*
+        Function: IndexOf
+            Finds the index of an item. Items are compared by reference
+
+        Parameter:
+            a_item  - T | The item to find
+
+        Returns:
+            int -> - index of the item, -1 if it isn't in the list
+    */
+    public int IndexOf(T a_item)
+    {
+        for (int i = 0; i < this.count; i++)
+        {
+            if (this.items[i] == a_item)
+                return i;
+        }
+        return -1;
+    }
+
+    /*
+        Function: Clear
+            Removes all items. The list keeps its capacity
+    */
+    public void Clear()
+    {
+        Arrays.fill(this.items, 0, this.count, null);
+        this.count = 0;
+    }
+}
@@ -0,0 +1,157 @@
+package com.libraries.heiko.gamebook.tools;
+
+import java.util.Arrays;
+
+/**
+ * Hands out integer handles for objects. A handle holds the index of the slot the object is stored
+ * in and the generation of that slot. Removing an object frees its slot for the next object and
+ * increments the generation, so stale handles of removed objects don't find the new object. Looking
+ * up a handle is an array access. Handles are always > 0, so 0 can be used as "no handle". Handles
+ * can be added, looked up and removed by any thread. Add and Remove are synchronized. Get doesn't
+ * lock: every slot holds an entry that never changes, with the object and its generation, so one
+ * read of the slot tells if the handle still belongs to the object. The slot-array is republished
+ * through a volatile field after every change, also when it grows.
+ */
+public class HandleTable<T>
+{
+    private final static int INDEX_BITS = 20;                       // up to 2^20 objects at the same time
+    private final static int INDEX_MASK = (1 << INDEX_BITS) - 1;
+    private final static int GENERATION_MASK = (1 << (31 - INDEX_BITS)) - 1;   // the generation keeps the sign-bit free
+
+    // an object and the generation of the slot it is stored in, never changes
+    private static class Entry
+    {
+        final Object item;
+        final int generation;
+
+        Entry(Object a_item, int a_generation)
+        {
+            this.item = a_item;
+            this.generation = a_generation;
+        }
+    }
+
+    private volatile Entry[] entries;                               // the entries by slot, null if the slot is free. Read without locking
+    private int[] generations;                                      // the current generation of every slot
+    private int[] freeSlots;                                        // stack of the slots that were freed
+    private int freeCount = 0;                                      // number of slots on the freeSlots-stack
+    private int slotCount = 0;                                      // number of slots that were used so far
+    private volatile int count = 0;                                 // number of objects in the table
+
+    public HandleTable()
+    {
+        this.entries = new Entry[16];
+        this.generations = new int[16];
+        this.freeSlots = new int[16];
+    }
+
+    /*
+        Function: Add
+            Stores an object and returns its handle
+
+        Parameter:
+            a_item  - T | The object to store
+
+        Returns:
+            int -> - the handle of the object
+    */
+    public synchronized int Add(T a_item)
+    {
+        int slot;
+        if (this.freeCount > 0)
+            slot = this.freeSlots[--this.freeCount];
+        else
+        {
+            if (this.slotCount > INDEX_MASK)
+                throw new Error("HandleTable can't hold more than " + (INDEX_MASK + 1) + " objects");
+
+            if (this.slotCount == this.generations.length)
+            {
+                this.entries = Arrays.copyOf(this.entries, this.slotCount * 2);
+                this.generations = Arrays.copyOf(this.generations, this.slotCount * 2);
+                this.freeSlots = Arrays.copyOf(this.freeSlots, this.slotCount * 2);
+            }
+
+            slot = this.slotCount++;
+            this.generations[slot] = 1;
+        }
+
+        Entry[] entries = this.entries;
+        entries[slot] = new Entry(a_item, this.generations[slot]);
+        this.entries = entries;
+        this.count++;
+        return (this.generations[slot] << INDEX_BITS) | slot;
+    }
+
+    /*
+        Function: Get
+            Returns the object of a handle
+
+        Parameter:
+            a_handle    - Integer   | The handle of the object
+
+        Returns:
+            T -> - The object, null if the handle is invalid or its object got removed
+    */
+    @SuppressWarnings("unchecked")
+    public T Get(int a_handle)
+    {
+        Entry entry = this._GetEntry(a_handle);
+        if (entry == null)
+            return null;
+
+        return (T) entry.item;
+    }
+
+    /*
+        Function: Remove
+            Removes the object of a handle. The handle becomes invalid
+
+        Parameter:
+            a_handle    - Integer   | The handle of the object
+
+        Returns:
+            boolean -> - true: the object was removed, false: the handle was invalid already
+    */
+    public synchronized boolean Remove(int a_handle)
+    {
+        if (this._GetEntry(a_handle) == null)
+            return false;
+
+        int slot = a_handle & INDEX_MASK;
+        Entry[] entries = this.entries;
+        entries[slot] = null;
+        this.entries = entries;
+        this.generations[slot] = Math.max((this.generations[slot] + 1) & GENERATION_MASK, 1);
+        this.freeSlots[this.freeCount++] = slot;
+        this.count--;
+        return true;
+    }
+
+    /*
+        Function: Size
+            Returns the number of objects in the table
+
+        Returns:
+            int -> - the number of objects
+    */
+    public int Size()
+    {
+        return this.count;
+    }
+
+    // returns the entry of a handle, null if the handle doesn't belong to a stored object. Doesn't need the lock
+    private Entry _GetEntry(int a_handle)
+    {
+        Entry[] entries = this.entries;
+        int slot = a_handle & INDEX_MASK;
+        if (a_handle <= 0 || slot >= entries.length)
+            return null;
+
+        Entry entry = entries[slot];
+        if (entry == null || entry.generation != (a_handle >>> INDEX_BITS))
+            return null;
+
+        return entry;
+    }
+}
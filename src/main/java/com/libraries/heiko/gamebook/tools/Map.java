@@ -15,28 +15,25 @@ public class Map
 	private int mapWidth, mapHeight;
 	private int cameraX = 0;
 	private int cameraY = 0;
-	private GameStack<MapLayer> layer;
-	private GameStack<MapLayer> tempLayer;
+	private GameList<MapLayer> layer;
 
 	public Map(int a_mapWidth, int a_mapHeight)
 	{
 		this.mapWidth = a_mapWidth;
 		this.mapHeight = a_mapHeight;
-		this.layer = new GameStack<MapLayer>();
+		this.layer = new GameList<MapLayer>();
 	}
 
 	public void AddLayer(MapLayer a_layer)
 	{
-		layer.push(a_layer);
+		this.layer.Add(a_layer);
 	}
 
 	public void SetCameraPos(int a_x, int a_y)
 	{
-		this.tempLayer = this.layer;
-		while (this.tempLayer.content != null)
+		for (int i = 0; i < this.layer.Size(); i++)
 		{
-			this.tempLayer.content.SetPosition(a_x, a_y);
-			this.tempLayer = this.tempLayer.next;
+			this.layer.Get(i).SetPosition(a_x, a_y);
 		}
 	}
 
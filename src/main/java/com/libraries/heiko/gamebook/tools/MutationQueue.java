@@ -0,0 +1,80 @@
+package com.libraries.heiko.gamebook.tools;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unbounded queue that any number of threads can add items to without blocking, while exactly one
+ * thread takes them out. Adding is a single atomic compare-and-set on the head of a linked stack.
+ * The consumer takes the whole stack with one atomic swap and reverses it, so items come out in the
+ * order they were added by each thread.
+ */
+public class MutationQueue<T>
+{
+    private static class Node<T>
+    {
+        T content;                                                  // the queued item
+        Node<T> next;                                               // the node added before (in the stack) or after (in the taken list) this one
+    }
+
+    private final AtomicReference<Node<T>> head = new AtomicReference<Node<T>>();   // the latest added item, null if nothing was added since the last Take
+    private Node<T> taken = null;                                   // items already taken from the stack, oldest first. Only used by the consumer
+
+    /*
+        Function: Add
+            Any thread. Adds an item to the end of the queue
+
+        Parameter:
+            a_content   - T | The item to add
+    */
+    public void Add(T a_content)
+    {
+        Node<T> node = new Node<T>();
+        node.content = a_content;
+        do
+        {
+            node.next = this.head.get();
+        } while (!this.head.compareAndSet(node.next, node));
+    }
+
+    /*
+        Function: Poll
+            Consumer only. Removes the oldest item from the queue
+
+        Returns:
+            T -> - the oldest item, null if the queue is empty
+    */
+    public T Poll()
+    {
+        if (this.taken == null)
+        {
+            // take everything added so far and reverse it, so the oldest item comes first
+            Node<T> node = this.head.getAndSet(null);
+            while (node != null)
+            {
+                Node<T> next = node.next;
+                node.next = this.taken;
+                this.taken = node;
+                node = next;
+            }
+
+            if (this.taken == null)
+                return null;
+        }
+
+        Node<T> node = this.taken;
+        this.taken = node.next;
+        return node.content;
+    }
+
+    /*
+        Function: IsEmpty
+            Consumer only. Checks if there are items left to poll
+
+        Returns:
+            boolean -> - true: the queue is empty, false: Poll returns an item
+    */
+    public boolean IsEmpty()
+    {
+        return this.taken == null && this.head.get() == null;
+    }
+}
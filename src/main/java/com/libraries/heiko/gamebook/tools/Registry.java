@@ -0,0 +1,135 @@
+package com.libraries.heiko.gamebook.tools;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Typed registry of items by ID. Every item also gets an integer handle, so callers that look an
+ * item up often can resolve its ID once and use the handle from then on. Looking up an ID is a hash
+ * lookup, looking up a handle is an array access (see HandleTable). All methods can be called from
+ * any thread.
+ */
+public class Registry<T>
+{
+    // an item and its handle, never changes once it is registered
+    private static class Entry<T>
+    {
+        final T item;
+        final int handle;
+
+        Entry(T a_item, int a_handle)
+        {
+            this.item = a_item;
+            this.handle = a_handle;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Entry<T>> entries = new ConcurrentHashMap<String, Entry<T>>();  // the items by ID
+    private final HandleTable<T> handles = new HandleTable<T>();    // the items by handle
+
+    /*
+        Function: Add
+            Registers an item under the given ID
+
+        Parameter:
+            a_id    - String    | ID of the item
+            a_item  - T         | The item to register
+
+        Returns:
+            int -> - the handle of the item, 0 if the ID is already taken
+    */
+    public int Add(String a_id, T a_item)
+    {
+        Entry<T> entry = new Entry<T>(a_item, this.handles.Add(a_item));
+        if (this.entries.putIfAbsent(a_id, entry) != null)
+        {
+            this.handles.Remove(entry.handle);
+            return 0;
+        }
+
+        return entry.handle;
+    }
+
+    /*
+        Function: Get
+            Returns the item with the given ID
+
+        Parameter:
+            a_id    - String    | ID of the item
+
+        Returns:
+            T -> - The item, null if no item is registered under the ID
+    */
+    public T Get(String a_id)
+    {
+        Entry<T> entry = this.entries.get(a_id);
+        return entry == null ? null : entry.item;
+    }
+
+    /*
+        Function: Get
+            Returns the item with the given handle
+
+        Parameter:
+            a_handle    - Integer   | handle of the item
+
+        Returns:
+            T -> - The item, null if the handle is invalid or its item got removed
+    */
+    public T Get(int a_handle)
+    {
+        return this.handles.Get(a_handle);
+    }
+
+    /*
+        Function: GetHandle
+            Returns the handle of the item with the given ID
+
+        Parameter:
+            a_id    - String    | ID of the item
+
+        Returns:
+            int -> - the handle of the item, 0 if no item is registered under the ID
+    */
+    public int GetHandle(String a_id)
+    {
+        Entry<T> entry = this.entries.get(a_id);
+        return entry == null ? 0 : entry.handle;
+    }
+
+    /*
+        Function: Remove
+            Removes the item with the given ID. Its handle becomes invalid
+
+        Parameter:
+            a_id    - String    | ID of the item
+
+        Returns:
+            boolean -> - true: the item was removed, false: no item is registered under the ID
+    */
+    public boolean Remove(String a_id)
+    {
+        Entry<T> entry = this.entries.remove(a_id);
+        if (entry == null)
+            return false;
+
+        this.handles.Remove(entry.handle);
+        return true;
+    }
+
+    /*
+        Function: GetItems
+            Returns a snapshot of all registered items, in no particular order
+
+        Returns:
+            GameList<T> -> - The registered items
+    */
+    public GameList<T> GetItems()
+    {
+        GameList<T> items = new GameList<T>(Math.max(this.entries.size(), 1));
+        for (Entry<T> entry : this.entries.values())
+        {
+            items.Add(entry.item);
+        }
+        return items;
+    }
+}
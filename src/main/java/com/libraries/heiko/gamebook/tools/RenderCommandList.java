@@ -0,0 +1,135 @@
+package com.libraries.heiko.gamebook.tools;
+
+import java.util.Arrays;
+
+/**
+ * A flat list of render-commands. Every command is a 64-bit sort-key together with an integer
+ * that identifies the command for its owner (e.g. the index of a quad). The keys are sorted with
+ * a stable radix-sort, so commands with equal keys keep the order they were added in.
+ * Keys are compared unsigned. Uses no allocations once the list is big enough.
+ */
+public class RenderCommandList
+{
+    public int count = 0;                                           // number of commands in the list
+    private long[] keys;                                            // sort-keys of the commands
+    private int[] values;                                           // values of the commands
+
+    // cache-variables to prevent memory-allocations
+    private long[] tempKeys;                                        // receives the keys during a radix-pass
+    private int[] tempValues;                                       // receives the values during a radix-pass
+    private final int[] digitCounts = new int[256];                 // used to count the digits during a radix-pass
+
+    public RenderCommandList(int a_capacity)
+    {
+        this.keys = new long[a_capacity];
+        this.values = new int[a_capacity];
+        this.tempKeys = new long[a_capacity];
+        this.tempValues = new int[a_capacity];
+    }
+
+    /*
+        Function: Add
+            Adds a command to the end of the list
+
+        Parameter:
+            a_key   - long      | The sort-key of the command
+            a_value - Integer   | The value identifying the command
+    */
+    public void Add(long a_key, int a_value)
+    {
+        if (this.count == this.keys.length)
+        {
+            this.keys = Arrays.copyOf(this.keys, this.count * 2);
+            this.values = Arrays.copyOf(this.values, this.count * 2);
+            this.tempKeys = new long[this.count * 2];
+            this.tempValues = new int[this.count * 2];
+        }
+
+        this.keys[this.count] = a_key;
+        this.values[this.count] = a_value;
+        this.count++;
+    }
+
+    /*
+        Function: GetKey
+            Returns the sort-key of a command
+
+        Parameter:
+            a_index - Integer   | position of the command in the list
+
+        Returns:
+            long -> - the sort-key of the command
+    */
+    public long GetKey(int a_index)
+    {
+        return this.keys[a_index];
+    }
+
+    /*
+        Function: GetValue
+            Returns the value of a command
+
+        Parameter:
+            a_index - Integer   | position of the command in the list
+
+        Returns:
+            Integer -> - the value of the command
+    */
+    public int GetValue(int a_index)
+    {
+        return this.values[a_index];
+    }
+
+    // removes all commands
+    public void Clear()
+    {
+        this.count = 0;
+    }
+
+    /*
+        Function: Sort
+            Sorts the commands by their keys (unsigned, ascending). Commands with equal keys keep their order.
+            Bytes that are the same for all keys are skipped, so lists that are (almost) sorted already are cheap
+    */
+    public void Sort()
+    {
+        if (this.count < 2)
+            return;
+
+        for (int shift = 0; shift < 64; shift += 8)
+        {
+            Arrays.fill(this.digitCounts, 0);
+            for (int i = 0; i < this.count; i++)
+            {
+                this.digitCounts[(int) (this.keys[i] >>> shift) & 0xFF]++;
+            }
+
+            // all keys have the same digit, this pass wouldn't change anything
+            if (this.digitCounts[(int) (this.keys[0] >>> shift) & 0xFF] == this.count)
+                continue;
+
+            // turn the counts into the first position of every digit
+            int position = 0;
+            for (int digit = 0; digit < 256; digit++)
+            {
+                int digitCount = this.digitCounts[digit];
+                this.digitCounts[digit] = position;
+                position += digitCount;
+            }
+
+            for (int i = 0; i < this.count; i++)
+            {
+                int target = this.digitCounts[(int) (this.keys[i] >>> shift) & 0xFF]++;
+                this.tempKeys[target] = this.keys[i];
+                this.tempValues[target] = this.values[i];
+            }
+
+            long[] swapKeys = this.keys;
+            this.keys = this.tempKeys;
+            this.tempKeys = swapKeys;
+            int[] swapValues = this.values;
+            this.values = this.tempValues;
+            this.tempValues = swapValues;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.libraries.heiko.gamebook.tools;
+
+import android.opengl.GLES20;
+import android.opengl.Matrix;
+
+/**
+ * A texture an element and its child-elements get rendered into once, so afterwards they can be
+ * drawn as a single quad (see GameElement.CacheAsLayer). Holds the framebuffer, its texture and
+ * stencil-buffer, and the quad the texture gets drawn with.
+ */
+public class RenderLayer
+{
+    public int framebuffer = 0;                                     // the framebuffer-object drawing into texture
+    public int texture = 0;                                         // the texture holding the rendered element
+    private int stencilBuffer = 0;                                  // the stencil-buffer of the framebuffer, needed for masks inside the layer
+    public int width = 0;                                           // width of the texture in pixels
+    public int height = 0;                                          // height of the texture in pixels
+    private int contextVersion = -1;                                // contextVersion of the SpriteBatch the objects were created in
+
+    public final float[] mvpMatrix = new float[16];                 // maps the area of the layer onto the whole texture
+    public int mvpVersion = 0;                                      // gets increased every time mvpMatrix changes
+    public final float[] coords = new float[12];                    // the 4 vertices of the area of the layer (x, y, z each)
+    public final float[] texturePositions = {0, 0,  0, 1,  1, 1,  1, 0};   // the texture-positions of the 4 vertices
+
+    private GLState glState;                                        // used to bind the objects without confusing the tracked state
+
+    // cache-variables to prevent memory-allocations
+    private int[] ids = new int[1];                                 // used to generate and delete the OpenGL-objects
+
+    public RenderLayer(GLState a_glState)
+    {
+        this.glState = a_glState;
+    }
+
+    /*
+        Function: Prepare
+            Makes sure the framebuffer exists and has the given size, and sets the area of the layer.
+            Recreates everything after a context-loss
+
+        Parameter:
+            a_spriteBatch       - SpriteBatch   | the batch that will draw into the layer. Gets flushed if the framebuffer has to be (re)created
+            a_width             - Integer       | width of the texture in pixels
+            a_height            - Integer       | height of the texture in pixels
+            a_left              - float         | left edge of the area of the layer
+            a_bottom            - float         | bottom edge of the area of the layer
+            a_right             - float         | right edge of the area of the layer
+            a_top               - float         | top edge of the area of the layer
+            a_z                 - float         | z-position of the layer
+
+        Returns:
+            boolean -> - true: the framebuffer was (re)created and its content is gone, false: the old content is still there
+    */
+    public boolean Prepare(SpriteBatch a_spriteBatch, int a_width, int a_height, float a_left, float a_bottom, float a_right, float a_top, float a_z)
+    {
+        boolean created = false;
+        if (this.contextVersion != a_spriteBatch.contextVersion)
+        {
+            // the objects of the old context are gone already, they must not be deleted
+            this.framebuffer = 0;
+            this.texture = 0;
+            this.stencilBuffer = 0;
+            this.contextVersion = a_spriteBatch.contextVersion;
+        }
+
+        if (this.framebuffer == 0 || this.width != a_width || this.height != a_height)
+        {
+            // creating the framebuffer binds it, the quads already in the batch belong to the previous one
+            a_spriteBatch.Flush();
+            this._Create(a_width, a_height);
+            created = true;
+        }
+
+        // the matrix only needs to be recalculated if the area changed
+        if (this.coords[0] == a_left && this.coords[1] == a_bottom && this.coords[2] == a_z &&
+            this.coords[6] == a_right && this.coords[7] == a_top && this.mvpVersion != 0)
+            return created;
+
+        // same vertex-order as BaseSquare: bottom-left, top-left, top-right, bottom-right
+        this.coords[0] = a_left;    this.coords[1] = a_bottom;  this.coords[2] = a_z;
+        this.coords[3] = a_left;    this.coords[4] = a_top;     this.coords[5] = a_z;
+        this.coords[6] = a_right;   this.coords[7] = a_top;     this.coords[8] = a_z;
+        this.coords[9] = a_right;   this.coords[10] = a_bottom; this.coords[11] = a_z;
+
+        // same camera as the GameRenderer, but only showing the area of the layer
+        Matrix.orthoM(this.mvpMatrix, 0, a_left, a_right, a_bottom, a_top, -1, 10);
+        Matrix.translateM(this.mvpMatrix, 0, 0, 0, -1);
+        this.mvpVersion++;
+        return created;
+    }
+
+    /*
+        Function: Release
+            Deletes the framebuffer, its texture and stencil-buffer. Must be called on the GL-thread
+    */
+    public void Release()
+    {
+        if (this.framebuffer == 0)
+            return;
+
+        this.ids[0] = this.framebuffer;
+        GLES20.glDeleteFramebuffers(1, this.ids, 0);
+        this.ids[0] = this.texture;
+        GLES20.glDeleteTextures(1, this.ids, 0);
+        this.glState.InvalidateTextures();
+        this.ids[0] = this.stencilBuffer;
+        GLES20.glDeleteRenderbuffers(1, this.ids, 0);
+        this.framebuffer = 0;
+        this.texture = 0;
+        this.stencilBuffer = 0;
+    }
+
+    // (re)creates the framebuffer with a texture and stencil-buffer of the given size
+    private void _Create(int a_width, int a_height)
+    {
+        this.Release();
+        this.width = a_width;
+        this.height = a_height;
+
+        GLES20.glGenTextures(1, this.ids, 0);
+        this.texture = this.ids[0];
+        this.glState.BindTexture(this.texture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, a_width, a_height, 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+
+        GLES20.glGenRenderbuffers(1, this.ids, 0);
+        this.stencilBuffer = this.ids[0];
+        GLES20.glBindRenderbuffer(GLES20.GL_RENDERBUFFER, this.stencilBuffer);
+        GLES20.glRenderbufferStorage(GLES20.GL_RENDERBUFFER, GLES20.GL_STENCIL_INDEX8, a_width, a_height);
+
+        GLES20.glGenFramebuffers(1, this.ids, 0);
+        this.framebuffer = this.ids[0];
+        this.glState.BindFramebuffer(this.framebuffer);
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0, GLES20.GL_TEXTURE_2D, this.texture, 0);
+        GLES20.glFramebufferRenderbuffer(GLES20.GL_FRAMEBUFFER, GLES20.GL_STENCIL_ATTACHMENT, GLES20.GL_RENDERBUFFER, this.stencilBuffer);
+    }
+}
@@ -0,0 +1,89 @@
+package com.libraries.heiko.gamebook.tools;
+
+import android.opengl.GLES20;
+
+import java.util.HashMap;
+
+/**
+ * Compiles and links every shader-program only once and hands out the same ShaderProgram
+ * to everyone asking for the same shader-sources. Gets cleared when the OpenGL-context
+ * is (re)created, because the old programs are gone with the old context. Only the GL-thread
+ * (the thread that cleared the cache last) can get programs.
+ */
+public class ShaderCache
+{
+    private HashMap<String, ShaderProgram> programs;      // the linked programs, keyed by their vertex- and fragment-shader-source
+    private Thread glThread;                              // the thread owning the current OpenGL-context, see Clear
+
+    public ShaderCache()
+    {
+        this.programs = new HashMap<String, ShaderProgram>();
+    }
+
+    /*
+        Function: GetProgram
+            Returns the program built from the given shader-sources. Compiles and links it if it
+            is requested for the first time
+
+        Parameter:
+            a_vertexShaderCode      - String    | Source of the vertex-shader
+            a_fragmentShaderCode    - String    | Source of the fragment-shader
+
+        Returns:
+            ShaderProgram -> - The linked program with its attribute- and uniform-locations
+    */
+    public ShaderProgram GetProgram(String a_vertexShaderCode, String a_fragmentShaderCode)
+    {
+        if (Thread.currentThread() != this.glThread)
+            throw new Error("shader-programs can only be created by the GL-thread");
+
+        String key = a_vertexShaderCode + "\n" + a_fragmentShaderCode;
+        ShaderProgram program = this.programs.get(key);
+        if (program != null)
+            return program;
+
+        int vertexShader = _LoadShader(GLES20.GL_VERTEX_SHADER, a_vertexShaderCode);
+        int fragmentShader = _LoadShader(GLES20.GL_FRAGMENT_SHADER, a_fragmentShaderCode);
+        int newProgram = GLES20.glCreateProgram();
+        GLES20.glAttachShader(newProgram, vertexShader);
+        GLES20.glAttachShader(newProgram, fragmentShader);
+        GLES20.glLinkProgram(newProgram);
+
+        // the shaders are not needed anymore once the program is linked
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+
+        // a program that didn't link can't be used, and must not be handed out again
+        int[] linkStatus = new int[1];
+        GLES20.glGetProgramiv(newProgram, GLES20.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] != GLES20.GL_TRUE)
+        {
+            String log = GLES20.glGetProgramInfoLog(newProgram);
+            GLES20.glDeleteProgram(newProgram);
+            throw new Error("could not link shader-program: " + log);
+        }
+
+        program = new ShaderProgram(newProgram);
+        this.programs.put(key, program);
+        return program;
+    }
+
+    /*
+        Function: Clear
+            Forgets all programs. Has to be called by the GL-thread when the OpenGL-context got (re)created
+    */
+    public void Clear()
+    {
+        this.programs.clear();
+        this.glThread = Thread.currentThread();
+    }
+
+    // creates a shader of a given type an compiles a given sourceCode into it
+    private static int _LoadShader(int a_type, String a_shaderCode)
+    {
+        int shader = GLES20.glCreateShader(a_type);
+        GLES20.glShaderSource(shader, a_shaderCode);
+        GLES20.glCompileShader(shader);
+        return shader;
+    }
+}
@@ -0,0 +1,34 @@
+package com.libraries.heiko.gamebook.tools;
+
+import android.opengl.GLES20;
+
+/**
+ * A linked shader-program together with the locations of its attributes and uniforms.
+ * The locations are looked up once when the program is linked, so the draw-path never
+ * has to ask the driver for them. Locations the program doesn't use are -1.
+ *
+ * All shaders of the framework use the same names:
+ *  attributes: vPosition, a_texCoord, a_color
+ *  uniforms:   uMVPMatrix, vColor, s_texture
+ */
+public class ShaderProgram
+{
+    public final int program;                   // handle of the linked program
+    public final int positionHandle;            // location of the vPosition-attribute
+    public final int texturePositionHandle;     // location of the a_texCoord-attribute
+    public final int colorHandle;               // location of the a_color-attribute
+    public final int mvpMatrixHandle;           // location of the uMVPMatrix-uniform
+    public final int colorUniformHandle;        // location of the vColor-uniform
+    public final int textureUniformHandle;      // location of the s_texture-uniform
+
+    public ShaderProgram(int a_program)
+    {
+        this.program = a_program;
+        this.positionHandle = GLES20.glGetAttribLocation(a_program, "vPosition");
+        this.texturePositionHandle = GLES20.glGetAttribLocation(a_program, "a_texCoord");
+        this.colorHandle = GLES20.glGetAttribLocation(a_program, "a_color");
+        this.mvpMatrixHandle = GLES20.glGetUniformLocation(a_program, "uMVPMatrix");
+        this.colorUniformHandle = GLES20.glGetUniformLocation(a_program, "vColor");
+        this.textureUniformHandle = GLES20.glGetUniformLocation(a_program, "s_texture");
+    }
+}
@@ -0,0 +1,165 @@
+package com.libraries.heiko.gamebook.tools;
+
+/**
+ * GameList that keeps its items sorted by a float-key (e.g. the drawOrder). Items with the same key
+ * keep the order they were added in, which is stored as a sequence-number in every item. Key and
+ * sequence-number together are unique, so finding an item or the new position of an item is a
+ * binary search, no matter how many items share a key. Moving an item to its new position only shifts the items in between, so small changes of
+ * a key are cheap. Sort re-sorts all items after their keys were changed, with an insertion sort
+ * that is close to linear for lists that are nearly sorted (e.g. sprites sorted by their y-position
+ * every frame). The keys must only be changed through Reorder, or followed by a call of Sort.
+ * Subclasses tell the list how to read and write the key and the sequence-number of an item.
+ */
+public abstract class SortedList<T> extends GameList<T>
+{
+    private int nextSequence = 0;                       // the sequence-number the next added or moved item gets
+
+    // returns the key the item is sorted by
+    protected abstract float GetKey(T a_item);
+
+    // sets the key the item is sorted by
+    protected abstract void SetKey(T a_item, float a_key);
+
+    // returns the sequence-number of the item, the order of the items with the same key
+    protected abstract int GetSequence(T a_item);
+
+    // sets the sequence-number of the item
+    protected abstract void SetSequence(T a_item, int a_sequence);
+
+    /*
+        Function: AddSorted
+            Inserts an item behind the last item with the same or a lower key
+
+        Parameter:
+            a_item  - T | The item to add
+
+        Returns:
+            int -> - the index the item got
+    */
+    public int AddSorted(T a_item)
+    {
+        int index = this._UpperBound(this.GetKey(a_item), 0, this.Size());
+        this.SetSequence(a_item, this._NextSequence());
+        this.Insert(index, a_item);
+        return index;
+    }
+
+    /*
+        Function: IndexOf
+            Finds the index of an item with a binary search over its key and sequence-number
+
+        Parameter:
+            a_item  - T | The item to find
+
+        Returns:
+            int -> - index of the item, -1 if it isn't in the list
+    */
+    @Override
+    public int IndexOf(T a_item)
+    {
+        int index = this._LowerBound(this.GetKey(a_item), this.GetSequence(a_item), 0, this.Size());
+        if (index < this.Size() && this.Get(index) == a_item)
+            return index;
+
+        return -1;
+    }
+
+    /*
+        Function: Reorder
+            Changes the key of an item and moves it behind the last item with the same or a lower key
+
+        Parameter:
+            a_item  - T     | The item to move
+            a_key   - float | the new key of the item
+
+        Returns:
+            boolean -> - true: the item was moved, false: the item isn't in the list
+    */
+    public boolean Reorder(T a_item, float a_key)
+    {
+        int from = this.IndexOf(a_item);
+        if (from < 0)
+            return false;
+
+        // the item only moves past the items between its old and its new key
+        int to;
+        if (a_key >= this.GetKey(a_item))
+            to = this._UpperBound(a_key, from + 1, this.Size()) - 1;
+        else
+            to = this._UpperBound(a_key, 0, from);
+
+        this.SetKey(a_item, a_key);
+        this.SetSequence(a_item, this._NextSequence());
+        this.Move(from, to);
+        return true;
+    }
+
+    /*
+        Function: Sort
+            Sorts the items by their current keys. Items with the same key keep their order
+    */
+    public void Sort()
+    {
+        for (int i = 1; i < this.Size(); i++)
+        {
+            T item = this.Get(i);
+            float key = this.GetKey(item);
+            int j = i - 1;
+            while (j >= 0 && this.GetKey(this.Get(j)) > key)
+            {
+                this.Set(j + 1, this.Get(j));
+                j--;
+            }
+            this.Set(j + 1, item);
+        }
+        this._Renumber();
+    }
+
+    // returns a sequence-number that is higher than the one of every item
+    private int _NextSequence()
+    {
+        if (this.nextSequence == Integer.MAX_VALUE)
+            this._Renumber();
+
+        return this.nextSequence++;
+    }
+
+    // numbers the items in their current order, so the items with the same key are ordered by their sequence-numbers
+    private void _Renumber()
+    {
+        for (int i = 0; i < this.Size(); i++)
+        {
+            this.SetSequence(this.Get(i), i);
+        }
+        this.nextSequence = this.Size();
+    }
+
+    // returns the first index between a_from and a_to with a key and sequence-number >= a_key and a_sequence, a_to if there is none
+    private int _LowerBound(float a_key, int a_sequence, int a_from, int a_to)
+    {
+        while (a_from < a_to)
+        {
+            int middle = (a_from + a_to) >>> 1;
+            T item = this.Get(middle);
+            if (this.GetKey(item) < a_key || (this.GetKey(item) == a_key && this.GetSequence(item) < a_sequence))
+                a_from = middle + 1;
+            else
+                a_to = middle;
+        }
+        return a_from;
+    }
+
+    // returns the first index between a_from and a_to with a key > a_key, a_to if there is none
+    private int _UpperBound(float a_key, int a_from, int a_to)
+    {
+        while (a_from < a_to)
+        {
+            int middle = (a_from + a_to) >>> 1;
+            if (this.GetKey(this.Get(middle)) <= a_key)
+                a_from = middle + 1;
+            else
+                a_to = middle;
+        }
+        return a_from;
+    }
+}
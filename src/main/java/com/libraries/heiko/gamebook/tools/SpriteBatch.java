@@ -0,0 +1,589 @@
+package com.libraries.heiko.gamebook.tools;
+
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Collects the quads of all BaseSquare-based controls and draws runs of quads that share
+ * the same shader-program, texture and stencil-level with a single glDrawElements-call.
+ * The quads are recorded in a RenderCommandList and sorted before they get drawn. Quads have to be
+ * added in the order they are drawn in. Their sort-keys come from a BatchOrder, so only quads that
+ * don't overlap get grouped by stencil-level, program and texture, and overlapping quads keep their
+ * order. Everything that can't be sorted (masks, fonts, scissor- and target-changes) calls Flush
+ * first, which draws the quads recorded so far.
+ * The vertices get transformed on the CPU, so every quad can have its own mvp-matrix.
+ * The transformed vertices get streamed into a single vertex-buffer-object and all quads
+ * share one static index-buffer-object, which can also be used by everyone else drawing quads.
+ * Also keeps track of the scissor-box used to clip axis-aligned elements, because changing it
+ * requires a flush as well.
+ */
+public class SpriteBatch
+{
+    public final static int MAX_QUADS = 512;                        // Maximum number of quads in one draw-call
+    public final static int VERTEX_FLOATS = 10;                     // Floats per vertex: position (4), texture-position (2), color (4)
+    private final static int VERTEX_STRIDE = VERTEX_FLOATS * 4;     // Bytesize of a single vertex
+
+    // the shader-programs used to draw the quads
+    public ShaderProgram colorProgram;                              // the ShaderProgram to use when only a backgroundColor is set
+    public ShaderProgram imageProgram;                              // the ShaderProgram to use when only a backgroundImage is set
+    public ShaderProgram colorAndImageProgram;                      // the ShaderProgram to use when both backgroundColor and backgroundImage are set
+    public ShaderProgram layerProgram;                              // the ShaderProgram to use when drawing the texture of a RenderLayer
+
+    private GLState glState;                                        // used to set the OpenGL-state without redundant calls
+
+    // the buffer-objects. Recreated in OGLReady, because they are gone with the old context
+    public int quadIndexBuffer = 0;                                 // static index-buffer-object holding the indices of MAX_QUADS quads (0, 1, 2, 0, 2, 3 each)
+    public int unitQuadBuffer = 0;                                  // static vertex-buffer-object holding a quad from (0, 0, -1) to (1, 1, -1)
+    private int vertexBuffer = 0;                                   // vertex-buffer-object the transformed vertices get streamed into
+    public int contextVersion = 0;                                  // gets increased every time the buffers get recreated. Lets elements know their own buffers are gone
+
+    // the quads currently in the batch
+    private final RenderCommandList commands;                       // sort-key and index of every quad in the batch
+    private final BatchOrder order;                                 // computes the sort-keys from the state and screen-bounds of the quads
+    private final ShaderProgram[] quadPrograms;                     // the shader-program of every quad in the batch
+    private final int[] quadTextures;                               // the texture of every quad in the batch
+    private final int[] quadStencilLevels;                          // the stencil-level of every quad in the batch
+    private int currentStencilLevel = -1;                           // the stencil-level the next quads get, -1 if unknown
+    public int drawCalls = 0;                                       // number of draw-calls issued in the current frame
+
+    // the scissor-boxes of the elements currently clipping their child-elements. Index 0 is the whole viewport
+    private int viewportWidth = 0, viewportHeight = 0;              // size of the viewport in pixels
+    private int[] scissorBoxes = new int[4 * 16];                   // left, bottom, right, top of every pushed scissor-box
+    private int scissorDepth = 0;                                   // index of the current scissor-box
+    private int scissorBase = 0;                                    // index of the scissor-box covering the whole current render-target
+
+    // the render-targets that were active before the current one (see BeginTarget)
+    private int[] targetStack = new int[5 * 4];                     // framebuffer, viewportWidth, viewportHeight, scissorBase, stencil-level of every previous render-target
+    private int targetDepth = 0;                                    // number of previous render-targets
+    private int currentFramebuffer = 0;                             // the framebuffer currently drawn into, 0 for the screen
+
+    // cache-variables to prevent memory-allocations
+    private final float[] vertexValues;                             // holds the transformed vertices in the order they were added
+    private final float[] sortedValues;                             // holds the transformed vertices in the sorted order, before they get copied to the buffer
+    private final FloatBuffer vertices;                             // used to upload vertexValues to the vertex-buffer-object
+    private final int[] bufferIDs = new int[3];                     // used to generate the buffer-objects
+    private int bufferIndex = 0;                                    // next free position in vertexValues
+    private float tempX, tempY, tempZ;                              // used to transform a vertex
+
+    // the vertex-shader used by all batch-programs. Vertices are already transformed
+    private final static String vertexShaderCode =
+        "attribute vec4 vPosition;" +
+        "attribute vec2 a_texCoord;" +
+        "attribute vec4 a_color;" +
+        "varying vec2 v_texCoord;" +
+        "varying vec4 v_color;" +
+        "void main()" +
+        "{" +
+        "   gl_Position = vPosition;" +
+        "   v_texCoord = a_texCoord;" +
+        "   v_color = a_color;" +
+        "}";
+
+    // The fragment-shader to use, when only a background-color, but no background-texture is set
+    private final static String colorFragmentShaderCode =
+        "precision mediump float;" +
+        "varying vec4 v_color;" +
+        "void main()" +
+        "{" +
+        "   gl_FragColor = v_color;" +
+        "}";
+
+    // The fragment-shader to use, when only a background-texture, but no background-color is set
+    private final static String imageFragmentShaderCode =
+        "precision mediump float;" +
+        "varying vec2 v_texCoord;" +
+        "uniform sampler2D s_texture;" +
+        "void main()" +
+        "{" +
+        "   vec4 tex = texture2D (s_texture, v_texCoord);" +
+        "   gl_FragColor = vec4(tex.r, tex.g, tex.b, 1.0 - tex.a);" +
+        "}";
+
+    // The fragment-shader to use, when drawing a RenderLayer. The texture already holds premultiplied colors and the transparency
+    private final static String layerFragmentShaderCode =
+        "precision mediump float;" +
+        "varying vec2 v_texCoord;" +
+        "uniform sampler2D s_texture;" +
+        "void main()" +
+        "{" +
+        "   gl_FragColor = texture2D(s_texture, v_texCoord);" +
+        "}";
+
+    // The fragment-shader to use, when both background-color and background-texture are set
+    private final static String colorAndImageFragmentShaderCode =
+        "precision mediump float;" +
+        "varying vec4 v_color;" +
+        "varying vec2 v_texCoord;" +
+        "uniform sampler2D s_texture;" +
+        "void main()" +
+        "{" +
+        "   vec4 texture = texture2D(s_texture, v_texCoord);" +
+        "   vec4 bgColor = v_color;" +
+        "   bgColor.a = bgColor.a - clamp(bgColor.a + texture.a - 1.0, 0.0, bgColor.a);" +
+        "   texture.a = 1.0 - (texture.a - clamp(v_color.a + texture.a - 1.0, 0.0, texture.a));" +
+        "   gl_FragColor = vec4(bgColor.r*bgColor.a/v_color.a + texture.r," +		// Dividing by old alpha, multiplying by new one
+        "						bgColor.g*bgColor.a/v_color.a + texture.g, " +
+        "						bgColor.b*bgColor.a/v_color.a + texture.b, " +
+        "						bgColor.a * texture.a);" +
+        "}";
+
+    public SpriteBatch(GLState a_glState)
+    {
+        this.glState = a_glState;
+        this.vertexValues = new float[MAX_QUADS * 4 * VERTEX_FLOATS];
+        this.sortedValues = new float[MAX_QUADS * 4 * VERTEX_FLOATS];
+        this.commands = new RenderCommandList(MAX_QUADS);
+        this.order = new BatchOrder(MAX_QUADS);
+        this.quadPrograms = new ShaderProgram[MAX_QUADS];
+        this.quadTextures = new int[MAX_QUADS];
+        this.quadStencilLevels = new int[MAX_QUADS];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(this.vertexValues.length * 4);
+        this.vertices = buffer.order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+    }
+
+    // gets called once OpenGL is ready to be used (and again after the context got lost)
+    public void OGLReady(ShaderCache a_shaders)
+    {
+        this.colorProgram = a_shaders.GetProgram(vertexShaderCode, colorFragmentShaderCode);
+        this.imageProgram = a_shaders.GetProgram(vertexShaderCode, imageFragmentShaderCode);
+        this.colorAndImageProgram = a_shaders.GetProgram(vertexShaderCode, colorAndImageFragmentShaderCode);
+        this.layerProgram = a_shaders.GetProgram(vertexShaderCode, layerFragmentShaderCode);
+        this.currentStencilLevel = -1;
+        this.commands.Clear();
+        this.order.Clear();
+        this.bufferIndex = 0;
+        this._CreateBuffers();
+    }
+
+    // creates the buffer-objects and uploads the static geometry. The old buffers died with the old context
+    private void _CreateBuffers()
+    {
+        GLES20.glGenBuffers(3, this.bufferIDs, 0);
+        this.quadIndexBuffer = this.bufferIDs[0];
+        this.unitQuadBuffer = this.bufferIDs[1];
+        this.vertexBuffer = this.bufferIDs[2];
+        this.contextVersion++;
+
+        ShortBuffer indices = ByteBuffer.allocateDirect(MAX_QUADS * 6 * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+        for (int i = 0; i < MAX_QUADS; i++)
+        {
+            indices.put((short) (i*4));
+            indices.put((short) (i*4 + 1));
+            indices.put((short) (i*4 + 2));
+            indices.put((short) (i*4));
+            indices.put((short) (i*4 + 2));
+            indices.put((short) (i*4 + 3));
+        }
+        indices.position(0);
+        this.glState.BindElementArrayBuffer(this.quadIndexBuffer);
+        GLES20.glBufferData(GLES20.GL_ELEMENT_ARRAY_BUFFER, MAX_QUADS * 6 * 2, indices, GLES20.GL_STATIC_DRAW);
+
+        float[] unitQuad = {0, 0, -1,   0, 1, -1,   1, 1, -1,   1, 0, -1};
+        FloatBuffer quad = ByteBuffer.allocateDirect(unitQuad.length * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        quad.put(unitQuad).position(0);
+        this.glState.BindArrayBuffer(this.unitQuadBuffer);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, unitQuad.length * 4, quad, GLES20.GL_STATIC_DRAW);
+
+        // reserve the storage of the stream-buffer, it gets filled on every flush
+        this.glState.BindArrayBuffer(this.vertexBuffer);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, this.vertexValues.length * 4, null, GLES20.GL_STREAM_DRAW);
+    }
+
+    // sets the size of the viewport. Gets called when the surface changes
+    public void SetViewport(int a_width, int a_height)
+    {
+        this.viewportWidth = a_width;
+        this.viewportHeight = a_height;
+    }
+
+    // prepares the batch for a new frame
+    public void Begin()
+    {
+        this.drawCalls = 0;
+        this.currentStencilLevel = -1;
+        this.glState.DepthMask(false);
+
+        this.scissorDepth = 0;
+        this.scissorBase = 0;
+        this.targetDepth = 0;
+        this.currentFramebuffer = 0;
+        this.glState.BindFramebuffer(0);
+        this.scissorBoxes[0] = 0;
+        this.scissorBoxes[1] = 0;
+        this.scissorBoxes[2] = this.viewportWidth;
+        this.scissorBoxes[3] = this.viewportHeight;
+        this.glState.Disable(GLES20.GL_SCISSOR_TEST);
+    }
+
+    // draws everything that is left in the batch
+    public void End()
+    {
+        this.Flush();
+    }
+
+    /*
+        Function: SetStencilLevel
+            Sets the stencil-level the following quads get clipped against. The level is part of the sort-key,
+            so this doesn't flush the batch. Flush applies it for everything drawn without the batch
+
+        Parameter:
+            a_stencilLevel  - Integer   | The stencil-value the pixels need to have to be drawn
+    */
+    public void SetStencilLevel(int a_stencilLevel)
+    {
+        this.currentStencilLevel = a_stencilLevel;
+    }
+
+    /*
+        Function: BeginTarget
+            Redirects everything drawn afterwards into a framebuffer, until EndTarget gets called.
+            Can be nested. The scissor-boxes and stencil-level of the previous target are restored by EndTarget
+
+        Parameter:
+            a_framebuffer   - Integer   | The framebuffer to draw into
+            a_width         - Integer   | width of the framebuffer in pixels
+            a_height        - Integer   | height of the framebuffer in pixels
+    */
+    public void BeginTarget(int a_framebuffer, int a_width, int a_height)
+    {
+        this.Flush();
+        if (this.targetDepth * 5 + 5 > this.targetStack.length)
+            this.targetStack = Arrays.copyOf(this.targetStack, this.targetStack.length * 2);
+
+        int index = this.targetDepth * 5;
+        this.targetStack[index] = this.currentFramebuffer;
+        this.targetStack[index + 1] = this.viewportWidth;
+        this.targetStack[index + 2] = this.viewportHeight;
+        this.targetStack[index + 3] = this.scissorBase;
+        this.targetStack[index + 4] = this.currentStencilLevel;
+        this.targetDepth++;
+
+        // the new target starts with a scissor-box covering all of it
+        if ((this.scissorDepth + 2) * 4 > this.scissorBoxes.length)
+            this.scissorBoxes = Arrays.copyOf(this.scissorBoxes, this.scissorBoxes.length * 2);
+        this.scissorDepth++;
+        this.scissorBase = this.scissorDepth;
+        this.scissorBoxes[this.scissorDepth*4] = 0;
+        this.scissorBoxes[this.scissorDepth*4 + 1] = 0;
+        this.scissorBoxes[this.scissorDepth*4 + 2] = a_width;
+        this.scissorBoxes[this.scissorDepth*4 + 3] = a_height;
+
+        this.viewportWidth = a_width;
+        this.viewportHeight = a_height;
+        this.currentStencilLevel = -1;
+        this.currentFramebuffer = a_framebuffer;
+        this.glState.BindFramebuffer(a_framebuffer);
+        GLES20.glViewport(0, 0, a_width, a_height);
+        this._ApplyScissor();
+    }
+
+    // draws everything left for the current target and switches back to the previous one
+    public void EndTarget()
+    {
+        this.Flush();
+        this.targetDepth--;
+        int index = this.targetDepth * 5;
+        this.viewportWidth = this.targetStack[index + 1];
+        this.viewportHeight = this.targetStack[index + 2];
+        this.scissorDepth = this.scissorBase - 1;
+        this.scissorBase = this.targetStack[index + 3];
+        this.currentStencilLevel = this.targetStack[index + 4];
+
+        this.currentFramebuffer = this.targetStack[index];
+        this.glState.BindFramebuffer(this.currentFramebuffer);
+        GLES20.glViewport(0, 0, this.viewportWidth, this.viewportHeight);
+        this._ApplyScissor();
+    }
+
+    /*
+        Function: PushScissor
+            Restricts everything drawn afterwards to a rectangle, intersected with the current scissor-box.
+            Only works if the rectangle stays axis-aligned on the screen (no rotation, no 3D-projection)
+
+        Parameter:
+            a_mvpMatrix - float[]   | The mvp-matrix the rectangle is drawn with
+            a_left      - float     | left edge of the rectangle
+            a_bottom    - float     | bottom edge of the rectangle
+            a_right     - float     | right edge of the rectangle
+            a_top       - float     | top edge of the rectangle
+            a_z         - float     | z-position of the rectangle
+
+        Returns:
+            boolean -> - true: the scissor-box was pushed and has to be popped with PopScissor, false: the rectangle
+                         is not axis-aligned on the screen and has to be clipped with the stencil-buffer instead
+    */
+    public boolean PushScissor(float[] a_mvpMatrix, float a_left, float a_bottom, float a_right, float a_top, float a_z)
+    {
+        if (a_mvpMatrix[1] != 0 || a_mvpMatrix[4] != 0 || a_mvpMatrix[3] != 0 || a_mvpMatrix[7] != 0 || a_mvpMatrix[11] != 0 || a_mvpMatrix[15] == 0)
+            return false;
+
+        // transform the rectangle to normalized device coordinates and from there to pixels
+        float left = (a_mvpMatrix[0]*a_left + a_mvpMatrix[8]*a_z + a_mvpMatrix[12]) / a_mvpMatrix[15];
+        float right = (a_mvpMatrix[0]*a_right + a_mvpMatrix[8]*a_z + a_mvpMatrix[12]) / a_mvpMatrix[15];
+        float bottom = (a_mvpMatrix[5]*a_bottom + a_mvpMatrix[9]*a_z + a_mvpMatrix[13]) / a_mvpMatrix[15];
+        float top = (a_mvpMatrix[5]*a_top + a_mvpMatrix[9]*a_z + a_mvpMatrix[13]) / a_mvpMatrix[15];
+
+        int index = this.scissorDepth * 4;
+        if (index + 8 > this.scissorBoxes.length)
+            this.scissorBoxes = Arrays.copyOf(this.scissorBoxes, this.scissorBoxes.length * 2);
+
+        this.scissorBoxes[index + 4] = Math.max(this.scissorBoxes[index], (int) Math.floor((Math.min(left, right) + 1) / 2 * this.viewportWidth));
+        this.scissorBoxes[index + 5] = Math.max(this.scissorBoxes[index + 1], (int) Math.floor((Math.min(bottom, top) + 1) / 2 * this.viewportHeight));
+        this.scissorBoxes[index + 6] = Math.min(this.scissorBoxes[index + 2], (int) Math.ceil((Math.max(left, right) + 1) / 2 * this.viewportWidth));
+        this.scissorBoxes[index + 7] = Math.min(this.scissorBoxes[index + 3], (int) Math.ceil((Math.max(bottom, top) + 1) / 2 * this.viewportHeight));
+        this.scissorDepth++;
+        this._ApplyScissor();
+        return true;
+    }
+
+    // restores the scissor-box that was active before the last PushScissor
+    public void PopScissor()
+    {
+        this.scissorDepth--;
+        this._ApplyScissor();
+    }
+
+    // returns true if the current scissor-box doesn't contain a single pixel
+    public boolean IsScissorEmpty()
+    {
+        return this.scissorBoxes[this.scissorDepth*4] >= this.scissorBoxes[this.scissorDepth*4 + 2] ||
+               this.scissorBoxes[this.scissorDepth*4 + 1] >= this.scissorBoxes[this.scissorDepth*4 + 3];
+    }
+
+    // flushes the batch and sets the current scissor-box
+    private void _ApplyScissor()
+    {
+        this.Flush();
+        if (this.scissorDepth == this.scissorBase)
+        {
+            this.glState.Disable(GLES20.GL_SCISSOR_TEST);
+            return;
+        }
+
+        int index = this.scissorDepth * 4;
+        this.glState.Enable(GLES20.GL_SCISSOR_TEST);
+        this.glState.Scissor(this.scissorBoxes[index], this.scissorBoxes[index + 1],
+                             Math.max(0, this.scissorBoxes[index + 2] - this.scissorBoxes[index]),
+                             Math.max(0, this.scissorBoxes[index + 3] - this.scissorBoxes[index + 1]));
+    }
+
+    /*
+        Function: Draw
+            Adds a quad to the batch. Flushes the batch first if it is full
+
+        Parameter:
+            a_program           - ShaderProgram | The shader-program to use (colorProgram, imageProgram, colorAndImageProgram or layerProgram)
+            a_texture           - Integer       | The texture to use, 0 if there is none
+            a_mvpMatrix         - float[]       | The mvp-matrix to transform the quad with
+            a_coords            - float[]       | The 4 vertices of the quad (x, y, z each)
+            a_texturePositions  - float[]       | The texture-positions of the 4 vertices (u, v each)
+            a_color             - float[]       | The color of the quad (r, g, b, a), or null
+    */
+    public void Draw(ShaderProgram a_program, int a_texture, float[] a_mvpMatrix, float[] a_coords, float[] a_texturePositions, float[] a_color)
+    {
+        this.Draw(a_program, a_texture, a_mvpMatrix, a_coords, 0, a_texturePositions, 0, a_color, 0);
+    }
+
+    /*
+        Function: Draw
+            Adds a quad to the batch, reading its values from the given positions of the arrays. Flushes the batch first if it is full
+
+        Parameter:
+            a_program               - ShaderProgram | The shader-program to use
+            a_texture               - Integer       | The texture to use, 0 if there is none
+            a_mvpMatrix             - float[]       | The mvp-matrix to transform the quad with
+            a_coords                - float[]       | Holds the 4 vertices of the quad (x, y, z each)
+            a_coordsOffset          - Integer       | index of the first vertex in a_coords
+            a_texturePositions      - float[]       | Holds the texture-positions of the 4 vertices (u, v each)
+            a_texturePositionOffset - Integer       | index of the first texture-position in a_texturePositions
+            a_color                 - float[]       | Holds the color of the quad (r, g, b, a), or null
+            a_colorOffset           - Integer       | index of the color in a_color
+    */
+    public void Draw(ShaderProgram a_program, int a_texture, float[] a_mvpMatrix, float[] a_coords, int a_coordsOffset, float[] a_texturePositions, int a_texturePositionOffset, float[] a_color, int a_colorOffset)
+    {
+        if (this.commands.count == MAX_QUADS)
+            this.Flush();
+
+        int quad = this.commands.count;
+        int firstValue = this.bufferIndex;
+        this.quadPrograms[quad] = a_program;
+        this.quadTextures[quad] = a_texture;
+        this.quadStencilLevels[quad] = this.currentStencilLevel;
+
+        for (int i = 0; i < 4; i++)
+        {
+            this.tempX = a_coords[a_coordsOffset + i*3];
+            this.tempY = a_coords[a_coordsOffset + i*3 + 1];
+            this.tempZ = a_coords[a_coordsOffset + i*3 + 2];
+            this.vertexValues[this.bufferIndex++] = a_mvpMatrix[0]*this.tempX + a_mvpMatrix[4]*this.tempY + a_mvpMatrix[8]*this.tempZ + a_mvpMatrix[12];
+            this.vertexValues[this.bufferIndex++] = a_mvpMatrix[1]*this.tempX + a_mvpMatrix[5]*this.tempY + a_mvpMatrix[9]*this.tempZ + a_mvpMatrix[13];
+            this.vertexValues[this.bufferIndex++] = a_mvpMatrix[2]*this.tempX + a_mvpMatrix[6]*this.tempY + a_mvpMatrix[10]*this.tempZ + a_mvpMatrix[14];
+            this.vertexValues[this.bufferIndex++] = a_mvpMatrix[3]*this.tempX + a_mvpMatrix[7]*this.tempY + a_mvpMatrix[11]*this.tempZ + a_mvpMatrix[15];
+            this.vertexValues[this.bufferIndex++] = a_texturePositions[a_texturePositionOffset + i*2];
+            this.vertexValues[this.bufferIndex++] = a_texturePositions[a_texturePositionOffset + i*2 + 1];
+
+            if (a_color != null)
+            {
+                this.vertexValues[this.bufferIndex++] = a_color[a_colorOffset];
+                this.vertexValues[this.bufferIndex++] = a_color[a_colorOffset + 1];
+                this.vertexValues[this.bufferIndex++] = a_color[a_colorOffset + 2];
+                this.vertexValues[this.bufferIndex++] = a_color[a_colorOffset + 3];
+            }
+            else
+                this.bufferIndex += 4;
+        }
+
+        // the bounds of the quad on the screen. Quads behind the camera are treated as covering everything
+        float left = Float.POSITIVE_INFINITY, bottom = Float.POSITIVE_INFINITY, right = Float.NEGATIVE_INFINITY, top = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < 4; i++)
+        {
+            float w = this.vertexValues[firstValue + i*VERTEX_FLOATS + 3];
+            if (w <= 0)
+            {
+                left = bottom = Float.NEGATIVE_INFINITY;
+                right = top = Float.POSITIVE_INFINITY;
+                break;
+            }
+
+            float x = this.vertexValues[firstValue + i*VERTEX_FLOATS] / w;
+            float y = this.vertexValues[firstValue + i*VERTEX_FLOATS + 1] / w;
+            left = Math.min(left, x);
+            bottom = Math.min(bottom, y);
+            right = Math.max(right, x);
+            top = Math.max(top, y);
+        }
+
+        // stencil-level (8 bit), program (8 bit), texture (16 bit). Collisions only cost a draw-call, the runs compare the actual state
+        int state = ((this.currentStencilLevel & 0xFF) << 24) | ((a_program.program & 0xFF) << 16) | (a_texture & 0xFFFF);
+        this.commands.Add(this.order.Add(state, left, bottom, right, top), quad);
+    }
+
+    /*
+        Function: Flush
+            Sorts and draws all quads currently in the batch and applies the current stencil-level.
+            Has to be called before anything else (fonts, stencil-changes) gets drawn
+    */
+    public void Flush()
+    {
+        if (this.commands.count > 0)
+            this._DrawCommands();
+
+        // everything drawn without the batch uses the current stencil-level. GLState skips this if it is set already
+        if (this.currentStencilLevel >= 0)
+        {
+            this.glState.StencilMask(0x00);
+            this.glState.StencilFunc(GLES20.GL_EQUAL, this.currentStencilLevel, 0xFF);
+        }
+    }
+
+    // sorts the quads, uploads them in the sorted order and draws every run of quads with the same state with one draw-call
+    private void _DrawCommands()
+    {
+        this.commands.Sort();
+        int quadCount = this.commands.count;
+        int quadFloats = 4 * VERTEX_FLOATS;
+        for (int i = 0; i < quadCount; i++)
+        {
+            System.arraycopy(this.vertexValues, this.commands.GetValue(i) * quadFloats, this.sortedValues, i * quadFloats, quadFloats);
+        }
+
+        this.vertices.clear();
+        this.vertices.put(this.sortedValues, 0, quadCount * quadFloats);
+        this.vertices.position(0);
+
+        // orphan the old storage, so the driver doesn't have to wait until the previous draw-call is done with it
+        this.glState.BindArrayBuffer(this.vertexBuffer);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER, this.vertexValues.length * 4, null, GLES20.GL_STREAM_DRAW);
+        GLES20.glBufferSubData(GLES20.GL_ARRAY_BUFFER, 0, quadCount * quadFloats * 4, this.vertices);
+        this.glState.BindElementArrayBuffer(this.quadIndexBuffer);
+
+        // Enable blending for premultiplied alpha
+        this.glState.Enable(GLES20.GL_BLEND);
+        this.glState.BlendFunc(GLES20.GL_ONE, GLES20.GL_SRC_ALPHA);
+
+        ShaderProgram boundProgram = null;
+        int runStart = 0;
+        while (runStart < quadCount)
+        {
+            int quad = this.commands.GetValue(runStart);
+            ShaderProgram program = this.quadPrograms[quad];
+            int texture = this.quadTextures[quad];
+            int stencilLevel = this.quadStencilLevels[quad];
+
+            // find the end of the run
+            int runEnd = runStart + 1;
+            while (runEnd < quadCount)
+            {
+                int next = this.commands.GetValue(runEnd);
+                if (this.quadPrograms[next] != program || this.quadTextures[next] != texture || this.quadStencilLevels[next] != stencilLevel)
+                    break;
+                runEnd++;
+            }
+
+            if (program != boundProgram)
+            {
+                this._DisableAttributes(boundProgram);
+                this._EnableAttributes(program);
+                boundProgram = program;
+            }
+
+            if (texture != 0)
+            {
+                this.glState.ActiveTexture(GLES20.GL_TEXTURE0);
+                this.glState.BindTexture(texture);
+            }
+
+            if (stencilLevel >= 0)
+            {
+                this.glState.StencilMask(0x00);
+                this.glState.StencilFunc(GLES20.GL_EQUAL, stencilLevel, 0xFF);
+            }
+
+            GLES20.glDrawElements(GLES20.GL_TRIANGLES, (runEnd - runStart) * 6, GLES20.GL_UNSIGNED_SHORT, runStart * 6 * 2);
+            this.drawCalls++;
+            runStart = runEnd;
+        }
+
+        this._DisableAttributes(boundProgram);
+        this.commands.Clear();
+        this.order.Clear();
+        this.bufferIndex = 0;
+    }
+
+    // activates a program and points its attributes to the stream-buffer, which has to be bound
+    private void _EnableAttributes(ShaderProgram a_program)
+    {
+        this.glState.UseProgram(a_program.program);
+        GLES20.glEnableVertexAttribArray(a_program.positionHandle);
+        GLES20.glVertexAttribPointer(a_program.positionHandle, 4, GLES20.GL_FLOAT, false, VERTEX_STRIDE, 0);
+        if (a_program.texturePositionHandle >= 0)
+        {
+            GLES20.glEnableVertexAttribArray(a_program.texturePositionHandle);
+            GLES20.glVertexAttribPointer(a_program.texturePositionHandle, 2, GLES20.GL_FLOAT, false, VERTEX_STRIDE, 4 * 4);
+        }
+        if (a_program.colorHandle >= 0)
+        {
+            GLES20.glEnableVertexAttribArray(a_program.colorHandle);
+            GLES20.glVertexAttribPointer(a_program.colorHandle, 4, GLES20.GL_FLOAT, false, VERTEX_STRIDE, 6 * 4);
+        }
+    }
+
+    // disables the attributes of a program enabled by _EnableAttributes
+    private void _DisableAttributes(ShaderProgram a_program)
+    {
+        if (a_program == null)
+            return;
+
+        GLES20.glDisableVertexAttribArray(a_program.positionHandle);
+        if (a_program.texturePositionHandle >= 0)
+            GLES20.glDisableVertexAttribArray(a_program.texturePositionHandle);
+        if (a_program.colorHandle >= 0)
+            GLES20.glDisableVertexAttribArray(a_program.colorHandle);
+    }
+}
@@ -0,0 +1,262 @@
+package com.libraries.heiko.gamebook.tools;
+
+/**
+ * Hierarchical timer wheel. Timers are sorted into slots by the tick they expire in: 4 levels of
+ * 64 slots, every level covering 64 times the time-span of the level below. Advancing a tick fires
+ * the timers in one slot of the lowest level, and every 64 ticks the timers of one slot of the next
+ * level get moved down. Scheduling, cancelling and firing a timer are O(1), and the timers are
+ * linked intrusively, so nothing gets allocated. The wheel isn't thread-safe, it has to be used by
+ * one thread only.
+ */
+public class TimerWheel
+{
+    /*
+        Class: Timer
+            A timed callback. The same Timer can be scheduled again (e.g. from within Fire) to run periodically
+    */
+    public static abstract class Timer
+    {
+        private long time;                                          // the time the timer fires at
+        private int slot = -1;                                      // index of the slot the timer is in, -1 if it isn't scheduled
+        private Timer prev, next;                                   // neighbours in the slot
+
+        /*
+            Function: Fire
+                Gets called once the time of the timer has passed
+
+            Parameter:
+                a_time  - long  | the time the timer was scheduled for
+        */
+        public abstract void Fire(long a_time);
+
+        /*
+            Function: IsScheduled
+                Checks if the timer is waiting to be fired
+
+            Returns:
+                boolean -> - true: the timer is scheduled, false: it isn't
+        */
+        public boolean IsScheduled()
+        {
+            return this.slot >= 0;
+        }
+    }
+
+    private final static int SLOT_BITS = 6;                         // 64 slots per level
+    private final static int SLOTS = 1 << SLOT_BITS;
+    private final static int LEVELS = 4;
+    private final static int OVERFLOW = LEVELS * SLOTS;             // slot for timers beyond the range of the highest level
+
+    private final int tickShift;                                    // the time gets shifted by this to get the tick (ticks are 2^tickShift time-units long)
+    private final Timer[] slots = new Timer[OVERFLOW + 1];          // the first timer of every slot
+    private long currentTick;                                       // the last tick that was fired
+    private int count = 0;                                          // number of scheduled timers
+
+    /*
+        Function: TimerWheel
+            Creates an empty timer wheel
+
+        Parameter:
+            a_tickShift - Integer   | duration of a tick as power of 2 of the time-units (e.g. 20 for ~1ms ticks with nanoseconds)
+            a_time      - long      | the current time
+    */
+    public TimerWheel(int a_tickShift, long a_time)
+    {
+        this.tickShift = a_tickShift;
+        this.currentTick = a_time >> a_tickShift;
+    }
+
+    /*
+        Function: ScheduleAt
+            Schedules a timer to fire at the given time. Reschedules it, if it is already scheduled. Timers fire
+            once the wheel got advanced to the tick of their time, at the earliest in the next tick
+
+        Parameter:
+            a_timer - Timer | the timer to schedule
+            a_time  - long  | the time the timer should fire at
+    */
+    public void ScheduleAt(Timer a_timer, long a_time)
+    {
+        if (a_timer.slot >= 0)
+            this.Cancel(a_timer);
+
+        a_timer.time = a_time;
+        this._Insert(a_timer, this.currentTick + 1);
+        this.count++;
+    }
+
+    /*
+        Function: Schedule
+            Schedules a timer to fire after the given delay
+
+        Parameter:
+            a_timer - Timer | the timer to schedule
+            a_delay - long  | the delay relative to the time the wheel was last advanced to
+    */
+    public void Schedule(Timer a_timer, long a_delay)
+    {
+        this.ScheduleAt(a_timer, (this.currentTick << this.tickShift) + a_delay);
+    }
+
+    /*
+        Function: Cancel
+            Removes a timer from the wheel, so it doesn't fire. Does nothing if it isn't scheduled
+
+        Parameter:
+            a_timer - Timer | the timer to cancel
+    */
+    public void Cancel(Timer a_timer)
+    {
+        if (a_timer.slot < 0)
+            return;
+
+        this._Unlink(a_timer);
+        this.count--;
+    }
+
+    /*
+        Function: IsEmpty
+            Checks if any timer is scheduled
+
+        Returns:
+            boolean -> - true: no timer is scheduled, false: at least one timer waits to be fired
+    */
+    public boolean IsEmpty()
+    {
+        return this.count == 0;
+    }
+
+    /*
+        Function: NextExpiry
+            Returns when the next timer fires, so the caller can sleep until then. Only the first non-empty
+            slot gets searched, so this is O(slots + timers in that slot)
+
+        Returns:
+            long -> - the earliest time the wheel has to be advanced to for the next timer to fire, Long.MAX_VALUE if no timer is scheduled
+    */
+    public long NextExpiry()
+    {
+        if (this.count == 0)
+            return Long.MAX_VALUE;
+
+        // the slots of a level behind its current one hold later ticks than every lower level, and earlier ones than every higher level
+        for (int level = 0; level < LEVELS; level++)
+        {
+            int current = (int) ((this.currentTick >> (level * SLOT_BITS)) & (SLOTS - 1));
+            for (int i = current + 1; i < SLOTS; i++)
+            {
+                if (this.slots[level * SLOTS + i] != null)
+                    return this._EarliestTick(this.slots[level * SLOTS + i]) << this.tickShift;
+            }
+        }
+        return this._EarliestTick(this.slots[OVERFLOW]) << this.tickShift;
+    }
+
+    /*
+        Function: Advance
+            Fires all timers whose time has passed, in the order of their ticks
+
+        Parameter:
+            a_time  - long  | the current time
+    */
+    public void Advance(long a_time)
+    {
+        long targetTick = a_time >> this.tickShift;
+
+        // nothing to fire, there is no need to walk through the ticks
+        if (this.count == 0)
+        {
+            this.currentTick = Math.max(this.currentTick, targetTick);
+            return;
+        }
+
+        while (this.currentTick < targetTick && this.count > 0)
+        {
+            this.currentTick++;
+
+            // move the timers of the higher levels down once the lower level wrapped around, highest level first
+            if ((this.currentTick & ((1L << (LEVELS * SLOT_BITS)) - 1)) == 0)
+                this._Cascade(OVERFLOW);
+            for (int level = LEVELS - 1; level > 0; level--)
+            {
+                if ((this.currentTick & ((1L << (level * SLOT_BITS)) - 1)) == 0)
+                    this._Cascade(level * SLOTS + (int) ((this.currentTick >> (level * SLOT_BITS)) & (SLOTS - 1)));
+            }
+
+            // fire the timers of this tick. Timers scheduled by Fire go to later ticks
+            int slot = (int) (this.currentTick & (SLOTS - 1));
+            Timer timer;
+            while ((timer = this.slots[slot]) != null)
+            {
+                this._Unlink(timer);
+                this.count--;
+                timer.Fire(timer.time);
+            }
+        }
+        this.currentTick = Math.max(this.currentTick, targetTick);
+    }
+
+    // returns the earliest tick a timer of the slot starting with a_timer fires in
+    private long _EarliestTick(Timer a_timer)
+    {
+        long tick = Long.MAX_VALUE;
+        while (a_timer != null)
+        {
+            tick = Math.min(tick, a_timer.time >> this.tickShift);
+            a_timer = a_timer.next;
+        }
+        return Math.max(tick, this.currentTick + 1);
+    }
+
+    // sorts all timers of a slot into the levels below
+    private void _Cascade(int a_slot)
+    {
+        Timer timer = this.slots[a_slot];
+        this.slots[a_slot] = null;
+        while (timer != null)
+        {
+            Timer next = timer.next;
+            timer.slot = -1;
+            this._Insert(timer, this.currentTick);
+            timer = next;
+        }
+    }
+
+    // puts a timer into the slot of the lowest level its tick shares the higher bits with the current tick. Timers due before a_minTick fire in a_minTick
+    private void _Insert(Timer a_timer, long a_minTick)
+    {
+        long tick = Math.max(a_timer.time >> this.tickShift, a_minTick);
+        int slot = OVERFLOW;
+        for (int level = 0; level < LEVELS; level++)
+        {
+            if ((tick >> ((level + 1) * SLOT_BITS)) == (this.currentTick >> ((level + 1) * SLOT_BITS)))
+            {
+                slot = level * SLOTS + (int) ((tick >> (level * SLOT_BITS)) & (SLOTS - 1));
+                break;
+            }
+        }
+
+        a_timer.slot = slot;
+        a_timer.prev = null;
+        a_timer.next = this.slots[slot];
+        if (a_timer.next != null)
+            a_timer.next.prev = a_timer;
+        this.slots[slot] = a_timer;
+    }
+
+    // removes a timer from its slot
+    private void _Unlink(Timer a_timer)
+    {
+        if (a_timer.prev == null)
+            this.slots[a_timer.slot] = a_timer.next;
+        else
+            a_timer.prev.next = a_timer.next;
+
+        if (a_timer.next != null)
+            a_timer.next.prev = a_timer.prev;
+
+        a_timer.prev = null;
+        a_timer.next = null;
+        a_timer.slot = -1;
+    }
+}
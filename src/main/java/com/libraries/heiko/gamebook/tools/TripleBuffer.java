@@ -0,0 +1,70 @@
+package com.libraries.heiko.gamebook.tools;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Three preallocated buffers shared by one writer-thread and one reader-thread. The writer always
+ * has a buffer of its own to fill, the reader always has a buffer of its own to read, and the third
+ * one holds the latest completed buffer in between. Handing a buffer over is a single atomic swap,
+ * so neither thread ever waits for the other. The reader always gets the newest completed buffer,
+ * older ones are skipped.
+ */
+public class TripleBuffer<T>
+{
+    private final static int FRESH = 0x04;                          // set on the middle index if the writer published it, but the reader hasn't taken it yet
+    private final static int INDEX = 0x03;                          // mask for the index of the middle buffer
+
+    private final T[] buffers;                                      // the three buffers
+    private final AtomicInteger middle = new AtomicInteger(2);      // index of the buffer between writer and reader, combined with FRESH
+    private int back = 0;                                           // index of the buffer the writer fills. Only used by the writer
+    private int front = 1;                                          // index of the buffer the reader reads. Only used by the reader
+
+    /*
+        Function: TripleBuffer
+            Creates a triple-buffer using the given objects as buffers
+
+        Parameter:
+            a_buffers   - T[]   | The three preallocated buffers
+    */
+    public TripleBuffer(T[] a_buffers)
+    {
+        if (a_buffers.length != 3)
+            throw new Error("A TripleBuffer needs exactly 3 buffers, got " + a_buffers.length);
+
+        this.buffers = a_buffers;
+    }
+
+    /*
+        Function: GetWriteBuffer
+            Writer only. Returns the buffer to fill. Stays the same until Publish gets called
+
+        Returns:
+            T -> - the buffer the writer owns
+    */
+    public T GetWriteBuffer()
+    {
+        return this.buffers[this.back];
+    }
+
+    // Writer only. Hands the filled buffer over to the reader and takes the middle one to fill next
+    public void Publish()
+    {
+        this.back = this.middle.getAndSet(this.back | FRESH) & INDEX;
+    }
+
+    /*
+        Function: GetReadBuffer
+            Reader only. Takes the latest published buffer, if there is a new one, and returns it.
+            The returned buffer stays valid until the next call
+
+        Returns:
+            T -> - the newest buffer the reader has got
+    */
+    public T GetReadBuffer()
+    {
+        if ((this.middle.get() & FRESH) != 0)
+            this.front = this.middle.getAndSet(this.front) & INDEX;
+
+        return this.buffers[this.front];
+    }
+}
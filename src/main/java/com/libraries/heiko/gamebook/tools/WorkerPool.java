@@ -0,0 +1,184 @@
+package com.libraries.heiko.gamebook.tools;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of worker-threads that run the iterations of a loop in parallel. The calling thread
+ * works on the loop as well and Run only returns once every iteration is done, so everything the
+ * iterations changed is visible to the caller afterwards. The iterations are claimed one by one
+ * from an atomic counter, so slow iterations don't hold up a whole share of the loop. Running a
+ * loop allocates nothing, the threads are created once and wait between the loops.
+ */
+public class WorkerPool
+{
+    /*
+        Interface: Job
+            The body of a loop run by the WorkerPool
+    */
+    public interface Job
+    {
+        // runs one iteration of the loop. Gets called on any of the workers or the calling thread
+        void Run(int a_index);
+    }
+
+    private final Thread[] workers;                                 // the threads helping the calling thread
+    private final AtomicInteger nextIndex = new AtomicInteger();    // the next iteration to claim
+    private final AtomicInteger activeWorkers = new AtomicInteger();// number of workers still working on the current loop
+    private Job job;                                                // the job of the current loop
+    private int count;                                              // the number of iterations of the current loop
+    private int generation = 0;                                     // gets increased for every loop, so the workers know there is work
+    private boolean running = true;                                 // false once the pool got shut down
+    private volatile Throwable failure;                             // the first exception thrown by an iteration of the current loop
+
+    /*
+        Function: WorkerPool
+            Creates and starts the worker-threads
+
+        Parameter:
+            a_workerCount   - Integer   | number of threads helping the calling thread
+    */
+    public WorkerPool(int a_workerCount)
+    {
+        if (a_workerCount < 1)
+            throw new Error("A WorkerPool needs at least 1 worker, got " + a_workerCount);
+
+        this.workers = new Thread[a_workerCount];
+        for (int i = 0; i < a_workerCount; i++)
+        {
+            this.workers[i] = new Thread("GameBook-Worker-" + i)
+            {
+                @Override
+                public void run()
+                {
+                    WorkerPool.this._WorkerLoop();
+                }
+            };
+            this.workers[i].setDaemon(true);
+            this.workers[i].start();
+        }
+    }
+
+    /*
+        Function: Run
+            Runs a_job for every index from 0 to a_count - 1 and returns once all of them are done.
+            Must not be called by more than one thread at a time
+
+        Parameter:
+            a_job   - Job       | The loop-body to run
+            a_count - Integer   | The number of iterations
+    */
+    public void Run(Job a_job, int a_count)
+    {
+        if (a_count <= 0)
+            return;
+
+        synchronized (this)
+        {
+            if (!this.running)
+                throw new Error("The WorkerPool is already shut down");
+
+            this.job = a_job;
+            this.count = a_count;
+            this.failure = null;
+            this.nextIndex.set(0);
+            this.activeWorkers.set(this.workers.length);
+            this.generation++;
+            this.notifyAll();
+        }
+
+        this._Work(a_job, a_count);
+
+        // wait for the workers still busy with their last iteration. An interrupt can't cut that short, the
+        // iterations would still run while the caller already goes on. It is passed on once they are done
+        boolean interrupted = false;
+        synchronized (this)
+        {
+            while (this.activeWorkers.get() > 0)
+            {
+                try
+                {
+                    this.wait();
+                } catch (InterruptedException a_exception)
+                {
+                    interrupted = true;
+                }
+            }
+            this.job = null;
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        if (this.failure != null)
+            throw new Error("An iteration of the parallel loop failed", this.failure);
+    }
+
+    /*
+        Function: Shutdown
+            Stops the worker-threads once they finished their current loop
+    */
+    public synchronized void Shutdown()
+    {
+        this.running = false;
+        this.notifyAll();
+    }
+
+    // claims and runs iterations until none are left
+    private void _Work(Job a_job, int a_count)
+    {
+        int index;
+        while ((index = this.nextIndex.getAndIncrement()) < a_count)
+        {
+            try
+            {
+                a_job.Run(index);
+            } catch (Throwable a_exception)
+            {
+                if (this.failure == null)
+                    this.failure = a_exception;
+            }
+        }
+    }
+
+    // waits for a loop, helps with it and waits for the next one. Is run by the workers
+    private void _WorkerLoop()
+    {
+        int seenGeneration = 0;
+        while (true)
+        {
+            Job job;
+            int count;
+            synchronized (this)
+            {
+                while (this.running && this.generation == seenGeneration)
+                {
+                    try
+                    {
+                        this.wait();
+                    } catch (InterruptedException a_exception)
+                    {
+                        return;
+                    }
+                }
+
+                if (!this.running)
+                    return;
+
+                seenGeneration = this.generation;
+                job = this.job;
+                count = this.count;
+            }
+
+            this._Work(job, count);
+
+            // the last worker wakes up the calling thread
+            if (this.activeWorkers.decrementAndGet() == 0)
+            {
+                synchronized (this)
+                {
+                    this.notifyAll();
+                }
+            }
+        }
+    }
+}
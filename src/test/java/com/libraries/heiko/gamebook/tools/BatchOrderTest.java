@@ -0,0 +1,117 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BatchOrderTest
+{
+    private static final int TEXTURE_A = 1;
+    private static final int TEXTURE_B = 2;
+
+    // a batch of quads that get sorted like the SpriteBatch sorts them
+    private static class Batch
+    {
+        BatchOrder order = new BatchOrder(2);
+        RenderCommandList commands = new RenderCommandList(2);
+
+        void Add(int a_state, float a_left, float a_bottom, float a_right, float a_top)
+        {
+            this.commands.Add(this.order.Add(a_state, a_left, a_bottom, a_right, a_top), this.commands.count);
+        }
+
+        // returns the indices of the quads in the order they get drawn
+        String Sorted()
+        {
+            this.commands.Sort();
+            String sorted = "";
+            for (int i = 0; i < this.commands.count; i++)
+            {
+                sorted += this.commands.GetValue(i);
+            }
+            return sorted;
+        }
+    }
+
+    @Test
+    public void add_keepsTheOrderOfOverlappingSiblings() throws Exception
+    {
+        // a parent with two overlapping children, the second one has the texture of the parent
+        Batch batch = new Batch();
+        batch.Add(TEXTURE_A, 0, 0, 10, 10);
+        batch.Add(TEXTURE_B, 1, 1, 5, 5);
+        batch.Add(TEXTURE_A, 3, 3, 7, 7);
+        assertEquals("012", batch.Sorted());
+    }
+
+    @Test
+    public void add_keepsNestedChildrenAboveTheirParents() throws Exception
+    {
+        // parent, child and grandchild with alternating textures, followed by an element beside them
+        Batch batch = new Batch();
+        batch.Add(TEXTURE_A, 0, 0, 10, 10);
+        batch.Add(TEXTURE_B, 1, 1, 9, 9);
+        batch.Add(TEXTURE_A, 2, 2, 8, 8);
+        batch.Add(TEXTURE_B, 20, 0, 30, 10);
+        batch.Add(TEXTURE_A, 21, 1, 29, 9);
+
+        // the element beside them only keeps the order of its own quads
+        String sorted = batch.Sorted();
+        assertEquals("03412", sorted);
+        assertTrue(sorted.indexOf('0') < sorted.indexOf('1') && sorted.indexOf('1') < sorted.indexOf('2'));
+    }
+
+    @Test
+    public void add_groupsQuadsThatDontOverlap() throws Exception
+    {
+        // tiles beside each other, touching edges don't count as overlapping
+        Batch batch = new Batch();
+        batch.Add(TEXTURE_A, 0, 0, 10, 10);
+        batch.Add(TEXTURE_B, 10, 0, 20, 10);
+        batch.Add(TEXTURE_A, 20, 0, 30, 10);
+        batch.Add(TEXTURE_B, 30, 0, 40, 10);
+        assertEquals("0213", batch.Sorted());
+    }
+
+    @Test
+    public void add_groupsOverlappingQuadsWithTheSameState() throws Exception
+    {
+        // overlapping quads with the same state stay in one run and keep their order
+        Batch batch = new Batch();
+        batch.Add(TEXTURE_A, 0, 0, 10, 10);
+        batch.Add(TEXTURE_B, 20, 0, 30, 10);
+        batch.Add(TEXTURE_A, 5, 5, 15, 15);
+        batch.Add(TEXTURE_B, 25, 5, 35, 15);
+        assertEquals("0213", batch.Sorted());
+
+        batch.order.Clear();
+        batch.commands.Clear();
+        batch.Add(TEXTURE_B, 0, 0, 10, 10);
+        batch.Add(TEXTURE_A, 0, 0, 10, 10);
+        assertEquals("01", batch.Sorted());
+    }
+
+    @Test
+    public void add_onlyComparesQuadsOfTheSameCells() throws Exception
+    {
+        // a map of 64 x 64 tiles over the screen with alternating textures, and a quad above all of them
+        BatchOrder order = new BatchOrder(2);
+        float size = 2.0f / 64;
+        long highestTile = 0;
+        for (int y = 0; y < 64; y++)
+        {
+            for (int x = 0; x < 64; x++)
+            {
+                long key = order.Add((x + y) % 2 == 0 ? TEXTURE_A : TEXTURE_B, -1 + x * size, -1 + y * size, -1 + (x + 1) * size, -1 + (y + 1) * size);
+                highestTile = Math.max(highestTile, key >>> 48);
+            }
+        }
+        long cover = order.Add(TEXTURE_A, -1, -1, 1, 1);
+
+        // every tile is compared with the last quads of the cells it is in, not with all earlier tiles
+        assertTrue(order.comparisons <= (64 * 64 * 4 + BatchOrder.GRID * BatchOrder.GRID) * BatchOrder.CELL_QUADS);
+
+        // the quad above the tiles is still drawn after all of them
+        assertTrue(cover >>> 48 > highestTile);
+    }
+}
@@ -0,0 +1,58 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CullingTest
+{
+    // identity-matrix: the viewport covers -1..1 in both directions
+    private final float[] identity = {1, 0, 0, 0,  0, 1, 0, 0,  0, 0, 1, 0,  0, 0, 0, 1};
+
+    // scales by 2 and moves by (0.5, 0): the viewport covers -0.75..0.25 horizontally and -0.5..0.5 vertically
+    private final float[] scaledAndMoved = {2, 0, 0, 0,  0, 2, 0, 0,  0, 0, 1, 0,  0.5f, 0, 0, 1};
+
+    @Test
+    public void isOutside_rectangleInsideViewport() throws Exception
+    {
+        assertFalse(Culling.IsOutside(this.identity, -0.5f, -0.5f, 0.5f, 0.5f, 0));
+    }
+
+    @Test
+    public void isOutside_rectanglePartlyInsideViewport() throws Exception
+    {
+        assertFalse(Culling.IsOutside(this.identity, 0.5f, 0.5f, 3, 3, 0));
+    }
+
+    @Test
+    public void isOutside_rectangleCoveringViewport() throws Exception
+    {
+        assertFalse(Culling.IsOutside(this.identity, -5, -5, 5, 5, 0));
+    }
+
+    @Test
+    public void isOutside_rectangleOutsideViewport() throws Exception
+    {
+        assertTrue(Culling.IsOutside(this.identity, 1.5f, -0.5f, 2, 0.5f, 0));
+        assertTrue(Culling.IsOutside(this.identity, -0.5f, -3, 0.5f, -2, 0));
+        assertTrue(Culling.IsOutside(this.scaledAndMoved, 0.3f, 0, 0.4f, 0.1f, 0));
+    }
+
+    @Test
+    public void getVisibleArea_affineMatrix() throws Exception
+    {
+        float[] area = new float[4];
+        assertTrue(Culling.GetVisibleArea(this.scaledAndMoved, 0, area));
+        assertEquals(-0.75f, area[0], 0.0001f);
+        assertEquals(-0.5f, area[1], 0.0001f);
+        assertEquals(0.25f, area[2], 0.0001f);
+        assertEquals(0.5f, area[3], 0.0001f);
+    }
+
+    @Test
+    public void getVisibleArea_perspectiveMatrix() throws Exception
+    {
+        float[] perspective = {1, 0, 0, 0,  0, 1, 0, 0,  0, 0, 1, -1,  0, 0, 0, 0};
+        assertFalse(Culling.GetVisibleArea(perspective, -1, new float[4]));
+    }
+}
@@ -0,0 +1,69 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GameListTest
+{
+    @Test
+    public void add_keepsOrderAndGrows() throws Exception
+    {
+        GameList<Integer> list = new GameList<Integer>(2);
+        for (int i = 0; i < 20; i++)
+        {
+            list.Add(i);
+        }
+
+        assertEquals(20, list.Size());
+        for (int i = 0; i < 20; i++)
+        {
+            assertEquals(Integer.valueOf(i), list.Get(i));
+        }
+    }
+
+    @Test
+    public void insertAndRemove_moveTheFollowingItems() throws Exception
+    {
+        GameList<String> list = new GameList<String>();
+        list.Add("a");
+        list.Add("c");
+        list.Insert(1, "b");
+        list.Insert(3, "d");
+        assertEquals("b", list.Get(1));
+        assertEquals("d", list.Get(3));
+
+        assertEquals("a", list.RemoveAt(0));
+        assertTrue(list.Remove("c"));
+        assertFalse(list.Remove("x"));
+        assertEquals(2, list.Size());
+        assertEquals("b", list.Get(0));
+        assertEquals("d", list.Get(1));
+        assertEquals(-1, list.IndexOf("a"));
+
+        list.Clear();
+        assertEquals(0, list.Size());
+    }
+
+    @Test
+    public void move_shiftsTheItemsInBetween() throws Exception
+    {
+        GameList<String> list = new GameList<String>();
+        list.Add("a");
+        list.Add("b");
+        list.Add("c");
+        list.Add("d");
+
+        list.Move(0, 2);
+        assertEquals("b", list.Get(0));
+        assertEquals("c", list.Get(1));
+        assertEquals("a", list.Get(2));
+        assertEquals("d", list.Get(3));
+
+        list.Move(3, 0);
+        list.Set(1, "x");
+        assertEquals("d", list.Get(0));
+        assertEquals("x", list.Get(1));
+        assertEquals("a", list.Get(3));
+    }
+}
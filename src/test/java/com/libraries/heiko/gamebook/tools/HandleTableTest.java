@@ -0,0 +1,91 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class HandleTableTest
+{
+    @Test
+    public void add_returnsHandlesOfTheObjects() throws Exception
+    {
+        HandleTable<String> table = new HandleTable<String>();
+        int[] handles = new int[100];
+        for (int i = 0; i < handles.length; i++)
+        {
+            handles[i] = table.Add("item" + i);
+            assertTrue(handles[i] > 0);
+        }
+
+        assertEquals(100, table.Size());
+        for (int i = 0; i < handles.length; i++)
+        {
+            assertEquals("item" + i, table.Get(handles[i]));
+        }
+    }
+
+    @Test
+    public void remove_invalidatesTheHandle() throws Exception
+    {
+        HandleTable<String> table = new HandleTable<String>();
+        int first = table.Add("first");
+        assertTrue(table.Remove(first));
+        assertFalse(table.Remove(first));
+        assertNull(table.Get(first));
+
+        // the slot gets reused, but the old handle still doesn't find anything
+        int second = table.Add("second");
+        assertNotEquals(first, second);
+        assertNull(table.Get(first));
+        assertEquals("second", table.Get(second));
+        assertEquals(1, table.Size());
+    }
+
+    @Test
+    public void get_rejectsInvalidHandles() throws Exception
+    {
+        HandleTable<String> table = new HandleTable<String>();
+        table.Add("item");
+        assertNull(table.Get(0));
+        assertNull(table.Get(-1));
+        assertNull(table.Get(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void get_findsObjectsWhileTheTableGrows() throws Exception
+    {
+        final HandleTable<String> table = new HandleTable<String>();
+        final int handle = table.Add("first");
+        final AtomicBoolean lost = new AtomicBoolean(false);
+        final AtomicBoolean done = new AtomicBoolean(false);
+
+        // another thread looks the first object up without locking, while the table grows and slots get reused
+        Thread reader = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while (!done.get() && !lost.get())
+                {
+                    if (!"first".equals(table.Get(handle)))
+                        lost.set(true);
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20000; i++)
+        {
+            int added = table.Add("item" + i);
+            if (i % 3 == 0)
+                table.Remove(added);
+        }
+        done.set(true);
+        reader.join();
+
+        assertFalse(lost.get());
+        assertEquals("first", table.Get(handle));
+        assertEquals(1 + 20000 - 6667, table.Size());
+    }
+}
@@ -0,0 +1,63 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MutationQueueTest
+{
+    @Test
+    public void poll_returnsItemsInOrder() throws Exception
+    {
+        MutationQueue<Integer> queue = new MutationQueue<Integer>();
+        queue.Add(1);
+        queue.Add(2);
+        assertEquals(Integer.valueOf(1), queue.Poll());
+
+        // items added while older ones are still waiting come after them
+        queue.Add(3);
+        assertEquals(Integer.valueOf(2), queue.Poll());
+        assertEquals(Integer.valueOf(3), queue.Poll());
+        assertNull(queue.Poll());
+        assertTrue(queue.IsEmpty());
+    }
+
+    @Test
+    public void add_fromSeveralThreads() throws Exception
+    {
+        final MutationQueue<Integer> queue = new MutationQueue<Integer>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++)
+        {
+            final int offset = t * 1000;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int i = 0; i < 1000; i++)
+                    {
+                        queue.Add(offset + i);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        // nothing gets lost and the items of every thread keep their order
+        int[] last = new int[] {-1, -1, -1, -1};
+        int count = 0;
+        Integer item;
+        while ((item = queue.Poll()) != null)
+        {
+            assertTrue(item % 1000 > last[item / 1000]);
+            last[item / 1000] = item % 1000;
+            count++;
+        }
+        assertEquals(4000, count);
+    }
+}
@@ -0,0 +1,40 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RegistryTest
+{
+    @Test
+    public void add_findsItemsByIdAndHandle() throws Exception
+    {
+        Registry<String> registry = new Registry<String>();
+        int handle = registry.Add("a", "item a");
+        registry.Add("b", "item b");
+
+        assertTrue(handle > 0);
+        assertEquals("item a", registry.Get("a"));
+        assertEquals("item a", registry.Get(handle));
+        assertEquals(handle, registry.GetHandle("a"));
+        assertEquals(2, registry.GetItems().Size());
+
+        // a taken ID doesn't replace the item
+        assertEquals(0, registry.Add("a", "other"));
+        assertEquals("item a", registry.Get("a"));
+    }
+
+    @Test
+    public void remove_invalidatesIdAndHandle() throws Exception
+    {
+        Registry<String> registry = new Registry<String>();
+        int handle = registry.Add("a", "item a");
+
+        assertTrue(registry.Remove("a"));
+        assertFalse(registry.Remove("a"));
+        assertNull(registry.Get("a"));
+        assertNull(registry.Get(handle));
+        assertEquals(0, registry.GetHandle("a"));
+        assertEquals(0, registry.GetItems().Size());
+    }
+}
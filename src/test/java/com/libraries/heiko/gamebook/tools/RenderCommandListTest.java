@@ -0,0 +1,54 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RenderCommandListTest
+{
+    @Test
+    public void sort_ordersByKey() throws Exception
+    {
+        RenderCommandList list = new RenderCommandList(4);
+        list.Add(0x0300000000L, 0);
+        list.Add(0x01, 1);
+        list.Add(0x0200000001L, 2);
+        list.Add(0x0200000000L, 3);
+        list.Sort();
+
+        assertEquals(1, list.GetValue(0));
+        assertEquals(3, list.GetValue(1));
+        assertEquals(2, list.GetValue(2));
+        assertEquals(0, list.GetValue(3));
+    }
+
+    @Test
+    public void sort_isStable() throws Exception
+    {
+        RenderCommandList list = new RenderCommandList(2);
+        for (int i = 0; i < 10; i++)
+        {
+            list.Add(i % 2, i);
+        }
+        list.Sort();
+
+        assertEquals(10, list.count);
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals(i*2, list.GetValue(i));
+            assertEquals(i*2 + 1, list.GetValue(i + 5));
+        }
+    }
+
+    @Test
+    public void sort_comparesUnsigned() throws Exception
+    {
+        RenderCommandList list = new RenderCommandList(2);
+        list.Add(0x8000000000000000L, 0);
+        list.Add(0x7FFFFFFFFFFFFFFFL, 1);
+        list.Sort();
+
+        assertEquals(1, list.GetValue(0));
+        assertEquals(0x8000000000000000L, list.GetKey(1));
+    }
+}
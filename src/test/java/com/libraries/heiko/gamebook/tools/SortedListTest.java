@@ -0,0 +1,135 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SortedListTest
+{
+    // an item with a changeable key
+    private static class Item
+    {
+        String name;
+        float key;
+        int sequence;
+
+        Item(String a_name, float a_key)
+        {
+            this.name = a_name;
+            this.key = a_key;
+        }
+    }
+
+    private static class ItemList extends SortedList<Item>
+    {
+        @Override
+        protected float GetKey(Item a_item)
+        {
+            return a_item.key;
+        }
+
+        @Override
+        protected void SetKey(Item a_item, float a_key)
+        {
+            a_item.key = a_key;
+        }
+
+        @Override
+        protected int GetSequence(Item a_item)
+        {
+            return a_item.sequence;
+        }
+
+        @Override
+        protected void SetSequence(Item a_item, int a_sequence)
+        {
+            a_item.sequence = a_sequence;
+        }
+
+        String Names()
+        {
+            String names = "";
+            for (int i = 0; i < this.Size(); i++)
+            {
+                names += this.Get(i).name;
+            }
+            return names;
+        }
+    }
+
+    @Test
+    public void addSorted_keepsTheOrderOfEqualKeys() throws Exception
+    {
+        ItemList list = new ItemList();
+        list.AddSorted(new Item("c", 2));
+        list.AddSorted(new Item("a", 1));
+        list.AddSorted(new Item("d", 2));
+        list.AddSorted(new Item("b", 1));
+        assertEquals("abcd", list.Names());
+    }
+
+    @Test
+    public void reorder_movesBehindTheItemsWithTheSameKey() throws Exception
+    {
+        ItemList list = new ItemList();
+        Item a = new Item("a", 1);
+        Item b = new Item("b", 2);
+        Item c = new Item("c", 2);
+        Item d = new Item("d", 3);
+        list.AddSorted(a);
+        list.AddSorted(b);
+        list.AddSorted(c);
+        list.AddSorted(d);
+
+        assertTrue(list.Reorder(a, 2));
+        assertEquals("bcad", list.Names());
+        assertTrue(list.Reorder(d, 0));
+        assertEquals("dbca", list.Names());
+        assertTrue(list.Reorder(b, 2));
+        assertEquals("dcab", list.Names());
+        assertEquals(2, list.IndexOf(a));
+        assertFalse(list.Reorder(new Item("x", 0), 1));
+    }
+
+    @Test
+    public void sort_sortsChangedKeysAndKeepsTheOrderOfEqualKeys() throws Exception
+    {
+        ItemList list = new ItemList();
+        Item[] items = new Item[6];
+        for (int i = 0; i < items.length; i++)
+        {
+            items[i] = new Item(String.valueOf((char) ('a' + i)), i);
+            list.AddSorted(items[i]);
+        }
+
+        items[0].key = 4;
+        items[5].key = 1;
+        items[2].key = 4;
+        list.Sort();
+        assertEquals(6, list.Size());
+        assertEquals("bfdace", list.Names());
+        assertEquals(3, list.IndexOf(items[0]));
+    }
+
+    @Test
+    public void indexOf_findsItemsAmongManyWithTheSameKey() throws Exception
+    {
+        // all items have the default key, like elements without a drawOrder
+        ItemList list = new ItemList();
+        Item[] items = new Item[100];
+        for (int i = 0; i < items.length; i++)
+        {
+            items[i] = new Item(String.valueOf(i), 0);
+            list.AddSorted(items[i]);
+        }
+
+        list.Reorder(items[10], 0);
+        list.RemoveAt(0);
+        for (int i = 1; i < items.length; i++)
+        {
+            assertEquals(i == 10 ? 98 : (i < 10 ? i - 1 : i - 2), list.IndexOf(items[i]));
+        }
+        assertEquals(-1, list.IndexOf(items[0]));
+        assertEquals(-1, list.IndexOf(new Item("x", 0)));
+    }
+}
@@ -0,0 +1,123 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimerWheelTest
+{
+    // remembers the time it fired at, and optionally reschedules itself
+    private static class TestTimer extends TimerWheel.Timer
+    {
+        TimerWheel wheel;
+        long firedAt = -1;
+        int fireCount = 0;
+        long period = 0;
+
+        @Override
+        public void Fire(long a_time)
+        {
+            this.firedAt = a_time;
+            this.fireCount++;
+            if (this.period > 0)
+                this.wheel.ScheduleAt(this, a_time + this.period);
+        }
+    }
+
+    @Test
+    public void advance_firesTimersInTheirTick() throws Exception
+    {
+        TimerWheel wheel = new TimerWheel(0, 0);
+        long[] delays = new long[] {1, 5, 63, 64, 65, 4095, 4096, 300000, 1L << 25};
+        TestTimer[] timers = new TestTimer[delays.length];
+        for (int i = 0; i < delays.length; i++)
+        {
+            timers[i] = new TestTimer();
+            wheel.Schedule(timers[i], delays[i]);
+        }
+
+        // advance in uneven steps, no timer may fire early or late
+        long time = 0;
+        while (time < (1L << 25) + 10)
+        {
+            time += 37;
+            wheel.Advance(time);
+            for (int i = 0; i < delays.length; i++)
+            {
+                if (delays[i] <= time)
+                    assertEquals(delays[i], timers[i].firedAt);
+                else
+                    assertEquals(-1, timers[i].firedAt);
+            }
+        }
+    }
+
+    @Test
+    public void cancel_preventsFiring() throws Exception
+    {
+        TimerWheel wheel = new TimerWheel(0, 0);
+        TestTimer timer = new TestTimer();
+        wheel.Schedule(timer, 100);
+        assertTrue(timer.IsScheduled());
+
+        wheel.Cancel(timer);
+        assertFalse(timer.IsScheduled());
+        wheel.Advance(200);
+        assertEquals(0, timer.fireCount);
+    }
+
+    @Test
+    public void fire_canRescheduleTheTimer() throws Exception
+    {
+        TimerWheel wheel = new TimerWheel(0, 1000);
+        TestTimer timer = new TestTimer();
+        timer.wheel = wheel;
+        timer.period = 10;
+        wheel.ScheduleAt(timer, 1010);
+
+        wheel.Advance(1100);
+        assertEquals(10, timer.fireCount);
+        assertEquals(1100, timer.firedAt);
+    }
+
+    @Test
+    public void nextExpiry_returnsTheTimeOfTheNextTimer() throws Exception
+    {
+        TimerWheel wheel = new TimerWheel(0, 0);
+        assertEquals(Long.MAX_VALUE, wheel.NextExpiry());
+
+        // scheduled in reverse, so the earliest timer isn't the first one of its slot
+        long[] delays = new long[] {1, 5, 63, 64, 65, 4095, 4096, 4100, 300000, 1L << 25};
+        TestTimer[] timers = new TestTimer[delays.length];
+        for (int i = delays.length - 1; i >= 0; i--)
+        {
+            timers[i] = new TestTimer();
+            wheel.Schedule(timers[i], delays[i]);
+        }
+
+        // advancing right to the next expiry fires exactly the next timer
+        for (int i = 0; i < delays.length; i++)
+        {
+            assertEquals(delays[i], wheel.NextExpiry());
+            wheel.Advance(wheel.NextExpiry());
+            assertEquals(delays[i], timers[i].firedAt);
+            if (i + 1 < delays.length)
+                assertEquals(-1, timers[i + 1].firedAt);
+        }
+        assertEquals(Long.MAX_VALUE, wheel.NextExpiry());
+    }
+
+    @Test
+    public void nextExpiry_returnsTheStartOfTheTick() throws Exception
+    {
+        TimerWheel wheel = new TimerWheel(4, 0);
+        TestTimer timer = new TestTimer();
+        wheel.ScheduleAt(timer, 100);
+
+        assertEquals(96, wheel.NextExpiry());
+        wheel.Advance(95);
+        assertEquals(0, timer.fireCount);
+        wheel.Advance(96);
+        assertEquals(1, timer.fireCount);
+    }
+}
@@ -0,0 +1,50 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TripleBufferTest
+{
+    private TripleBuffer<int[]> create()
+    {
+        return new TripleBuffer<int[]>(new int[][] {new int[1], new int[1], new int[1]});
+    }
+
+    @Test
+    public void reader_getsPublishedBuffer() throws Exception
+    {
+        TripleBuffer<int[]> buffer = this.create();
+        buffer.GetWriteBuffer()[0] = 1;
+        buffer.Publish();
+
+        assertEquals(1, buffer.GetReadBuffer()[0]);
+    }
+
+    @Test
+    public void reader_keepsBufferUntilNewOneIsPublished() throws Exception
+    {
+        TripleBuffer<int[]> buffer = this.create();
+        buffer.GetWriteBuffer()[0] = 1;
+        buffer.Publish();
+        int[] read = buffer.GetReadBuffer();
+
+        // the writer never gets the buffer the reader holds
+        buffer.GetWriteBuffer()[0] = 2;
+        assertNotSame(read, buffer.GetWriteBuffer());
+        assertSame(read, buffer.GetReadBuffer());
+    }
+
+    @Test
+    public void reader_skipsOlderBuffers() throws Exception
+    {
+        TripleBuffer<int[]> buffer = this.create();
+        for (int i = 1; i <= 5; i++)
+        {
+            buffer.GetWriteBuffer()[0] = i;
+            buffer.Publish();
+        }
+
+        assertEquals(5, buffer.GetReadBuffer()[0]);
+    }
+}
@@ -0,0 +1,86 @@
+package com.libraries.heiko.gamebook.tools;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WorkerPoolTest
+{
+    @Test
+    public void run_runsEveryIterationOnce() throws Exception
+    {
+        WorkerPool pool = new WorkerPool(3);
+        final int[] runs = new int[1000];
+        WorkerPool.Job job = new WorkerPool.Job()
+        {
+            @Override
+            public void Run(int a_index)
+            {
+                runs[a_index]++;
+            }
+        };
+
+        // the pool gets reused for several loops
+        for (int loop = 1; loop <= 10; loop++)
+        {
+            pool.Run(job, runs.length);
+            for (int i = 0; i < runs.length; i++)
+            {
+                assertEquals(loop, runs[i]);
+            }
+        }
+        pool.Shutdown();
+    }
+
+    @Test
+    public void run_rethrowsFailures() throws Exception
+    {
+        WorkerPool pool = new WorkerPool(2);
+        try
+        {
+            pool.Run(new WorkerPool.Job()
+            {
+                @Override
+                public void Run(int a_index)
+                {
+                    if (a_index == 7)
+                        throw new IllegalStateException("failed");
+                }
+            }, 20);
+            fail();
+        } catch (Error a_error)
+        {
+            assertTrue(a_error.getCause() instanceof IllegalStateException);
+        }
+        pool.Shutdown();
+    }
+
+    @Test
+    public void run_waitsForTheWorkersWhenInterrupted() throws Exception
+    {
+        WorkerPool pool = new WorkerPool(2);
+        final AtomicInteger done = new AtomicInteger(0);
+
+        // the caller is interrupted while the workers are still busy with their iterations
+        Thread.currentThread().interrupt();
+        pool.Run(new WorkerPool.Job()
+        {
+            @Override
+            public void Run(int a_index)
+            {
+                long end = System.nanoTime() + 20000000;
+                while (System.nanoTime() < end)
+                {
+                }
+                done.incrementAndGet();
+            }
+        }, 6);
+
+        // all iterations are done, and the interrupt is passed on
+        assertEquals(6, done.get());
+        assertTrue(Thread.interrupted());
+        pool.Shutdown();
+    }
+}